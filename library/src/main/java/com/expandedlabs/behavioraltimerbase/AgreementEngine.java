@@ -0,0 +1,259 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Inter-observer agreement of pairs of {@link ObserverRecord}s of the same protocol. The two
+ * records' intervals are aligned by their boundaries, boundaries at most the tolerance apart
+ * are the same boundary, and every aligned interval is scored for interval-by-interval,
+ * occurrence (scored interval), non-occurrence (unscored interval) and exact count agreement.
+ * Intervals only one observer has are counted as unpaired and left out of the scores.
+ *
+ * Each pair is scored in one pass over its boundary and response arrays. Pairs are split into
+ * ranges scored on the executor's threads, every range writes its own slots of the result
+ * arrays so nothing is shared.
+ */
+@SuppressWarnings("WeakerAccess")
+public class AgreementEngine
+{
+    private final ExecutorService mExecutor;
+    private final int mTaskCount;
+    private final long mTolerance;
+
+    /**
+     * @param executor Scores the ranges e.g. a fixed pool with a thread per core
+     * @param taskCount Ranges the pairs are split into
+     * @param toleranceMillis Most two observers' boundaries may be apart and still be aligned
+     */
+    public AgreementEngine(ExecutorService executor, int taskCount, long toleranceMillis)
+    {
+        if(taskCount <= 0 || toleranceMillis < 0)
+        {
+            throw new IllegalArgumentException("Task count must be positive and tolerance not negative.");
+        }
+
+        mExecutor = executor;
+        mTaskCount = taskCount;
+        mTolerance = toleranceMillis;
+    }
+
+    /**
+     * @param first One observer of every pair
+     * @param second The other observer, same index as in first
+     */
+    public Scores score(final ObserverRecord[] first, final ObserverRecord[] second)
+            throws InterruptedException
+    {
+        if(first.length != second.length)
+        {
+            throw new IllegalArgumentException("Every record needs a record to pair with.");
+        }
+
+        final Scores scores = new Scores(first.length);
+        int tasks = Math.max(1, Math.min(mTaskCount, first.length));
+
+        List<Callable<Void>> ranges = new ArrayList<>(tasks);
+        for(int i = 0; i < tasks; ++i)
+        {
+            final int from = (int) ((long) first.length * i / tasks);
+            final int to = (int) ((long) first.length * (i + 1) / tasks);
+            ranges.add(new Callable<Void>()
+            {
+                @Override
+                public Void call()
+                {
+                    for(int pair = from; pair < to; ++pair)
+                    {
+                        scorePair(first[pair], second[pair], mTolerance, scores, pair);
+                    }
+                    return null;
+                }
+            });
+        }
+
+        for(Future<Void> result : mExecutor.invokeAll(ranges))
+        {
+            try
+            {
+                result.get();
+            } catch (ExecutionException e)
+            {
+                if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return scores;
+    }
+
+    /**
+     * Score one pair into its slot, a merge of both records' boundaries with each record's
+     * responses counted into its own intervals on the way
+     */
+    static void scorePair(ObserverRecord first, ObserverRecord second, long tolerance,
+                          Scores scores, int pair)
+    {
+        long[] firstBoundaries = first.boundaries();
+        long[] secondBoundaries = second.boundaries();
+        long[] firstResponses = first.responses();
+        long[] secondResponses = second.responses();
+
+        int i = 0;
+        int j = 0;
+        int firstResponse = 0;
+        int secondResponse = 0;
+        int paired = 0;
+        int unpaired = 0;
+        int intervalAgreements = 0;
+        int occurrenceIntervals = 0;
+        int occurrenceAgreements = 0;
+        int nonOccurrenceIntervals = 0;
+        int nonOccurrenceAgreements = 0;
+        int exactCountAgreements = 0;
+
+        while(i < firstBoundaries.length && j < secondBoundaries.length)
+        {
+            long firstEnd = firstBoundaries[i];
+            long secondEnd = secondBoundaries[j];
+
+            //Each observer's responses belong to their own intervals, whatever the skew
+            int firstCount = 0;
+            int secondCount = 0;
+            if(firstEnd <= secondEnd + tolerance)
+            {
+                while(firstResponse < firstResponses.length && firstResponses[firstResponse] < firstEnd)
+                {
+                    ++firstResponse;
+                    ++firstCount;
+                }
+                ++i;
+            }
+            if(secondEnd <= firstEnd + tolerance)
+            {
+                while(secondResponse < secondResponses.length && secondResponses[secondResponse] < secondEnd)
+                {
+                    ++secondResponse;
+                    ++secondCount;
+                }
+                ++j;
+            }
+
+            if(Math.abs(firstEnd - secondEnd) > tolerance)
+            {
+                //Only one observer has this boundary
+                ++unpaired;
+                continue;
+            }
+
+            ++paired;
+            boolean firstOccurred = firstCount > 0;
+            boolean secondOccurred = secondCount > 0;
+            if(firstOccurred == secondOccurred) ++intervalAgreements;
+            if(firstOccurred || secondOccurred)
+            {
+                ++occurrenceIntervals;
+                if(firstOccurred && secondOccurred) ++occurrenceAgreements;
+            }
+            if(!firstOccurred || !secondOccurred)
+            {
+                ++nonOccurrenceIntervals;
+                if(!firstOccurred && !secondOccurred) ++nonOccurrenceAgreements;
+            }
+            if(firstCount == secondCount) ++exactCountAgreements;
+        }
+        unpaired += firstBoundaries.length - i + secondBoundaries.length - j;
+
+        scores.mPairedIntervals[pair] = paired;
+        scores.mUnpairedIntervals[pair] = unpaired;
+        scores.mIntervalAgreements[pair] = intervalAgreements;
+        scores.mOccurrenceIntervals[pair] = occurrenceIntervals;
+        scores.mOccurrenceAgreements[pair] = occurrenceAgreements;
+        scores.mNonOccurrenceIntervals[pair] = nonOccurrenceIntervals;
+        scores.mNonOccurrenceAgreements[pair] = nonOccurrenceAgreements;
+        scores.mExactCountAgreements[pair] = exactCountAgreements;
+    }
+
+    /**
+     * Agreement counts of every pair, percentages are worked out when read
+     */
+    public static final class Scores
+    {
+        private final int[] mPairedIntervals;
+        private final int[] mUnpairedIntervals;
+        private final int[] mIntervalAgreements;
+        private final int[] mOccurrenceIntervals;
+        private final int[] mOccurrenceAgreements;
+        private final int[] mNonOccurrenceIntervals;
+        private final int[] mNonOccurrenceAgreements;
+        private final int[] mExactCountAgreements;
+
+        Scores(int pairs)
+        {
+            mPairedIntervals = new int[pairs];
+            mUnpairedIntervals = new int[pairs];
+            mIntervalAgreements = new int[pairs];
+            mOccurrenceIntervals = new int[pairs];
+            mOccurrenceAgreements = new int[pairs];
+            mNonOccurrenceIntervals = new int[pairs];
+            mNonOccurrenceAgreements = new int[pairs];
+            mExactCountAgreements = new int[pairs];
+        }
+
+        public int getPairCount() { return mPairedIntervals.length; }
+
+        /**
+         * @return Intervals both observers have, the ones every score is out of
+         */
+        public int getPairedIntervals(int pair) { return mPairedIntervals[pair]; }
+
+        /**
+         * @return Boundaries only one of the observers has
+         */
+        public int getUnpairedIntervals(int pair) { return mUnpairedIntervals[pair]; }
+
+        /**
+         * @return Percent of intervals both scored the same way (occurrence or not), NaN
+         *         without paired intervals
+         */
+        public double getIntervalAgreement(int pair)
+        {
+            return percent(mIntervalAgreements[pair], mPairedIntervals[pair]);
+        }
+
+        /**
+         * @return Percent of the intervals either scored as an occurrence that both did, NaN if
+         *         neither scored one
+         */
+        public double getOccurrenceAgreement(int pair)
+        {
+            return percent(mOccurrenceAgreements[pair], mOccurrenceIntervals[pair]);
+        }
+
+        /**
+         * @return Percent of the intervals either scored as a non-occurrence that both did, NaN
+         *         if neither scored one
+         */
+        public double getNonOccurrenceAgreement(int pair)
+        {
+            return percent(mNonOccurrenceAgreements[pair], mNonOccurrenceIntervals[pair]);
+        }
+
+        /**
+         * @return Percent of intervals with the same number of responses from both, NaN without
+         *         paired intervals
+         */
+        public double getExactCountAgreement(int pair)
+        {
+            return percent(mExactCountAgreements[pair], mPairedIntervals[pair]);
+        }
+
+        private static double percent(int agreements, int intervals)
+        {
+            return intervals == 0 ? Double.NaN : agreements * 100.0 / intervals;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.expandedlabs.behavioraltimerbase;
 
-import android.util.Log;
+import android.os.Handler;
+import android.os.Looper;
 
 import com.expandedlabs.behavioraltimerbase.exceptions.IntervalTimerException;
 import com.expandedlabs.behavioraltimerbase.exceptions.IterationException;
@@ -8,7 +9,15 @@ import com.expandedlabs.behavioraltimerbase.exceptions.LimitedHoldException;
 import com.expandedlabs.behavioraltimerbase.exceptions.MinMaxException;
 import com.expandedlabs.behavioraltimerbase.exceptions.TotalTimerException;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 public abstract class BehaviorCountDownTimer
@@ -49,19 +58,180 @@ public abstract class BehaviorCountDownTimer
 
     private  IllFitEnum mTimerFitting = IllFitEnum.NO_ADJUSTMENT;
 
+    /**
+     * What a tick that lands past more than one boundary (a stalled thread, a sleeping device or
+     * fast playback) calls back for the boundaries before the present one. The schedule,
+     * iterations and statistics always move through every boundary.
+     * REPLAY_ALL - onIntervalReached() for every boundary in order, within the one tick
+     * LATEST_ONLY - onIntervalReached() only for the last boundary, the one the timer is in now
+     * SKIP_TO_PRESENT - no onIntervalReached() for any of them, only onBoundariesMissed()
+     */
+    public enum CatchUpPolicyEnum
+    {
+        REPLAY_ALL,
+        LATEST_ONLY,
+        SKIP_TO_PRESENT
+    }
+
     /**
      * Flag that specifies a reset should be done
      */
     private boolean mReset = false;
+    /**
+     * Flag that specifies the definitions were changed while the timer was running or paused.
+     * They are applied on the next tick (or start) without a reset, mTimerValueChange holds how
+     * much the main timer was lengthened (or shortened) in the meantime.
+     */
+    private boolean mReconfigure = false;
+    private long mTimerValueChange = 0;
     /**
      * Specifies if the timer is running
      */
     private boolean mTimerRunning = false;
 
     /**
-     * Countdown timer instance
+     * Running statistics of the session, cleared on reset. The interval start is the timer value
+     * the current interval began at and the pause start is when the timer was last paused.
+     */
+    private final StreamingStatistics mPlannedIntervalStats = new StreamingStatistics();
+    private final StreamingStatistics mRealizedIntervalStats = new StreamingStatistics();
+    private final StreamingStatistics mLimitedHoldStats = new StreamingStatistics();
+    private final StreamingStatistics mPauseStats = new StreamingStatistics();
+    private long mIntervalStartTimerValue = 0;
+    private long mPauseStartNanos = 0;
+
+    /**
+     * How long before each boundary onIntervalApproaching() is called, zero to never call it.
+     * The flag is set once the current interval has been signaled.
+     */
+    private long mIntervalLeadTime = 0;
+    private boolean mIntervalApproachSignaled = false;
+
+    /**
+     * Sample points delivered through onSampleReached(), the index is the next point due
+     */
+    private SamplingGrid mSamplingGrid = null;
+    private int mNextSampleIndex = 0;
+
+    /**
+     * Ring transitions are published to, null when nothing is persisting them
+     */
+    private SessionEventRing mEventRing = null;
+
+    /**
+     * Receives every transition for profiling, null when tracing is off
+     */
+    private TimerTracer mTracer = null;
+
+    /**
+     * Fleet metrics of this timer, null when it isn't registered with a TimerMetricsRegistry.
+     * Set from the registry's thread, read once into a local wherever it is used.
+     */
+    private volatile TimerMetrics mMetrics = null;
+
+    /**
+     * Memory mapped region the state is published to for other processes, null when not shared
+     */
+    private SharedTimerState mSharedState = null;
+
+    /**
+     * Reaction latency of the limited hold windows, null when not measured. The open time is
+     * System.nanoTime() of when the window was due, moved forward by every pause in it.
+     */
+    private LimitedHoldAnalytics mHoldAnalytics = null;
+    private boolean mHoldWindowOpen = false;
+    private long mHoldOpenNanos = 0;
+
+    /**
+     * Callbacks for the boundaries a late tick passed, the count is every boundary passed
+     * behind another one in the same tick since the last reset
+     */
+    private CatchUpPolicyEnum mCatchUpPolicy = CatchUpPolicyEnum.REPLAY_ALL;
+    private int mMissedBoundaryCount = 0;
+
+    /**
+     * Commands posted from any thread, run on the timer's thread at the end of the next tick or
+     * through the command executor while the timer isn't ticking. The flag keeps a single drain
+     * pending on the executor at a time. Without an executor set, the executor is a handler on
+     * the looper of the thread that created the timer (if it had one).
+     */
+    private final ConcurrentLinkedQueue<FutureTask<?>> mCommands = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean mCommandDrainScheduled = new AtomicBoolean(false);
+    private final Runnable mCommandDrain = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            mCommandDrainScheduled.set(false);
+            runPendingCommands();
+        }
+    };
+    private final Looper mCreatorLooper = Looper.myLooper();
+    private volatile Executor mCommandExecutor = null;
+
+    /**
+     * Countdown timer instance and the factory that created it. A restartable countdown is
+     * started over with its new length as long as the factory stays the same.
+     */
+    private Countdown mCountdown;
+    private Countdown.Factory mCountdownCreator;
+
+    /**
+     * Creates the countdown on every start, defaults to the android CountDownTimer
+     */
+    private Countdown.Factory mCountdownFactory = CustomizedCountdown.FACTORY;
+
+    /**
+     * Timer milliseconds per real millisecond. The countdown runs in real time, its ticks are
+     * mapped to timer time from the timer value and real duration it was created with. A
+     * requested scale different from the one the countdown runs at is applied on the next tick.
+     */
+    private double mTimeScale = 1;
+    private double mRequestedTimeScale = 1;
+    private long mScaleTimerOrigin = 0;
+    private long mScaleRealOrigin = 0;
+
+    /**
+     * Nested timers driven by this timer's ticks instead of countdowns of their own. The tree
+     * clock is timer milliseconds this timer has run for, it only moves while it runs, so the
+     * whole tree stops together. Active children are the ones with a countdown started, the
+     * delivery list is reused to tick them while their callbacks start and stop others. A child
+     * resumes with its parent when the parent paused it, and after every reset of the parent.
+     * The unnested factory is what a child had before it was nested, it gets it back when taken
+     * out.
+     */
+    private BehaviorCountDownTimer mParent = null;
+    private boolean mResumeWithParent = false;
+    private final List<BehaviorCountDownTimer> mChildren = new ArrayList<>();
+    private final List<ChildCountdown> mActiveChildren = new ArrayList<>();
+    private final List<ChildCountdown> mDeliveringChildren = new ArrayList<>();
+    private long mTreeClock = 0;
+    private long mTreeClockOrigin = 0;
+    private Countdown.Factory mUnnestedCountdownFactory = null;
+    private final Countdown.Factory mChildCountdownFactory = new Countdown.Factory()
+    {
+        @Override
+        public Countdown create(long millisInFuture, long countDownInterval, BehaviorCountDownTimer bTimer)
+        {
+            return new ChildCountdown(millisInFuture, bTimer);
+        }
+    };
+
+    /**
+     * Frame pulses onTick() is delivered on, null to deliver it with every tick. The flag keeps
+     * a single delivery pending, ticks before the next frame collapse into it.
      */
-    private CustomizedCountdown mCustomizedCountdown;
+    private FrameSource mFrameSource = null;
+    private boolean mFrameTickPending = false;
+    private final FrameSource.Callback mFrameTick = new FrameSource.Callback()
+    {
+        @Override
+        public void doFrame(long frameTimeNanos)
+        {
+            mFrameTickPending = false;
+            onTick();
+        }
+    };
 
     /**
      * Flag that signifies this instance has randomized interval values
@@ -103,6 +273,12 @@ public abstract class BehaviorCountDownTimer
     private boolean mCurrentLimitedHold = false;
     private int mCurrentIterationValue = 0;
 
+    /**
+     * Whether the current step counts an iteration when it ends, kept apart from the limited
+     * hold flag since a custom cycle can have steps that are neither
+     */
+    private boolean mCurrentCountsIteration = true;
+
     /**
      *  This will hold the up coming interval value which will depend if things are randomized
      *  and how the randomized is broken down.
@@ -110,6 +286,48 @@ public abstract class BehaviorCountDownTimer
     private long mNextIntervalValue = 0;
     private long mNextValueForAnInterval = 0;
 
+    /**
+     * Steps every interval cycle goes through. The default cycle is compiled from the definitions
+     * (interval then limited hold), a custom cycle replaces it. The step is the index of the
+     * step that is running.
+     */
+    private final IntervalCycle mDefaultCycle = IntervalCycle.createDefault();
+    private IntervalCycle mCustomCycle = null;
+    private IntervalCycle mCycle = mDefaultCycle;
+    private int mCycleStep = 0;
+
+    /**
+     * Intervals started since the last reset when running without a protocol, what seekTo()
+     * searches. Protocols are searched through their planned schedule instead. Only recorded
+     * while seeking is enabled, null when the session since the last reset wasn't recorded.
+     */
+    private boolean mSeekEnabled = false;
+    private IntervalHistory mIntervalHistory = null;
+
+    /**
+     * Protocol the timer runs through phase by phase, null when running a single configuration.
+     * The schedule index is the interval of the current phase that is running and the phase
+     * start is the timer value the current phase began at.
+     */
+    private TimerProtocol mProtocol = null;
+    private int mCurrentPhaseIndex = 0;
+    private int mCurrentScheduleIndex = 0;
+    private long mPhaseStartTimerValue = 0;
+
+    /**
+     * The definitions from before a protocol was set, the phases overwrite them and they are put
+     * back when the protocol is cleared
+     */
+    private long mSavedTimerValue = 0;
+    private long mSavedIntervalValue = 0;
+    private boolean mSavedRandomFlag = false;
+    private RandomStyleEnum mSavedStyle = RandomStyleEnum.REGULAR;
+    private long mSavedMinRandomValue = 0;
+    private long mSavedMaxRandomValue = 0;
+    private int mSavedRandIterationValue = 1;
+    private boolean mSavedLimitedHold = false;
+    private long mSavedLimitedHoldValue = 0;
+
     /**
      * Random generator
      */
@@ -141,6 +359,80 @@ public abstract class BehaviorCountDownTimer
         invalidate();
         reset();
     }
+
+    /**
+     * Reuse the timer for a new session, takes the same values as the constructor and allocates
+     * nothing. The timer is stopped without a pause and commands still queued are cancelled.
+     * Everything a session sets goes back to the constructor defaults: protocol, interval cycle,
+     * sampling grid, seeking, lead time, catch up policy, time scale, frame source, hold
+     * analytics, shared state, event ring and tracer. A nested timer is taken out of its parent
+     * and its children are taken out of it, see removeChildTimer(). Only what the owner of the
+     * timer set stays: the countdown factory, command executor and metrics registration. Every value is checked first, if one throws the timer is left
+     * as it was.
+     */
+    public void reinitialize(long timerValue,
+                             long intervalValue,
+                             boolean randomFlag,
+                             RandomStyleEnum style,
+                             long minRandom, long maxRandom,
+                             int numberOfIterations,
+                             boolean limitedHoldFlag, long limitedHold)
+            throws IntervalTimerException,
+            IterationException,
+            LimitedHoldException,
+            MinMaxException,
+            TotalTimerException
+    {
+        checkTimerValue(timerValue);
+        checkIntervalValue(intervalValue);
+        checkTimerRandom(randomFlag, style, minRandom, maxRandom, numberOfIterations);
+        checkLimitedHold(limitedHoldFlag, limitedHold);
+
+        //The countdown is kept, the next start restarts it
+        if(mCountdown != null)
+        {
+            mCountdown.cancelCountdown();
+        }
+        mTimerRunning = false;
+        detachFromTree();
+
+        FutureTask<?> command;
+        while((command = mCommands.poll()) != null)
+        {
+            command.cancel(false);
+        }
+
+        //The last session's window is not part of the next one
+        closeHoldWindow(true);
+        mHoldAnalytics = null;
+
+        mProtocol = null;
+        mCurrentPhaseIndex = 0;
+        mSamplingGrid = null;
+        mCustomCycle = null;
+        mSeekEnabled = false;
+        mIntervalHistory = null;
+        mIntervalLeadTime = 0;
+        mCatchUpPolicy = CatchUpPolicyEnum.REPLAY_ALL;
+        mTimeScale = 1;
+        mRequestedTimeScale = 1;
+        cancelFrameTick();
+        mFrameSource = null;
+        mSharedState = null;
+        mEventRing = null;
+        mTracer = null;
+
+        setTimerValue(timerValue);
+        setIntervalValue(intervalValue);
+        mNextIntervalValue = intervalValue;
+
+        setTimerRandom(randomFlag, style, minRandom, maxRandom, numberOfIterations);
+
+        setLimitedHold(limitedHoldFlag, limitedHold);
+
+        invalidate();
+        reset();
+    }
 //endregion
 
 //region TIMER ACTIONS
@@ -149,11 +441,41 @@ public abstract class BehaviorCountDownTimer
      */
     public void pause()
     {
-        if(mCustomizedCountdown!= null)
+        if(mCountdown != null)
+        {
+            mCountdown.cancelCountdown();
+        }
+        cancelFrameTick();
+
+        if(mTimerRunning)
         {
-            mCustomizedCountdown.cancel();
+            mPauseStartNanos = System.nanoTime();
+            TimerMetrics metrics = mMetrics;
+            if(metrics != null)
+            {
+                metrics.onPause();
+            }
         }
         mTimerRunning = false;
+        updateRunningMetric();
+
+        //A pause of its own, the child waits for its own start
+        mResumeWithParent = false;
+
+        //Children only tick with this timer so they are already frozen, stop their clocks too
+        for(int i = 0; i < mChildren.size(); ++i)
+        {
+            BehaviorCountDownTimer child = mChildren.get(i);
+            if(child.mTimerRunning)
+            {
+                child.pause();
+                child.mResumeWithParent = true;
+            }
+        }
+
+        publishSharedState();
+        publishEvent(SessionEventRing.TYPE_PAUSE);
+        trace(TimerTracer.TRACE_PAUSE);
     }
 
     /**
@@ -167,177 +489,710 @@ public abstract class BehaviorCountDownTimer
             reset();
         }
 
+        if(mPauseStartNanos != 0)
+        {
+            long pausedNanos = System.nanoTime() - mPauseStartNanos;
+            mPauseStats.add(pausedNanos / 1000000);
+            mPauseStartNanos = 0;
+
+            //Time paused doesn't count towards reaction latency
+            mHoldOpenNanos += pausedNanos;
+        }
+
+        if(mReconfigure && !applyReconfiguration())
+        {
+            //Shortened to less than what already elapsed while paused
+            return;
+        }
+
         createTimer(); //recreate it in this sense
-        mCustomizedCountdown.start();
         mTimerRunning = true;
+        updateRunningMetric();
+
+        publishSharedState();
+        publishEvent(SessionEventRing.TYPE_START);
+        trace(TimerTracer.TRACE_START);
+        mCountdown.startCountdown();
+
+        for(int i = 0; i < mChildren.size(); ++i)
+        {
+            BehaviorCountDownTimer child = mChildren.get(i);
+            if(child.mResumeWithParent && !child.mTimerRunning)
+            {
+                child.start();
+            }
+        }
     }
 
     /**
-     * Update current values for defined values and verify the timer members have proper
-     * values
+     * Jump to any point of the session, forward or back, keeping the timer running or paused.
+     * The interval, phase, iteration count and time left in the interval are found with a binary
+     * search and nothing in between is replayed, so no callbacks fire for the boundaries skipped.
+     *
+     * Protocols seek within their planned schedule. Without a protocol the intervals already
+     * run are searched and intervals past the last one are planned on the spot, after seeking
+     * back random intervals from the seek point on are drawn again. That needs seeking enabled
+     * before the session was reset, see setSeekEnabled().
+     * @param elapsedMillis Milliseconds from the start of the session, 0 to the defined timer
+     *                      value (exclusive)
      */
-    public void reset()
+    public void seekTo(long elapsedMillis)
     {
-        //Verify times are accurate
-        checkTimerFitting();
-
-        mNextIntervalValue = mDefinedIntervalValue;
-        mCurrentTimerValue = mDefinedTimerValue;
+        //A finished or changed session is reset first and so is one that hasn't started yet
+        //without a history, that records it from the start
+        boolean resets = mReset || mReconfigure || mCurrentTimerValue <= 0
+                || (mProtocol == null && mIntervalHistory == null && !sessionInProgress());
+        if(mProtocol == null && (resets ? !mSeekEnabled : mIntervalHistory == null))
+        {
+            throw new IllegalStateException("Seeking was not enabled when the session was reset.");
+        }
 
-        calculateNewIntervalValue();
-        mNextValueForAnInterval = mDefinedTimerValue - mNextIntervalValue;
+        boolean running = mTimerRunning;
+        if(mCountdown != null)
+        {
+            mCountdown.cancelCountdown();
+        }
 
-        mCurrentLimitedHold = false;
-        mTimerRunning = false;
-        mCurrentIterationValue = 0;
+        //A window entered by seeking has no open time to measure from
+        closeHoldWindow(true);
 
-        mReset = false;
-    }
-    //endregion
+        if(resets)
+        {
+            //Seek within the current definitions
+            reset();
+        }
 
-//region SETTERS
+        if(elapsedMillis < 0 || elapsedMillis >= mDefinedTimerValue)
+        {
+            throw new IllegalArgumentException("Seek to " + elapsedMillis + " is out of the session.");
+        }
 
-    /**
-     * Set the timer limited hold features on and off with a given
-     * hold value
-     * @param holdFlag - Toggle timer capability to do a limited hold
-     * @param holdValue - Value in milliseconds to do a limited hold after a regular interval
-     */
-    public void setLimitedHold(boolean holdFlag, long holdValue) throws LimitedHoldException
-    {
-        mDefinedLimitedHold = holdFlag;
-        if(holdFlag)
+        long timerValue = mDefinedTimerValue - elapsedMillis;
+        if(mProtocol != null)
         {
-            if(holdValue <= 0)
-            {
-                throw new LimitedHoldException("Limited hold value is set to an invalid number.");
-            }
-            mDefinedLimitedHoldValue = holdValue;
+            seekProtocol(elapsedMillis);
         }
         else
         {
-            mDefinedLimitedHoldValue = 0;
+            seekCycle(timerValue);
         }
 
-        //The timer values have changed, invalidate
-        invalidate();
+        mCurrentTimerValue = timerValue;
+        mCurrentIntervalValue = mCurrentTimerValue - mNextValueForAnInterval;
+        mIntervalStartTimerValue = mNextValueForAnInterval + mNextIntervalValue;
+        mIntervalApproachSignaled = false;
+        seekSamples(elapsedMillis);
+        publishSharedState();
+
+        if(running)
+        {
+            createTimer();
+            mTimerRunning = true;
+            mCountdown.startCountdown();
+        }
     }
 
     /**
-     * Sets the timer to do random interval values based on style
-     * @param randomFlag True to create random intervals
-     * @param style Set a style of randomized intervals
-     * @param minRandom Lowest value the random interval will use for manipulation
-     * @param maxRandom Highest value the random interval will use for manipulation
-     * @param numberOfIterations Used when style is ITERATION and the total iterations the timer
-     *                           would run for with random length intervals
+     * Update current values for defined values and verify the timer members have proper
+     * values
      */
-    public void setTimerRandom(boolean randomFlag,
-                               RandomStyleEnum style,
-                               long minRandom, long maxRandom,
-                               int numberOfIterations) throws MinMaxException, IterationException
+    public void reset()
     {
-
-        mDefinedRandomFlag = randomFlag;
-        mDefinedStyle = style;
-
-        if(mDefinedRandomFlag && (maxRandom <= 0 ||minRandom <= 0)
-                && (style == RandomStyleEnum.REGULAR || style == RandomStyleEnum.DEVIATION))
-        {
-            throw new MinMaxException("Min/Max random values are invalid.");
-        }
-
-        if(mDefinedRandomFlag && numberOfIterations <= 1 && style == RandomStyleEnum.ITERATION)
+        TimerMetrics metrics = mMetrics;
+        if(mReset && metrics != null)
         {
-            throw new IterationException("Iteration value is invalid.");
-
+            metrics.onInvalidateReset();
         }
+        closeHoldWindow(true);
 
-        if(minRandom > maxRandom)
+        if(mProtocol != null)
         {
-            //For some reason the incoming values are flipped where the max number wanted
-            //is actually smaller than the minimum specified
-            mDefinedMinRandomValue = maxRandom;
-            mDefinedMaxRandomValue = minRandom;
+            resetProtocol();
         }
         else
         {
-            mDefinedMinRandomValue = minRandom;
-            mDefinedMaxRandomValue = maxRandom;
-        }
+            //Verify times are accurate
+            compileCycle();
+            checkTimerFitting();
 
+            mNextIntervalValue = mDefinedIntervalValue;
+            mCurrentTimerValue = mDefinedTimerValue;
 
+            //Every cycle starts from its first step
+            calculateNewIntervalValue(0, mDefinedTimerValue);
+            mNextValueForAnInterval = mDefinedTimerValue - mNextIntervalValue;
 
-        mDefinedRandIterationValue = numberOfIterations;
+            if(mSeekEnabled)
+            {
+                if(mIntervalHistory == null)
+                {
+                    mIntervalHistory = new IntervalHistory();
+                }
+                mIntervalHistory.clear();
+                mIntervalHistory.add(mDefinedTimerValue, mNextIntervalValue, mCycleStep, 0);
+            }
+            else
+            {
+                mIntervalHistory = null;
+            }
+        }
 
-        invalidate();
-    }
+        mTimerRunning = false;
+        updateRunningMetric();
+        mCurrentIterationValue = 0;
 
-    /**
-     * Set the main timer's duration
-     * @param timerValue Milliseconds for the main timer's duration
-     */
-    public void setTimerValue(long timerValue) throws TotalTimerException
-    {
-        if(timerValue <= 0)
+        mReset = false;
+        mReconfigure = false;
+        mTimerValueChange = 0;
+        mNextSampleIndex = 0;
+        mIntervalApproachSignaled = false;
+        mMissedBoundaryCount = 0;
+
+        mPlannedIntervalStats.clear();
+        mRealizedIntervalStats.clear();
+        mLimitedHoldStats.clear();
+        mPauseStats.clear();
+        mPauseStartNanos = 0;
+        mIntervalStartTimerValue = mCurrentTimerValue;
+        mPlannedIntervalStats.add(mNextIntervalValue);
+
+        for(int i = 0; i < mChildren.size(); ++i)
         {
-            throw new TotalTimerException("Invalid timer value specified.");
+            BehaviorCountDownTimer child = mChildren.get(i);
+            if(child.mTimerRunning)
+            {
+                child.pause();
+            }
+            child.reset();
+            child.mResumeWithParent = true;
         }
-        mDefinedTimerValue = timerValue;
-        invalidate();
+
+        cancelFrameTick();
+        publishSharedState();
+        publishEvent(SessionEventRing.TYPE_RESET);
+        trace(TimerTracer.TRACE_RESET);
     }
 
     /**
-     * Set the timer's interval duration
-     * @param intervalValue Milliseconds for timer intervals
+     * Record the behavior the limited hold waits for e.g. from a button or sensor callback. Only
+     * the first response of a window counts towards the limited hold analytics. Call on the
+     * timer's thread (or through postCommand()).
+     * @return Milliseconds of timer time from the window opening to now, -1 if no limited hold
+     *         window is open
      */
-    public void setIntervalValue(long intervalValue) throws IntervalTimerException
+    public long recordResponse()
     {
-        if(intervalValue <= 0)
+        if(!mHoldWindowOpen) return -1;
+
+        //While paused the latency stays where the pause started
+        long now = mTimerRunning || mPauseStartNanos == 0 ? System.nanoTime() : mPauseStartNanos;
+        long latency = Math.max(0, (long) ((now - mHoldOpenNanos) / 1e6 * mTimeScale));
+        if(mHoldAnalytics != null)
         {
-            throw new IntervalTimerException("Interval value specified is invalid.");
+            mHoldAnalytics.recordLatency(latency);
         }
-        mDefinedIntervalValue = intervalValue;
-        invalidate();
+        return latency;
     }
-//endregion
+    //endregion
 
-//region GETTERS
+//region COMMANDS
     /**
-     * Getter for limited hold flag
-     * @return Returns true if the timer is running a limited hold after each interval
+     * Queue a command to run on the timer's thread, safe to call from any thread. Use this for
+     * the setters e.g. a sync or clicker thread changing the timer value.
+     * @param command Runs on the timer's thread, exceptions it throws (e.g. from a setter) are
+     *                reported by the future
+     * @return Completes once the command has run
      */
-    public boolean getLimitedHoldFlag()
+    public <T> Future<T> postCommand(Callable<T> command)
     {
-        return mDefinedLimitedHold;
+        FutureTask<T> task = new FutureTask<>(command);
+        mCommands.offer(task);
+        scheduleCommandDrain();
+        return task;
     }
 
     /**
-     * Getter for limited hold value
-     * @return Returns the limited hold value in milliseconds, zero if limited hold flag is false
+     * start() from any thread
+     * @return Completes once the timer has started
      */
-    public long getLimitedHoldValue()
+    public Future<Void> postStart()
     {
-        return mDefinedLimitedHoldValue;
+        return postCommand(new Callable<Void>()
+        {
+            @Override
+            public Void call()
+            {
+                start();
+                return null;
+            }
+        });
     }
 
     /**
-     * Get the defined timer value, this value can be different if it has been form fitted given
-     * by mTimerFitting
-     * @return Returns the main timer's defined value in milliseconds
+     * pause() from any thread
+     * @return Completes once the timer has paused
      */
-    public long getDefinedTimerValue()
+    public Future<Void> postPause()
     {
-        return mDefinedTimerValue;
+        return postCommand(new Callable<Void>()
+        {
+            @Override
+            public Void call()
+            {
+                pause();
+                return null;
+            }
+        });
     }
 
     /**
-     * Get the current timer's value
-     * @return Returns the main timer's current value in milliseconds
+     * reset() from any thread
+     * @return Completes once the timer has been reset
      */
-    public long getCurrentTimerValue()
+    public Future<Void> postReset()
     {
-        return mCurrentTimerValue;
+        return postCommand(new Callable<Void>()
+        {
+            @Override
+            public Void call()
+            {
+                reset();
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Run every queued command now, must be called on the timer's thread. Only needed when the
+     * timer has no command executor and isn't ticking.
+     */
+    public void runPendingCommands()
+    {
+        FutureTask<?> command;
+        while((command = mCommands.poll()) != null)
+        {
+            command.run();
+        }
+    }
+
+    /**
+     * Set what runs queued commands while the timer isn't ticking, it has to run them on the
+     * timer's thread e.g. the engine shard the timer ticks on
+     * @param executor Executor on the timer's thread, null to go back to the creating looper
+     */
+    public void setCommandExecutor(Executor executor)
+    {
+        mCommandExecutor = executor;
+    }
+//endregion
+
+//region SETTERS
+    //While a protocol is set its phases define the session, the definition setters (limited
+    //hold, random, timer and interval value) change the definitions saved for when the protocol
+    //is cleared and leave the running session alone.
+
+    /**
+     * Set the timer limited hold features on and off with a given
+     * hold value
+     * @param holdFlag - Toggle timer capability to do a limited hold
+     * @param holdValue - Value in milliseconds to do a limited hold after a regular interval
+     */
+    public void setLimitedHold(boolean holdFlag, long holdValue) throws LimitedHoldException
+    {
+        checkLimitedHold(holdFlag, holdValue);
+
+        if(mProtocol != null)
+        {
+            mSavedLimitedHold = holdFlag;
+            mSavedLimitedHoldValue = holdFlag ? holdValue : 0;
+            return;
+        }
+
+        mDefinedLimitedHold = holdFlag;
+        mDefinedLimitedHoldValue = holdFlag ? holdValue : 0;
+
+        //The timer values have changed, invalidate
+        invalidate();
+    }
+
+    /**
+     * Run the timer through a protocol of phases instead of a single configuration. Every phase
+     * is planned up front on reset and the timer moves from one phase to the next on the same
+     * tick, keeping the iteration count. While a protocol is set the defined values (interval,
+     * random, limited hold) follow the current phase and the defined timer value is the whole
+     * protocol.
+     * @param protocol Protocol to run, null to go back to the defined values from before the
+     *                 first protocol was set, with what the setters changed since
+     */
+    public void setProtocol(TimerProtocol protocol)
+    {
+        if(mProtocol == null && protocol != null)
+        {
+            saveDefinitions();
+        }
+        else if(mProtocol != null && protocol == null)
+        {
+            restoreDefinitions();
+        }
+        mProtocol = protocol;
+
+        //Switching what the timer runs always starts over
+        mReset = true;
+    }
+
+    /**
+     * Run every interval cycle through the given steps instead of interval then limited hold,
+     * e.g. cue, response window, consequence and inter-trial interval. Protocols keep running
+     * their own schedule.
+     * @param cycle Steps to run, null to go back to the interval and limited hold definitions
+     */
+    public void setIntervalCycle(IntervalCycle cycle)
+    {
+        mCustomCycle = cycle;
+
+        //The step index means nothing in another cycle, start over
+        mReset = true;
+    }
+
+    /**
+     * Get told ahead of every boundary (interval, limited hold start/end and the finish) so cues
+     * with output latency can be armed to land right on it
+     * @param leadMillis How long before the boundary to call onIntervalApproaching(), zero to
+     *                   turn it off
+     */
+    public void setIntervalLeadTime(long leadMillis)
+    {
+        mIntervalLeadTime = Math.max(0, leadMillis);
+    }
+
+    /**
+     * Choose the callbacks for boundaries a late tick passed, REPLAY_ALL by default
+     * @param catchUpPolicy See CatchUpPolicyEnum
+     */
+    public void setCatchUpPolicy(CatchUpPolicyEnum catchUpPolicy)
+    {
+        if(catchUpPolicy == null)
+        {
+            throw new IllegalArgumentException("Catch up policy can't be null.");
+        }
+        mCatchUpPolicy = catchUpPolicy;
+    }
+
+    /**
+     * Deliver a sampling grid's points through onSampleReached() while the timer runs. Points are
+     * measured from the start of the timer, the grid is read from the start on every reset.
+     * @param samplingGrid Grid to deliver, null to stop sampling
+     */
+    public void setSamplingGrid(SamplingGrid samplingGrid)
+    {
+        mSamplingGrid = samplingGrid;
+        mNextSampleIndex = 0;
+    }
+
+    /**
+     * Publish every transition (start, pause, reset, interval, limited hold, phase, finish) to a
+     * ring drained by another thread. Only this timer may publish to the ring.
+     * @param eventRing Ring to publish to, null to stop publishing
+     */
+    public void setEventRing(SessionEventRing eventRing)
+    {
+        mEventRing = eventRing;
+    }
+
+    /**
+     * Publish the live state on every tick and transition for other processes to sample
+     * @param sharedState Region opened with SharedTimerState.openWriter(), null to stop
+     *                    publishing
+     */
+    public void setSharedState(SharedTimerState sharedState)
+    {
+        mSharedState = sharedState;
+        publishSharedState();
+    }
+
+    /**
+     * Measure the reaction latency, hits and misses of every limited hold window from now on
+     * @param analytics Fed by recordResponse(), null to stop measuring
+     */
+    public void setLimitedHoldAnalytics(LimitedHoldAnalytics analytics)
+    {
+        if(mHoldAnalytics != null)
+        {
+            mHoldAnalytics.abandonWindow();
+        }
+        mHoldAnalytics = analytics;
+    }
+
+    /**
+     * Only set by TimerMetricsRegistry, takes effect right away
+     */
+    void setMetrics(TimerMetrics metrics)
+    {
+        mMetrics = metrics;
+        updateRunningMetric();
+    }
+
+    /**
+     * Trace every transition and tick e.g. into a {@link ChromeTraceRecorder} to see the timer on
+     * a profiling timeline
+     * @param tracer Tracer called on the timer's thread, null to turn tracing off
+     */
+    public void setTracer(TimerTracer tracer)
+    {
+        mTracer = tracer;
+    }
+
+    /**
+     * Play the timer faster or slower than real time e.g. to demo a protocol or train at speed.
+     * Ticks keep their real time rate so every tick covers more timer time at high speeds,
+     * boundaries keep their exact timer values. Lead times and sample points are timer time.
+     * Call on the timer's thread (or through postCommand()), a running timer changes speed at
+     * its next tick.
+     * @param scale Timer milliseconds per real millisecond, 1 for real time
+     */
+    public void setTimeScale(double scale)
+    {
+        if(!(scale > 0) || Double.isInfinite(scale))
+        {
+            throw new IllegalArgumentException("Time scale must be positive.");
+        }
+
+        mRequestedTimeScale = scale;
+    }
+
+    /**
+     * Deliver onTick() on display frames instead of with every tick, at most once per frame, so
+     * a countdown UI redraws in step with the display. Boundaries, samples and every other
+     * callback still fire on the tick they are due on.
+     * @param frameSource e.g. a {@link ChoreographerFrameSource}, null to call onTick() with
+     *                    every tick
+     */
+    public void setFrameSource(FrameSource frameSource)
+    {
+        cancelFrameTick();
+        mFrameSource = frameSource;
+    }
+
+    /**
+     * Replace what drives the timer, takes effect the next time the timer is started
+     * @param factory Creates the countdown that delivers ticks e.g. a {@link TimerEngine}
+     */
+    public void setCountdownFactory(Countdown.Factory factory)
+    {
+        mCountdownFactory = factory == null ? CustomizedCountdown.FACTORY : factory;
+    }
+
+    /**
+     * Nest a timer in this one e.g. a trial timer in the session timer. The child ticks on this
+     * timer's ticks instead of a countdown of its own, so the two never drift apart and wake the
+     * thread once. It starts, pauses and resets with this timer and is stopped when this timer
+     * finishes, it can still be started and paused on its own while this timer runs. A child
+     * started while this timer doesn't run waits for it.
+     * @param child Timer that is not running and not nested yet, it may have children of its own
+     */
+    public void addChildTimer(BehaviorCountDownTimer child)
+    {
+        for(BehaviorCountDownTimer ancestor = this; ancestor != null; ancestor = ancestor.mParent)
+        {
+            if(ancestor == child)
+            {
+                throw new IllegalArgumentException("A timer can't be nested in itself.");
+            }
+        }
+        if(child.mParent != null || child.mTimerRunning)
+        {
+            throw new IllegalStateException("Timer is already nested or running.");
+        }
+
+        child.mUnnestedCountdownFactory = child.mCountdownFactory;
+        child.setCountdownFactory(mChildCountdownFactory);
+        child.mParent = this;
+        child.mResumeWithParent = !mTimerRunning;
+        mChildren.add(child);
+    }
+
+    /**
+     * Take the timer out of its parent and every child out of it, see removeChildTimer()
+     */
+    void detachFromTree()
+    {
+        if(mParent != null)
+        {
+            mParent.removeChildTimer(this);
+        }
+        for(int i = mChildren.size() - 1; i >= 0; --i)
+        {
+            removeChildTimer(mChildren.get(i));
+        }
+    }
+
+    /**
+     * Take a child out of this timer, it is paused and goes back to the countdown factory it had
+     * before it was nested
+     * @return False if it wasn't a child of this timer
+     */
+    public boolean removeChildTimer(BehaviorCountDownTimer child)
+    {
+        if(child.mParent != this) return false;
+
+        if(child.mTimerRunning)
+        {
+            child.pause();
+        }
+        mChildren.remove(child);
+        child.mParent = null;
+        child.mResumeWithParent = false;
+        child.mCountdownFactory = child.mUnnestedCountdownFactory;
+        child.mUnnestedCountdownFactory = null;
+        return true;
+    }
+
+    /**
+     * Sets the timer to do random interval values based on style
+     * @param randomFlag True to create random intervals
+     * @param style Set a style of randomized intervals
+     * @param minRandom Lowest value the random interval will use for manipulation
+     * @param maxRandom Highest value the random interval will use for manipulation
+     * @param numberOfIterations Used when style is ITERATION and the total iterations the timer
+     *                           would run for with random length intervals
+     */
+    public void setTimerRandom(boolean randomFlag,
+                               RandomStyleEnum style,
+                               long minRandom, long maxRandom,
+                               int numberOfIterations) throws MinMaxException, IterationException
+    {
+        checkTimerRandom(randomFlag, style, minRandom, maxRandom, numberOfIterations);
+
+        if(minRandom > maxRandom)
+        {
+            //For some reason the incoming values are flipped where the max number wanted
+            //is actually smaller than the minimum specified
+            long flipped = minRandom;
+            minRandom = maxRandom;
+            maxRandom = flipped;
+        }
+
+        if(mProtocol != null)
+        {
+            mSavedRandomFlag = randomFlag;
+            mSavedStyle = style;
+            mSavedMinRandomValue = minRandom;
+            mSavedMaxRandomValue = maxRandom;
+            mSavedRandIterationValue = numberOfIterations;
+            return;
+        }
+
+        mDefinedRandomFlag = randomFlag;
+        mDefinedStyle = style;
+        mDefinedMinRandomValue = minRandom;
+        mDefinedMaxRandomValue = maxRandom;
+        mDefinedRandIterationValue = numberOfIterations;
+
+        invalidate();
+    }
+
+    /**
+     * Record the intervals of a session without a protocol so seekTo() can find them. The
+     * history grows by one entry per interval, so leave it off for timers that never seek.
+     * @param seekEnabled True to record from the next reset on, false to drop the history
+     */
+    public void setSeekEnabled(boolean seekEnabled)
+    {
+        mSeekEnabled = seekEnabled;
+        if(!seekEnabled)
+        {
+            mIntervalHistory = null;
+        }
+    }
+
+    /**
+     * Seed the random generator so the same random intervals can be reproduced
+     * @param seed Seed for the random intervals, takes effect on the next interval calculated
+     */
+    public void setRandomSeed(long seed)
+    {
+        mRandomGen.setSeed(seed);
+    }
+
+    /**
+     * Set the main timer's duration. While the timer is running or paused the elapsed time is
+     * kept and only the time left changes
+     * @param timerValue Milliseconds for the main timer's duration
+     */
+    public void setTimerValue(long timerValue) throws TotalTimerException
+    {
+        checkTimerValue(timerValue);
+
+        if(mProtocol != null)
+        {
+            mSavedTimerValue = timerValue;
+            return;
+        }
+
+        if(sessionInProgress())
+        {
+            //Keep the time already elapsed, only what's left of the timer changes
+            mTimerValueChange += timerValue - mDefinedTimerValue;
+        }
+        mDefinedTimerValue = timerValue;
+        invalidate();
+    }
+
+    /**
+     * Set the timer's interval duration, while running it applies from the next interval on
+     * @param intervalValue Milliseconds for timer intervals
+     */
+    public void setIntervalValue(long intervalValue) throws IntervalTimerException
+    {
+        checkIntervalValue(intervalValue);
+
+        if(mProtocol != null)
+        {
+            mSavedIntervalValue = intervalValue;
+            return;
+        }
+
+        mDefinedIntervalValue = intervalValue;
+        invalidate();
+    }
+//endregion
+
+//region GETTERS
+    /**
+     * Getter for limited hold flag
+     * @return Returns true if the timer is running a limited hold after each interval
+     */
+    public boolean getLimitedHoldFlag()
+    {
+        return mDefinedLimitedHold;
+    }
+
+    /**
+     * Getter for limited hold value
+     * @return Returns the limited hold value in milliseconds, zero if limited hold flag is false
+     */
+    public long getLimitedHoldValue()
+    {
+        return mDefinedLimitedHoldValue;
+    }
+
+    /**
+     * Get the defined timer value, this value can be different if it has been form fitted given
+     * by mTimerFitting
+     * @return Returns the main timer's defined value in milliseconds
+     */
+    public long getDefinedTimerValue()
+    {
+        return mDefinedTimerValue;
+    }
+
+    /**
+     * Get the current timer's value
+     * @return Returns the main timer's current value in milliseconds
+     */
+    public long getCurrentTimerValue()
+    {
+        return mCurrentTimerValue;
     }
 
     /**
@@ -346,274 +1201,1183 @@ public abstract class BehaviorCountDownTimer
      */
     public long getCurrentIntervalValue()
     {
-        return mCurrentIntervalValue;
+        return mCurrentIntervalValue;
+    }
+
+    /**
+     * Returns current iteration value
+     * @return Returns the current iteration value
+     */
+    public int getCurrentIterationValue()
+    {
+        return mCurrentIterationValue;
+    }
+
+    /**
+     * Returns the length in milliseconds the next iteration is
+     * @return milliseconds length of the next iteration
+     */
+    public long getNextIntervalValue() { return mNextIntervalValue; }
+
+    /**
+     * Returns the type of fitting that was done to the timer
+     * NO_ADJUSTMENT, INTERVAL_ADJUSTMENT or ITERATION ADJUSTMENT
+     * @return The type of adjustment done to the timer
+     */
+    public IllFitEnum getTimerFitting() { return mTimerFitting; }
+
+    public CatchUpPolicyEnum getCatchUpPolicy() { return mCatchUpPolicy; }
+
+    /**
+     * @return The timer this one is nested in, null if it isn't
+     */
+    public BehaviorCountDownTimer getParentTimer() { return mParent; }
+
+    /**
+     * @return Boundaries passed behind another one in the same tick since the last reset
+     */
+    public int getMissedBoundaryCount() { return mMissedBoundaryCount; }
+
+    /**
+     * Returns true if the current interval we are running is a limited hold
+     * @return True if the current interval session is a limited hold
+     */
+    public boolean getCurrentLimitedHoldFlag() { return mCurrentLimitedHold; }
+
+    /**
+     * Returns true if the timer has random intervals
+     * @return True if the timer is doing random intervals
+     */
+    public boolean getRandomFlag() { return mDefinedRandomFlag; }
+
+    /**
+     * Returns true if the timer is currently counting down
+     * @return True if the timer has been started and not paused or finished
+     */
+    public boolean getTimerRunningFlag() { return mTimerRunning; }
+
+    /**
+     * @return Timer milliseconds per real millisecond
+     */
+    public double getTimeScale() { return mRequestedTimeScale; }
+
+    /**
+     * Planned length of every regular interval started since the last reset
+     * @return Running statistics in milliseconds
+     */
+    public StreamingStatistics getPlannedIntervalStats() { return mPlannedIntervalStats; }
+
+    /**
+     * Length every regular interval actually ran for since the last reset, in timer time
+     * @return Running statistics in milliseconds
+     */
+    public StreamingStatistics getRealizedIntervalStats() { return mRealizedIntervalStats; }
+
+    /**
+     * Length every limited hold actually ran for since the last reset, in timer time
+     * @return Running statistics in milliseconds
+     */
+    public StreamingStatistics getLimitedHoldStats() { return mLimitedHoldStats; }
+
+    /**
+     * How long each pause lasted since the last reset
+     * @return Running statistics in milliseconds
+     */
+    public StreamingStatistics getPauseStats() { return mPauseStats; }
+
+    /**
+     * Returns the fleet metrics of the timer
+     * @return Metrics or null when the timer isn't registered with a TimerMetricsRegistry
+     */
+    public TimerMetrics getMetrics() { return mMetrics; }
+
+    /**
+     * @return Analytics of the limited hold windows or null when they aren't measured
+     */
+    public LimitedHoldAnalytics getLimitedHoldAnalytics() { return mHoldAnalytics; }
+
+    /**
+     * Returns the interval cycle the timer is running
+     * @return The custom cycle or the one compiled from the definitions
+     */
+    public IntervalCycle getIntervalCycle() { return mCycle; }
+
+    /**
+     * Returns the step of the interval cycle that is running
+     * @return Step index into getIntervalCycle()
+     */
+    public int getCurrentCycleStep() { return mCycleStep; }
+
+    /**
+     * Returns the protocol the timer is running
+     * @return The protocol or null when running a single configuration
+     */
+    public TimerProtocol getProtocol() { return mProtocol; }
+
+    /**
+     * Returns the index of the protocol phase that is running
+     * @return Current phase index, always 0 without a protocol
+     */
+    public int getCurrentPhaseIndex() { return mCurrentPhaseIndex; }
+
+//endregion
+
+//region CALLBACKS
+    public abstract void onTick();
+    public abstract void onFinish();
+    public abstract void onIntervalReached();
+
+    /**
+     * Called on every boundary with the step of the interval cycle that just started, calls
+     * onIntervalReached() unless overridden
+     * @param cycleStep Step index into getIntervalCycle() e.g. 1 when the limited hold of the
+     *                  default cycle starts
+     */
+    public void onIntervalReached(int cycleStep)
+    {
+        onIntervalReached();
+    }
+
+    /**
+     * Called when a protocol moves to its next phase, right before onIntervalReached() for the
+     * phase's first interval
+     */
+    public void onPhaseReached() {}
+
+    /**
+     * Called once per interval on the last tick before the lead time of the next boundary, at
+     * least the lead time ahead unless the interval is shorter.
+     * getCurrentLimitedHoldFlag() tells which edge is coming: true means the hold is about to
+     * end, false with a limited hold defined means one is about to start.
+     * @param millisUntilInterval Exact milliseconds left until the boundary, schedule the cue
+     *                            with this rather than the lead time since ticks are 100ms apart
+     *                            e.g. postDelayed(cue, millisUntilInterval - leadMillis)
+     */
+    public void onIntervalApproaching(long millisUntilInterval) {}
+
+    /**
+     * Called for every sampling grid point the timer passes, in order
+     * @param sampleIndex Index of the point in the grid
+     */
+    public void onSampleReached(int sampleIndex) {}
+
+    /**
+     * Called once after a tick passed more than one boundary, when all of them have been handled
+     * the way the catch up policy says
+     * @param missedCount Boundaries passed before the one the timer is in now
+     */
+    public void onBoundariesMissed(int missedCount) {}
+//endregion
+
+//region PROTECTED
+    @SuppressWarnings("WeakerAccess")
+    protected void innerTick(long millisUntilFinished)
+    {
+        mCurrentTimerValue = mTimeScale == 1 ? millisUntilFinished
+                : mScaleTimerOrigin - (long) ((mScaleRealOrigin - millisUntilFinished) * mTimeScale);
+        mTreeClock = mTreeClockOrigin + (long) ((mScaleRealOrigin - millisUntilFinished) * mTimeScale);
+
+        if(mTimeScale != mRequestedTimeScale)
+        {
+            //Start over from this tick so the new speed counts from a known timer value
+            mCountdown.cancelCountdown();
+            createTimer();
+            mCountdown.startCountdown();
+        }
+
+        if(mReconfigure && !applyReconfiguration())
+        {
+            //The change ended the timer
+            return;
+        }
+
+        mCurrentIntervalValue = mCurrentTimerValue - mNextValueForAnInterval;
+        checkForIntervalChanges();
+        checkForApproachingInterval();
+        checkForSamples(mDefinedTimerValue - mCurrentTimerValue);
+
+        TimerMetrics metrics = mMetrics;
+        if(metrics != null)
+        {
+            metrics.onTick();
+        }
+        publishSharedState();
+
+        trace(TimerTracer.TRACE_TICK);
+        deliverTick();
+        deliverChildTicks();
+
+        if(mReset)
+        {
+            //The timer was running but the reset flag seemed to have been queued.
+            //The user must have changed the protocol while it was running.
+            mCountdown.cancelCountdown();
+            reset();
+        }
+
+        runPendingCommands();
+    }
+
+    @SuppressWarnings("WeakerAccess")
+    protected void innerFinish()
+    {
+        //The countdown ran out, the tree has reached its planned end
+        mTreeClock = mTreeClockOrigin + (long) (mScaleRealOrigin * mTimeScale);
+        finishSession();
+    }
+//endregion
+
+//region PRIVATE HELPER METHODS
+    /**
+     * End the session at the current tree clock, the countdown has already stopped
+     */
+    private void finishSession()
+    {
+        //A fast timer covers seconds per tick, boundaries after its last tick still come first
+        if(mNextValueForAnInterval > 0)
+        {
+            mCurrentTimerValue = 0;
+            mCurrentIntervalValue = -mNextValueForAnInterval;
+            checkForIntervalChanges();
+        }
+
+        //Children due by the end finish first, the rest stop with this timer
+        deliverChildTicks();
+        for(int i = 0; i < mChildren.size(); ++i)
+        {
+            BehaviorCountDownTimer child = mChildren.get(i);
+            if(child.mTimerRunning)
+            {
+                child.pause();
+            }
+        }
+
+        TimerDiagnostics.debug(TAG, "finished.");
+        mTimerRunning = false;
+        mResumeWithParent = false;
+        updateRunningMetric();
+
+        // Final increment iteration when the step counts one
+        if(mCurrentCountsIteration)
+            ++mCurrentIterationValue;
+
+        //Zero values since the timer has finished
+        mCurrentTimerValue = 0;
+        mCurrentIntervalValue = 0;
+        recordRealizedInterval();
+        if(mCurrentLimitedHold)
+        {
+            closeHoldWindow(false);
+            trace(TimerTracer.TRACE_HOLD_END);
+        }
+        mCurrentLimitedHold = false;
+
+        //Points right at the end of the timer are due with the finish
+        checkForSamples(mDefinedTimerValue);
+
+        cancelFrameTick();
+        publishSharedState();
+        publishEvent(SessionEventRing.TYPE_FINISH);
+        trace(TimerTracer.TRACE_FINISH);
+        onFinish();
+
+        runPendingCommands();
+    }
+
+    //Argument checks for the setters and ProtocolPhase, they change nothing so reinitialize()
+    //can run them all before it touches the timer
+    static void checkTimerValue(long timerValue) throws TotalTimerException
+    {
+        if(timerValue <= 0)
+        {
+            throw new TotalTimerException("Invalid timer value specified.");
+        }
+    }
+
+    static void checkIntervalValue(long intervalValue) throws IntervalTimerException
+    {
+        if(intervalValue <= 0)
+        {
+            throw new IntervalTimerException("Interval value specified is invalid.");
+        }
+    }
+
+    static void checkTimerRandom(boolean randomFlag,
+                                 RandomStyleEnum style,
+                                 long minRandom, long maxRandom,
+                                 int numberOfIterations)
+            throws MinMaxException, IterationException
+    {
+        if(randomFlag && (maxRandom <= 0 ||minRandom <= 0)
+                && (style == RandomStyleEnum.REGULAR || style == RandomStyleEnum.DEVIATION))
+        {
+            throw new MinMaxException("Min/Max random values are invalid.");
+        }
+
+        if(randomFlag && numberOfIterations <= 1 && style == RandomStyleEnum.ITERATION)
+        {
+            throw new IterationException("Iteration value is invalid.");
+        }
+    }
+
+    static void checkLimitedHold(boolean holdFlag, long holdValue) throws LimitedHoldException
+    {
+        if(holdFlag && holdValue <= 0)
+        {
+            throw new LimitedHoldException("Limited hold value is set to an invalid number.");
+        }
+    }
+
+    private void checkTimerFitting()
+    {
+        mTimerFitting = IllFitEnum.NO_ADJUSTMENT;
+
+        //Check to see if we are doing random intervals, if we are timer fitting is set to
+        //no adjustments
+        if(mDefinedRandomFlag) return;
+
+        //Check to make sure we didn't get an invalid number e.g. less than 0 and/or iteration
+        //is not less than 1 second. Maybe this check should be done prior to this timer...?
+        if(mDefinedRandIterationValue <= 0 &&
+                (mDefinedTimerValue / 1000) / mDefinedRandIterationValue <= 1)
+        {
+            mDefinedRandIterationValue = 1;
+            mTimerFitting = IllFitEnum.ITERATION_ADJUSTMENT;
+        }
+
+        //Cycles with random steps can't be fitted
+        long fittedValue = fitTimerValue(mDefinedTimerValue,
+                mCycle.getCycleLength(mDefinedIntervalValue));
+        if(fittedValue != mDefinedTimerValue)
+        {
+            mDefinedTimerValue = fittedValue;
+            mTimerFitting = IllFitEnum.INTERVAL_ADJUSTMENT;
+        }
+    }
+
+    /**
+     * The interval time may not fit perfectly in the timer, this adjusts the timer up to fit an
+     * equal set of cycles. Shared with ProtocolPhase.
+     * @param cycleLength Length of one cycle, zero or less when it can't be fitted
+     * @return Fitted timer value, the same value when it already fits
+     */
+    static long fitTimerValue(long timerValue, long cycleLength)
+    {
+        if(cycleLength <= 0) return timerValue;
+
+        long modResult = timerValue % cycleLength;
+        return modResult == 0 ? timerValue : timerValue + cycleLength - modResult;
+    }
+
+    /**
+     * Move the cycle to a step and calculate its length. Only steps the cycle marks as limited
+     * holds (e.g. the limited hold after each regular interval) open a hold window.
+     * @param cycleStep Step that starts, 0 on reset
+     */
+    private void calculateNewIntervalValue(int cycleStep, long timeLeft)
+    {
+        mCycleStep = cycleStep;
+        mCurrentLimitedHold = mCycle.isLimitedHold(cycleStep);
+        mCurrentCountsIteration = mCycle.getCountsIteration(cycleStep);
+
+        switch(mCycle.getKind(cycleStep))
+        {
+            case IntervalCycle.KIND_FIXED:
+                mNextIntervalValue = mCycle.getMinLength(cycleStep);
+                break;
+            case IntervalCycle.KIND_RANDOM:
+                mNextIntervalValue = regularRandomInterval(mRandomGen.nextDouble(),
+                        mCycle.getMinLength(cycleStep), mCycle.getMaxLength(cycleStep),
+                        timeLeft);
+                break;
+            case IntervalCycle.KIND_DEFINED:
+            default:
+                getDefinedInterval(timeLeft);
+        }
+
+        if(mNextIntervalValue <= 0)
+        {
+            //A random draw that rounded down to nothing lasts a second, like planned protocol
+            // intervals
+            mNextIntervalValue = Math.min(1000, timeLeft);
+        }
+
+        if(mCurrentLimitedHold)
+        {
+            TimerDiagnostics.debug(TAG, "Limited Hold started.");
+        }
+        mCurrentIntervalValue = mNextIntervalValue;
+    }
+
+    /**
+     * Calculate the interval for the next step of the cycle and where it ends. It starts on the
+     * second of alignFrom but never after the boundary that ended the last one, so sub-second
+     * intervals keep their own milliseconds, and it is drawn against the time left from its
+     * start. Every boundary is below the last one, a tick can't pass the same boundary twice.
+     * @param boundary Timer value the last interval ended at
+     * @param alignFrom Timer value to realign from, at most the boundary
+     */
+    private void planCycleInterval(long boundary, long alignFrom)
+    {
+        long start = Math.min(boundary, alignToSecond(alignFrom));
+        calculateNewIntervalValue(mCycle.getNextStep(mCycleStep), start);
+        mNextValueForAnInterval = start - mNextIntervalValue;
+        if(mIntervalHistory != null)
+        {
+            mIntervalHistory.add(start, mNextIntervalValue, mCycleStep, mCurrentIterationValue);
+        }
+    }
+
+    /**
+     * The defined interval, randomized by the defined style
+     */
+    private void getDefinedInterval(long timeLeft)
+    {
+        mNextIntervalValue = mDefinedIntervalValue;
+
+        //Check if we are doing randomized intervals
+        if(mDefinedRandomFlag)
+        {
+            switch(mDefinedStyle)
+            {
+                case ITERATION:
+                    TimerDiagnostics.debug(TAG, "Iteration Random");
+                    getIterationInterval(timeLeft);
+                    break;
+                case DEVIATION:
+                    TimerDiagnostics.debug(TAG, "Deviation Random");
+                    getDeviationInterval(timeLeft);
+                    break;
+                case REGULAR:
+                    TimerDiagnostics.debug(TAG, "Regular Random");
+                default:
+                    getRegularRandomInterval(timeLeft);
+
+            }
+        }
+    }
+
+    /**
+     * Compile the default cycle from the definitions and pick the cycle to run
+     */
+    private void compileCycle()
+    {
+        mDefaultCycle.compileDefault(mDefinedLimitedHold, mDefinedLimitedHoldValue);
+        mCycle = mCustomCycle == null || mProtocol != null ? mDefaultCycle : mCustomCycle;
+    }
+
+    /**
+     * Create instance of the countdown timer
+     */
+    private void createTimer()
+    {
+        //The countdown only knows real time, it finishes when the scaled timer value runs out
+        mTimeScale = mRequestedTimeScale;
+        mScaleTimerOrigin = mCurrentTimerValue;
+        mScaleRealOrigin = mTimeScale == 1 ? mCurrentTimerValue
+                : (long) Math.ceil(mCurrentTimerValue / mTimeScale);
+        mTreeClockOrigin = mTreeClock;
+
+        if(mCountdown instanceof Countdown.Restartable && mCountdownCreator == mCountdownFactory)
+        {
+            //Same driver, only the length changed
+            mCountdown.cancelCountdown();
+            ((Countdown.Restartable) mCountdown).setMillisInFuture(mScaleRealOrigin);
+            return;
+        }
+        mCountdown = mCountdownFactory.create(mScaleRealOrigin, TICK_INTERVAL, this);
+        mCountdownCreator = mCountdownFactory;
+    }
+
+    /**
+     * Check if we have iterated
+     */
+    private void checkForIntervalChanges()
+    {
+        //A tick covers more than one boundary when it comes late or the timer plays fast enough.
+        // Every boundary is stepped through once, nothing in between is replayed.
+        TimerMetrics metrics = mMetrics;
+        int passed = 0;
+        while(mCurrentIntervalValue <= 0)
+        {
+            ++passed;
+            TimerDiagnostics.debug(TAG, "Interval completed.");
+
+            //How far past the boundary this tick landed
+            long lateness = -mCurrentIntervalValue;
+            if(metrics != null)
+            {
+                metrics.onBoundary(lateness);
+            }
+
+            recordRealizedInterval();
+            mIntervalApproachSignaled = false;
+            boolean holdEnded = mCurrentLimitedHold;
+
+            //Increment iteration when the step that ended counts one
+            if(mCurrentCountsIteration)
+            {
+                ++mCurrentIterationValue;
+                TimerDiagnostics.debug(TAG, "Iteration count: {}", mCurrentIterationValue);
+            }
+
+            boolean phaseChanged = false;
+            if(mProtocol != null)
+            {
+                //Planned ahead, just move to the next interval of the schedule
+                phaseChanged = advanceProtocolSchedule();
+            }
+            else
+            {
+                //The interval will NEVER exactly tick at the TICK_RATE. We go back to the last
+                // second of that interval and realign the milliseconds so our interval time and
+                // our timer time align. A tick that lands exactly on the second is already
+                // aligned and must not be pushed back a full second. A tick a second or more past
+                // the boundary (late or played fast) realigns from the boundary's own second.
+                long alignFrom = Math.max(mCurrentTimerValue, mNextValueForAnInterval - 999);
+                planCycleInterval(mNextValueForAnInterval, alignFrom);
+
+                TimerDiagnostics.debug(TAG, "Next Interval: {}", mNextIntervalValue);
+            }
+
+            //The end of the timer is the finish, not a boundary
+            long untilNextBoundary = mCurrentTimerValue - mNextValueForAnInterval;
+            boolean caughtUp = untilNextBoundary > 0 || mNextValueForAnInterval <= 0;
+            boolean notify = mCatchUpPolicy == CatchUpPolicyEnum.REPLAY_ALL
+                    || (caughtUp && (passed == 1 || mCatchUpPolicy == CatchUpPolicyEnum.LATEST_ONLY));
+
+            if(phaseChanged)
+            {
+                publishEvent(SessionEventRing.TYPE_PHASE);
+                if(notify) onPhaseReached();
+            }
+
+            if(!mCurrentLimitedHold)
+            {
+                mPlannedIntervalStats.add(mNextIntervalValue);
+            }
+
+            publishEvent(mCurrentLimitedHold
+                    ? SessionEventRing.TYPE_LIMITED_HOLD : SessionEventRing.TYPE_INTERVAL);
+            if(holdEnded)
+            {
+                closeHoldWindow(false);
+                trace(TimerTracer.TRACE_HOLD_END);
+            }
+            if(mCurrentLimitedHold)
+            {
+                openHoldWindow(lateness);
+            }
+            trace(mCurrentLimitedHold ? TimerTracer.TRACE_HOLD_START : TimerTracer.TRACE_INTERVAL);
+            if(notify) onIntervalReached(mCycleStep);
+
+            untilNextBoundary = mCurrentTimerValue - mNextValueForAnInterval;
+            if(untilNextBoundary > 0 || mNextValueForAnInterval <= 0)
+            {
+                break;
+            }
+            mCurrentIntervalValue = untilNextBoundary;
+        }
+
+        if(passed > 1)
+        {
+            mMissedBoundaryCount += passed - 1;
+            TimerDiagnostics.debug(TAG, "Caught up on {} boundaries.", passed - 1);
+            onBoundariesMissed(passed - 1);
+        }
+    }
+
+    /**
+     * Signal the next boundary on the last tick before the lead time, the next tick would come
+     * too late for a lead shorter than the ticks. The end of the timer counts as a boundary for
+     * the last interval.
+     */
+    private void checkForApproachingInterval()
+    {
+        if(mIntervalLeadTime <= 0 || mIntervalApproachSignaled) return;
+
+        long untilBoundary = mCurrentTimerValue - Math.max(mNextValueForAnInterval, 0);
+        long tickSpacing = (long) (TICK_INTERVAL * mTimeScale);
+        if(untilBoundary > 0 && untilBoundary <= mIntervalLeadTime + tickSpacing)
+        {
+            mIntervalApproachSignaled = true;
+            onIntervalApproaching(untilBoundary);
+        }
+    }
+
+    /**
+     * Add the interval that just ended to the realized statistics
+     */
+    private void recordRealizedInterval()
+    {
+        long realized = mIntervalStartTimerValue - mCurrentTimerValue;
+        if(mCurrentLimitedHold)
+        {
+            mLimitedHoldStats.add(realized);
+        }
+        else
+        {
+            mRealizedIntervalStats.add(realized);
+        }
+        mIntervalStartTimerValue = mCurrentTimerValue;
+    }
+
+    /**
+     * Deliver every sampling point up to the elapsed time
+     */
+    private void checkForSamples(long elapsed)
+    {
+        if(mSamplingGrid == null) return;
+
+        while(mNextSampleIndex < mSamplingGrid.getCount()
+                && mSamplingGrid.getPoint(mNextSampleIndex) <= elapsed)
+        {
+            onSampleReached(mNextSampleIndex++);
+        }
+    }
+
+    private void getRegularRandomInterval(long timeLeft)
+    {
+        mNextIntervalValue = regularRandomInterval(mRandomGen.nextDouble(),
+                mDefinedMinRandomValue, mDefinedMaxRandomValue, timeLeft);
     }
 
-    /**
-     * Returns current iteration value
-     * @return Returns the current iteration value
-     */
-    public int getCurrentIterationValue()
+    private void getIterationInterval(long timeLeft)
     {
-        return mCurrentIterationValue;
+        mNextIntervalValue = iterationInterval(mRandomGen.nextDouble(),
+                mDefinedRandIterationValue, mCurrentIterationValue, timeLeft);
     }
 
-    /**
-     * Returns the length in milliseconds the next iteration is
-     * @return milliseconds length of the next iteration
-     */
-    public long getNextIntervalValue() { return mNextIntervalValue; }
+    private void getDeviationInterval(long timeLeft)
+    {
+        //Draw order matters to reproduce seeded intervals, the min/max draw comes first
+        double random = mRandomGen.nextDouble();
+        mNextIntervalValue = deviationInterval(random, mRandomGen.nextBoolean(),
+                mDefinedIntervalValue, mDefinedMinRandomValue, mDefinedMaxRandomValue,
+                timeLeft);
+    }
 
     /**
-     * Returns the type of fitting that was done to the timer
-     * NO_ADJUSTMENT, INTERVAL_ADJUSTMENT or ITERATION ADJUSTMENT
-     * @return The type of adjustment done to the timer
+     * Round a timer value up to its whole second. A value already on the second stays where it
+     * is, a tick that lands exactly on a boundary must not be pushed back a full second (that
+     * made a zero length interval and a double boundary).
      */
-    public IllFitEnum getTimerFitting() { return mTimerFitting; }
+    static long alignToSecond(long timerValue)
+    {
+        return timerValue + ((1000 - (timerValue % 1000)) % 1000);
+    }
 
     /**
-     * Returns true if the current interval we are running is a limited hold
-     * @return True if the current interval session is a limited hold
+     * Random interval pulled from min/max, shared with anything that plans intervals ahead
+     * @param random Uniform random draw in [0, 1)
+     * @param timeLeft Milliseconds left on the timer, the interval never goes past it
      */
-    public boolean getCurrentLimitedHoldFlag() { return mCurrentLimitedHold; }
+    static long regularRandomInterval(double random, long minRandom, long maxRandom, long timeLeft)
+    {
+        long interval = minRandom
+                + (long) ((random)
+                * ((maxRandom - minRandom) + 1));
 
-    /**
-     * Returns true if the timer has random intervals
-     * @return True if the timer is doing random intervals
-     */
-    public boolean getRandomFlag() { return mDefinedRandomFlag; }
+        interval = interval - (interval % 1000); // go to nearest second
 
-//endregion
+        //Check if our interval is larger than our current timer, if it is just set the interval
+        //to the current timer
+        if(interval >= timeLeft)
+        {
+            interval = timeLeft;
+        }
 
-//region CALLBACKS
-    public abstract void onTick();
-    public abstract void onFinish();
-    public abstract void onIntervalReached();
-//endregion
+        return interval;
+    }
 
-//region PROTECTED
-    @SuppressWarnings("WeakerAccess")
-    protected void innerTick(long millisUntilFinished)
+    /**
+     * Random interval that keeps the total number of iterations
+     * @param random Uniform random draw in [0, 1)
+     * @param timeLeft Milliseconds left on the timer
+     */
+    static long iterationInterval(double random, int iterations, int currentIteration, long timeLeft)
     {
-        mCurrentTimerValue = millisUntilFinished;
+        int intervalsLeft = iterations - currentIteration;
 
-        mCurrentIntervalValue = mCurrentTimerValue - mNextValueForAnInterval;
-        checkForIntervalChanges();
+        if(intervalsLeft <= 1)
+        {
+            //Last interval, simply set it to what we have left in our main timer
+            return timeLeft;
+        }
 
-        onTick();
+        long maxIntervalValue = timeLeft / intervalsLeft;
+        long minIntervalValue = (timeLeft / iterations) / 2;
 
-        if(mReset)
+        //Create random interval
+        long interval = minIntervalValue
+                + (long) ((random)
+                * ((maxIntervalValue - minIntervalValue) + 1));
+
+        interval = interval - (interval % 1000); // go to nearest second
+
+        if(interval <= 0)
         {
-            //The timer was running but the reset flag seemed to have been queued.
-            //The user must have changed the timer while it was running.
-            mCustomizedCountdown.cancel();
-            reset();
+            // This is extra precaution in case we generated an interval less than a second
+            // might not be needed...
+            interval = timeLeft;
         }
+
+        return interval;
     }
 
-    @SuppressWarnings("WeakerAccess")
-    protected void innerFinish()
+    /**
+     * Random min/max value added to or taken from the defined interval
+     * @param random Uniform random draw in [0, 1)
+     * @param increment Random coin flip, true adds to the defined interval
+     * @param timeLeft Milliseconds left on the timer
+     */
+    static long deviationInterval(double random, boolean increment, long intervalValue,
+                                  long minRandom, long maxRandom, long timeLeft)
     {
-        Log.d(TAG, "finished.");
-        mTimerRunning = false;
+        //Get a random interval based on the given min/max intervals
+        long interval = regularRandomInterval(random, minRandom, maxRandom, timeLeft);
 
-        // Final increment iteration when we aren't doing a limited hold
-        if(!mCurrentLimitedHold)
-            ++mCurrentIterationValue;
+        //Choose whether to decrement/increment the defined interval value with the min/max
+        // intervals
+        if(increment)
+        {
+            return interval + intervalValue;
+        }
 
-        //Zero values since the timer has finished
-        mCurrentTimerValue = 0;
-        mCurrentIntervalValue = 0;
-        mCurrentLimitedHold = false;
+        return Math.abs(intervalValue - interval);
+    }
 
-        onFinish();
+    private void saveDefinitions()
+    {
+        mSavedTimerValue = mDefinedTimerValue;
+        mSavedIntervalValue = mDefinedIntervalValue;
+        mSavedRandomFlag = mDefinedRandomFlag;
+        mSavedStyle = mDefinedStyle;
+        mSavedMinRandomValue = mDefinedMinRandomValue;
+        mSavedMaxRandomValue = mDefinedMaxRandomValue;
+        mSavedRandIterationValue = mDefinedRandIterationValue;
+        mSavedLimitedHold = mDefinedLimitedHold;
+        mSavedLimitedHoldValue = mDefinedLimitedHoldValue;
     }
-//endregion
 
-//region PRIVATE HELPER METHODS
-    private void checkTimerFitting()
+    private void restoreDefinitions()
     {
-        mTimerFitting = IllFitEnum.NO_ADJUSTMENT;
+        mDefinedTimerValue = mSavedTimerValue;
+        mDefinedIntervalValue = mSavedIntervalValue;
+        mDefinedRandomFlag = mSavedRandomFlag;
+        mDefinedStyle = mSavedStyle;
+        mDefinedMinRandomValue = mSavedMinRandomValue;
+        mDefinedMaxRandomValue = mSavedMaxRandomValue;
+        mDefinedRandIterationValue = mSavedRandIterationValue;
+        mDefinedLimitedHold = mSavedLimitedHold;
+        mDefinedLimitedHoldValue = mSavedLimitedHoldValue;
+    }
 
-        //Check to see if we are doing random intervals, if we are timer fitting is set to
-        //no adjustments
-        if(mDefinedRandomFlag) return;
+    /**
+     * Plan the protocol and load its first phase
+     */
+    private void resetProtocol()
+    {
+        mProtocol.plan(mRandomGen);
+        mTimerFitting = mProtocol.getTimerFitting();
 
-        //Check to make sure we didn't get an invalid number e.g. less than 0 and/or iteration
-        //is not less than 1 second. Maybe this check should be done prior to this timer...?
-        if(mDefinedRandIterationValue <= 0 &&
-                (mDefinedTimerValue / 1000) / mDefinedRandIterationValue <= 1)
+        mDefinedTimerValue = mProtocol.getTimerValue();
+        mCurrentTimerValue = mDefinedTimerValue;
+
+        mCurrentPhaseIndex = 0;
+        mCurrentScheduleIndex = 0;
+        mPhaseStartTimerValue = mDefinedTimerValue;
+        loadPhaseDefinitions();
+        loadScheduledInterval();
+    }
+
+    /**
+     * Move to the next planned interval, crossing into the next phase if this one is over
+     * @return True if a new phase started
+     */
+    private boolean advanceProtocolSchedule()
+    {
+        ProtocolPhase phase = mProtocol.getPhase(mCurrentPhaseIndex);
+        boolean phaseChanged = false;
+
+        if(mCurrentScheduleIndex + 1 < phase.getIntervalCount())
         {
-            mDefinedRandIterationValue = 1;
-            mTimerFitting = IllFitEnum.ITERATION_ADJUSTMENT;
+            ++mCurrentScheduleIndex;
+        }
+        else if(mCurrentPhaseIndex + 1 < mProtocol.getPhaseCount())
+        {
+            mPhaseStartTimerValue -= phase.getTimerValue();
+            ++mCurrentPhaseIndex;
+            mCurrentScheduleIndex = 0;
+            loadPhaseDefinitions();
+            phaseChanged = true;
         }
 
-        long modResult = mDefinedTimerValue % (mDefinedIntervalValue + mDefinedLimitedHoldValue);
-        if(modResult != 0)
+        loadScheduledInterval();
+        return phaseChanged;
+    }
+
+    private void loadPhaseDefinitions()
+    {
+        ProtocolPhase phase = mProtocol.getPhase(mCurrentPhaseIndex);
+
+        mDefinedIntervalValue = phase.getIntervalValue();
+        mDefinedRandomFlag = phase.getRandomFlag();
+        mDefinedStyle = phase.getStyle();
+        mDefinedMinRandomValue = phase.getMinRandomValue();
+        mDefinedMaxRandomValue = phase.getMaxRandomValue();
+        mDefinedRandIterationValue = phase.getRandIterationValue();
+        mDefinedLimitedHold = phase.getLimitedHoldFlag();
+        mDefinedLimitedHoldValue = phase.getLimitedHoldValue();
+        compileCycle();
+    }
+
+    private void loadScheduledInterval()
+    {
+        ProtocolPhase phase = mProtocol.getPhase(mCurrentPhaseIndex);
+
+        mNextIntervalValue = phase.getIntervalLength(mCurrentScheduleIndex);
+        mNextValueForAnInterval = mPhaseStartTimerValue - phase.getBoundary(mCurrentScheduleIndex);
+        mCurrentLimitedHold = phase.getLimitedHoldFlag(mCurrentScheduleIndex);
+        mCurrentCountsIteration = !mCurrentLimitedHold;
+        mCycleStep = mCurrentLimitedHold ? 1 : 0;
+        mCurrentIntervalValue = mNextIntervalValue;
+    }
+
+    /**
+     * Find the planned interval for a time, the phase and then the interval in it are both a
+     * binary search
+     */
+    private void seekProtocol(long elapsed)
+    {
+        int phaseIndex = mProtocol.findPhase(elapsed);
+        ProtocolPhase phase = mProtocol.getPhase(phaseIndex);
+        long phaseOffset = mProtocol.getPhaseOffset(phaseIndex);
+        int scheduleIndex = phase.findInterval(elapsed - phaseOffset);
+
+        mCurrentPhaseIndex = phaseIndex;
+        mCurrentScheduleIndex = scheduleIndex;
+        mPhaseStartTimerValue = mDefinedTimerValue - phaseOffset;
+        loadPhaseDefinitions();
+        loadScheduledInterval();
+
+        mCurrentIterationValue = mProtocol.getIterationsBefore(phaseIndex)
+                + phase.getIterationsBefore(scheduleIndex);
+    }
+
+    /**
+     * Restore the interval for a time from the history, planning on past the last interval
+     * with the same steps a boundary takes
+     */
+    private void seekCycle(long timerValue)
+    {
+        //The first interval always starts at the defined timer value so there is a match
+        int index = mIntervalHistory.find(timerValue);
+        mIntervalHistory.truncate(index + 1);
+
+        mCycleStep = mIntervalHistory.getStep(index);
+        mCurrentLimitedHold = mCycle.isLimitedHold(mCycleStep);
+        mCurrentCountsIteration = mCycle.getCountsIteration(mCycleStep);
+        mCurrentIterationValue = mIntervalHistory.getIteration(index);
+        mNextIntervalValue = mIntervalHistory.getLength(index);
+        mNextValueForAnInterval = mIntervalHistory.getStart(index) - mNextIntervalValue;
+
+        while(mNextValueForAnInterval >= timerValue)
         {
-            //The interval time does not fit perfectly in our timer,
-            //this will adjust the main timer to fit an equal set of intervals
-            mDefinedTimerValue += mDefinedIntervalValue + mDefinedLimitedHoldValue - modResult;
+            //The boundary lands exactly, nothing to realign
+            mCurrentTimerValue = mNextValueForAnInterval;
+            if(mCurrentCountsIteration)
+            {
+                ++mCurrentIterationValue;
+            }
 
-            mTimerFitting = IllFitEnum.INTERVAL_ADJUSTMENT;
+            planCycleInterval(mCurrentTimerValue, mCurrentTimerValue);
         }
     }
 
-    private void calculateNewIntervalValue()
+    /**
+     * Points up to the seek time count as delivered
+     */
+    private void seekSamples(long elapsed)
     {
-        //Check if we are doing a limited hold if we are then make sure it's not the very first
-        //iteration (e.g. before the timer is even running since a limited hold ALWAYS happens
-        //after 1 regular/random iteration.
-        if(mDefinedLimitedHold && mTimerRunning )
+        if(mSamplingGrid == null) return;
+
+        int low = 0;
+        int high = mSamplingGrid.getCount();
+        while(low < high)
         {
-            if(!mCurrentLimitedHold)
+            int middle = (low + high) >>> 1;
+            if(mSamplingGrid.getPoint(middle) <= elapsed)
+            {
+                low = middle + 1;
+            }
+            else
             {
-                //We were in a regular interval, do a limited hold next
-                mNextIntervalValue = mDefinedLimitedHoldValue;
-                mCurrentIntervalValue = mDefinedLimitedHoldValue;
-                mCurrentLimitedHold = true;
-                Log.d(TAG, "Limited Hold started.");
-                return;
+                high = middle;
             }
+        }
+        mNextSampleIndex = low;
+    }
 
-            //Since we got here, that means we just did a limited hold and the next
-            //interval should be a regular interval
-            mCurrentLimitedHold = false;
-            mNextIntervalValue = mDefinedIntervalValue;
+    /**
+     * Apply definitions changed while running. The current interval finishes as planned and
+     * the new definitions shape every interval after it, the elapsed time and iteration count
+     * are kept. Live changes are not fitted, the last interval may be cut short by the end of the
+     * timer.
+     * @return False if the change ended the timer
+     */
+    private boolean applyReconfiguration()
+    {
+        mReconfigure = false;
+        compileCycle();
+
+        long timerValueChange = mTimerValueChange;
+        mTimerValueChange = 0;
+        if(timerValueChange == 0) return true;
+
+        //Shift what's left, the current interval still ends at the same elapsed time
+        mCurrentTimerValue += timerValueChange;
+        mNextValueForAnInterval += timerValueChange;
+        mIntervalStartTimerValue += timerValueChange;
+        if(mIntervalHistory != null)
+        {
+            mIntervalHistory.shift(timerValueChange);
         }
 
-        //Check if we are doing randomized intervals
-        if(mDefinedRandomFlag)
+        boolean running = mTimerRunning;
+        if(running)
         {
-            switch(mDefinedStyle)
-            {
-                case ITERATION:
-                    Log.d(TAG, "Iteration Random");
-                    getIterationInterval();
-                    break;
-                case DEVIATION:
-                    Log.d(TAG, "Deviation Random");
-                    getDeviationInterval();
-                    break;
-                case REGULAR:
-                    Log.d(TAG, "Regular Random");
-                default:
-                    getRegularRandomInterval();
+            mCountdown.cancelCountdown();
+        }
 
-            }
+        if(mCurrentTimerValue <= 0)
+        {
+            //Ends now, the cancelled countdown's planned end was never reached
+            finishSession();
+            return false;
         }
 
-        mCurrentIntervalValue = mNextIntervalValue;
+        if(running)
+        {
+            createTimer();
+            mCountdown.startCountdown();
+        }
+        return true;
     }
 
     /**
-     * Create instance of the android countdown timer
+     * Running, or paused partway through the session
      */
-    private void createTimer()
+    private boolean sessionInProgress()
     {
-        mCustomizedCountdown = new CustomizedCountdown(mCurrentTimerValue, TICK_INTERVAL, this);
+        return mTimerRunning || (mPauseStartNanos != 0 && mCurrentTimerValue > 0);
+    }
+
+    private void scheduleCommandDrain()
+    {
+        Executor executor = mCommandExecutor;
+        if(executor == null && mCreatorLooper != null)
+        {
+            //Racing threads may both create one, either posts to the same looper
+            executor = new LooperExecutor(mCreatorLooper);
+            mCommandExecutor = executor;
+        }
+
+        if(executor != null && mCommandDrainScheduled.compareAndSet(false, true))
+        {
+            executor.execute(mCommandDrain);
+        }
     }
 
     /**
-     * Check if we have iterated
+     * Tick every child with a countdown running up to the tree clock, in the order they started
      */
-    private void checkForIntervalChanges()
+    private void deliverChildTicks()
     {
-        if(mCurrentIntervalValue <= 0)
+        if(mActiveChildren.isEmpty()) return;
+
+        mDeliveringChildren.addAll(mActiveChildren);
+        for(int i = 0; i < mDeliveringChildren.size(); ++i)
         {
-            Log.d(TAG, "Interval completed.");
+            ChildCountdown countdown = mDeliveringChildren.get(i);
 
-            //Increment iteration when we are not doing a limited hold
-            if(!mCurrentLimitedHold)
+            //A sibling's callback may have stopped it
+            if(mActiveChildren.contains(countdown))
             {
-                ++mCurrentIterationValue;
-                Log.d(TAG, "Iteration count: " + mCurrentIterationValue);
+                countdown.deliver();
             }
+        }
+        mDeliveringChildren.clear();
+    }
+
+    /**
+     * Countdown of a nested timer, measured on its parent's tree clock
+     */
+    private final class ChildCountdown implements Countdown.Restartable
+    {
+        private long mMillisInFuture;
+        private final BehaviorCountDownTimer mChild;
+        private long mStopClock;
+
+        ChildCountdown(long millisInFuture, BehaviorCountDownTimer child)
+        {
+            mMillisInFuture = millisInFuture;
+            mChild = child;
+        }
 
-            //We have iterated, calculate an interval value
-            calculateNewIntervalValue();
+        @Override
+        public void setMillisInFuture(long millisInFuture)
+        {
+            mMillisInFuture = millisInFuture;
+        }
 
-            //The additional 1000 is to mitigate the fact the interval will NEVER exactly tick
-            // at the TICK_RATE. We go back to the last second of that interval and realign
-            // the milliseconds so our interval time and our timer time align
-            mNextValueForAnInterval = mCurrentTimerValue +
-                    (1000 - (mCurrentTimerValue % 1000)) - mNextIntervalValue;
+        @Override
+        public void startCountdown()
+        {
+            //Counts from the parent's last tick, the first tick comes with its next one
+            mStopClock = mTreeClock + mMillisInFuture;
+            mActiveChildren.add(this);
+        }
 
-            Log.d(TAG, "Next Interval: " + mNextIntervalValue);
+        @Override
+        public void cancelCountdown()
+        {
+            mActiveChildren.remove(this);
+        }
 
-            onIntervalReached();
+        void deliver()
+        {
+            long millisLeft = mStopClock - mTreeClock;
+            if(millisLeft <= 0)
+            {
+                mActiveChildren.remove(this);
+                mChild.innerFinish();
+            }
+            else
+            {
+                mChild.innerTick(millisLeft);
+            }
         }
     }
 
-    private void getRegularRandomInterval()
+    private static final class LooperExecutor implements Executor
     {
-       long interval = mDefinedMinRandomValue
-                + (long) ((mRandomGen.nextDouble())
-               * ((mDefinedMaxRandomValue - mDefinedMinRandomValue) + 1));
-
-        interval = interval - (interval % 1000); // go to nearest second
+        private final Handler mHandler;
 
-        //Check if our interval is larger than our current timer, if it is just set the interval
-        //to the current timer
-        if(interval >= mCurrentTimerValue)
+        LooperExecutor(Looper looper)
         {
-            interval = mCurrentTimerValue;
+            mHandler = new Handler(looper);
         }
 
-        mNextIntervalValue = interval;
+        @Override
+        public void execute(Runnable command)
+        {
+            mHandler.post(command);
+        }
     }
 
-    private void getIterationInterval()
+    /**
+     * @param lateness Timer milliseconds the window opened after it was due
+     */
+    private void openHoldWindow(long lateness)
     {
-        int intervalsLeft = mDefinedRandIterationValue - mCurrentIterationValue;
-
-        if(intervalsLeft <= 1)
+        mHoldWindowOpen = true;
+        mHoldOpenNanos = System.nanoTime() - (long) (lateness * 1e6 / mTimeScale);
+        if(mHoldAnalytics != null)
         {
-            //Last interval, simply set it to what we have left in our main timer
-            mNextIntervalValue = mCurrentTimerValue;
-            return;
+            mHoldAnalytics.openWindow();
         }
+    }
 
-        long maxIntervalValue = mCurrentTimerValue / intervalsLeft;
-        long minIntervalValue = (mCurrentTimerValue / mDefinedRandIterationValue) / 2;
-
-        //Create random interval
-        long interval = minIntervalValue
-                + (long) ((mRandomGen.nextDouble())
-                * ((maxIntervalValue - minIntervalValue) + 1));
+    /**
+     * @param abandoned True if a reset or seek cut the window off before it ended
+     */
+    private void closeHoldWindow(boolean abandoned)
+    {
+        if(!mHoldWindowOpen) return;
 
-        interval = interval - (interval % 1000); // go to nearest second
+        mHoldWindowOpen = false;
+        if(mHoldAnalytics != null)
+        {
+            if(abandoned)
+            {
+                mHoldAnalytics.abandonWindow();
+            }
+            else
+            {
+                mHoldAnalytics.closeWindow();
+            }
+        }
+    }
 
-        if(interval <= 0)
+    private void deliverTick()
+    {
+        if(mFrameSource == null)
         {
-            // This is extra precaution in case we generated an interval less than a second
-            // might not be needed...
-            interval = mCurrentTimerValue;
+            onTick();
+        }
+        else if(!mFrameTickPending)
+        {
+            mFrameTickPending = true;
+            mFrameSource.postFrameCallback(mFrameTick);
         }
+    }
 
-        mNextIntervalValue = interval;
+    /**
+     * Drop a tick waiting for its frame, it would come after the pause, reset or finish
+     */
+    private void cancelFrameTick()
+    {
+        if(mFrameTickPending)
+        {
+            mFrameTickPending = false;
+            mFrameSource.removeFrameCallback(mFrameTick);
+        }
     }
 
-    private void getDeviationInterval()
+    private void updateRunningMetric()
     {
-        //Get a random interval based on the given min/max intervals
-        getRegularRandomInterval();
+        TimerMetrics metrics = mMetrics;
+        if(metrics != null)
+        {
+            metrics.setRunning(mTimerRunning);
+        }
+    }
 
-        //Choose whether to decrement/increment the defined interval value with the min/max
-        // intervals
-        if(mRandomGen.nextBoolean())
+    private void publishSharedState()
+    {
+        if(mSharedState != null)
         {
-            mNextIntervalValue += mDefinedIntervalValue;
+            mSharedState.publish(this);
         }
-        else
+    }
+
+    private void trace(int type)
+    {
+        if(mTracer != null)
         {
-            mNextIntervalValue = Math.abs(mDefinedIntervalValue - mNextIntervalValue);
+            mTracer.trace(type, this);
         }
+    }
 
+    private void publishEvent(int type)
+    {
+        if(mEventRing != null)
+        {
+            mEventRing.publish(type, mCurrentTimerValue, mCurrentIntervalValue,
+                    mCurrentIterationValue);
+        }
     }
 
     private void invalidate()
     {
+        if(sessionInProgress() && mProtocol == null && !mReset)
+        {
+            //Timers in a session take the change on the next tick instead of starting over
+            mReconfigure = true;
+            return;
+        }
+
         mReset = true;
     }
     //endregion
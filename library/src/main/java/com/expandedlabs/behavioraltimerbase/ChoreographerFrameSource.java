@@ -0,0 +1,57 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import android.view.Choreographer;
+
+import java.util.IdentityHashMap;
+
+/**
+ * Frame pulses from the display's vsync through the Choreographer of the thread that created
+ * the source, create it on the timers' (main) thread e.g. one per screen shared by its timers.
+ */
+@SuppressWarnings("WeakerAccess")
+public class ChoreographerFrameSource implements FrameSource
+{
+    private final Choreographer mChoreographer = Choreographer.getInstance();
+
+    /**
+     * Wrappers of the callbacks waiting for a frame. An entry goes as soon as its frame comes or
+     * it is removed, so the source never keeps a finished timer reachable.
+     */
+    private final IdentityHashMap<Callback, Choreographer.FrameCallback> mPending =
+            new IdentityHashMap<>();
+
+    @Override
+    public void postFrameCallback(Callback callback)
+    {
+        mChoreographer.postFrameCallback(wrap(callback));
+    }
+
+    @Override
+    public void removeFrameCallback(Callback callback)
+    {
+        Choreographer.FrameCallback wrapper = mPending.remove(callback);
+        if(wrapper != null)
+        {
+            mChoreographer.removeFrameCallback(wrapper);
+        }
+    }
+
+    private Choreographer.FrameCallback wrap(final Callback callback)
+    {
+        Choreographer.FrameCallback wrapper = mPending.get(callback);
+        if(wrapper == null)
+        {
+            wrapper = new Choreographer.FrameCallback()
+            {
+                @Override
+                public void doFrame(long frameTimeNanos)
+                {
+                    mPending.remove(callback);
+                    callback.doFrame(frameTimeNanos);
+                }
+            };
+            mPending.put(callback, wrapper);
+        }
+        return wrapper;
+    }
+}
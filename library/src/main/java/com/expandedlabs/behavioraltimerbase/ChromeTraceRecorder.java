@@ -0,0 +1,232 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tracer that keeps transitions in preallocated arrays and writes them out as Chrome trace JSON,
+ * which chrome://tracing and ui.perfetto.dev both open. Intervals, limited holds and pauses become
+ * async spans on one track per timer, ticks are instant events on the thread that ran them.
+ *
+ * One recorder can be shared by any number of timers on any threads. Recording never allocates,
+ * once the capacity is used up further events are dropped and counted.
+ */
+@SuppressWarnings("WeakerAccess")
+public class ChromeTraceRecorder implements TimerTracer
+{
+//region MEMBER VARIABLES
+    private static final int SPAN_NONE = 0;
+    private static final int SPAN_INTERVAL = 1;
+    private static final int SPAN_HOLD = 2;
+
+    private final int mCapacity;
+    private final boolean mRecordTicks;
+
+    /**
+     * One slot per event, parallel arrays indexed by event number
+     */
+    private final int[] mTypes;
+    private final long[] mTimesNanos;
+    private final int[] mTimerIds;
+    private final long[] mThreadIds;
+    private final long[] mTimerValues;
+    private final long[] mIntervalValues;
+    private final int[] mIterations;
+
+    private int mCount = 0;
+    private long mDropped = 0;
+//endregion
+
+//region CONSTRUCTOR
+    /**
+     * @param capacity Number of events kept
+     * @param recordTicks False to leave ticks out, they make up most of the events
+     */
+    public ChromeTraceRecorder(int capacity, boolean recordTicks)
+    {
+        if(capacity <= 0)
+        {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+
+        mCapacity = capacity;
+        mRecordTicks = recordTicks;
+
+        mTypes = new int[capacity];
+        mTimesNanos = new long[capacity];
+        mTimerIds = new int[capacity];
+        mThreadIds = new long[capacity];
+        mTimerValues = new long[capacity];
+        mIntervalValues = new long[capacity];
+        mIterations = new int[capacity];
+    }
+//endregion
+
+//region RECORDING
+    @Override
+    public void trace(int type, BehaviorCountDownTimer bTimer)
+    {
+        if(type == TRACE_TICK && !mRecordTicks) return;
+
+        long timeNanos = System.nanoTime();
+        synchronized(this)
+        {
+            if(mCount == mCapacity)
+            {
+                ++mDropped;
+                return;
+            }
+
+            int i = mCount++;
+            mTypes[i] = type;
+            mTimesNanos[i] = timeNanos;
+            mTimerIds[i] = System.identityHashCode(bTimer);
+            mThreadIds[i] = Thread.currentThread().getId();
+            mTimerValues[i] = bTimer.getCurrentTimerValue();
+            mIntervalValues[i] = bTimer.getNextIntervalValue();
+            mIterations[i] = bTimer.getCurrentIterationValue();
+        }
+    }
+
+    /**
+     * Forget every recorded event
+     */
+    public synchronized void clear()
+    {
+        mCount = 0;
+        mDropped = 0;
+    }
+
+    public synchronized int getCount() { return mCount; }
+
+    /**
+     * @return Events lost because the recorder was full
+     */
+    public synchronized long getDroppedCount() { return mDropped; }
+//endregion
+
+//region EXPORT
+    /**
+     * Write every recorded event as a Chrome trace JSON object. Spans still open at the end of
+     * the recording are left open.
+     * @param out Destination, not closed
+     */
+    public synchronized void writeTo(Writer out) throws IOException
+    {
+        //Per timer: open interval/hold span and whether a pause span is open
+        Map<Integer, int[]> spans = new HashMap<>();
+        boolean first = true;
+
+        out.write("{\"traceEvents\":[");
+        for(int i = 0; i < mCount; ++i)
+        {
+            int[] state = spans.get(mTimerIds[i]);
+            if(state == null)
+            {
+                state = new int[] {SPAN_NONE, 0};
+                spans.put(mTimerIds[i], state);
+            }
+
+            switch(mTypes[i])
+            {
+                case TRACE_TICK:
+                    first = writeEvent(out, first, i, "tick", "i");
+                    break;
+                case TRACE_START:
+                    if(state[1] != 0)
+                    {
+                        first = writeEvent(out, first, i, "paused", "e");
+                        state[1] = 0;
+                    }
+                    if(state[0] == SPAN_NONE)
+                    {
+                        first = writeEvent(out, first, i, "interval", "b");
+                        state[0] = SPAN_INTERVAL;
+                    }
+                    break;
+                case TRACE_PAUSE:
+                    if(state[1] == 0)
+                    {
+                        first = writeEvent(out, first, i, "paused", "b");
+                        state[1] = 1;
+                    }
+                    break;
+                case TRACE_INTERVAL:
+                case TRACE_HOLD_START:
+                    first = endSpan(out, first, i, state);
+                    state[0] = mTypes[i] == TRACE_INTERVAL ? SPAN_INTERVAL : SPAN_HOLD;
+                    first = writeEvent(out, first, i, spanName(state[0]), "b");
+                    break;
+                case TRACE_HOLD_END:
+                    first = endSpan(out, first, i, state);
+                    break;
+                case TRACE_FINISH:
+                case TRACE_RESET:
+                    if(state[1] != 0)
+                    {
+                        first = writeEvent(out, first, i, "paused", "e");
+                        state[1] = 0;
+                    }
+                    first = endSpan(out, first, i, state);
+                    first = writeEvent(out, first, i,
+                            mTypes[i] == TRACE_FINISH ? "finish" : "reset", "i");
+                    break;
+            }
+        }
+        out.write("]}");
+        out.flush();
+    }
+//endregion
+
+//region PRIVATE HELPER METHODS
+    private boolean endSpan(Writer out, boolean first, int i, int[] state) throws IOException
+    {
+        if(state[0] == SPAN_NONE) return first;
+
+        first = writeEvent(out, first, i, spanName(state[0]), "e");
+        state[0] = SPAN_NONE;
+        return first;
+    }
+
+    private static String spanName(int span)
+    {
+        return span == SPAN_HOLD ? "limited hold" : "interval";
+    }
+
+    /**
+     * @return False, the next event is no longer the first
+     */
+    private boolean writeEvent(Writer out, boolean first, int i, String name, String phase)
+            throws IOException
+    {
+        StringBuilder event = new StringBuilder(192);
+        if(!first) event.append(',');
+
+        event.append("{\"name\":\"").append(name)
+                .append("\",\"cat\":\"timer\",\"ph\":\"").append(phase)
+                .append("\",\"ts\":").append(mTimesNanos[i] / 1000)
+                .append(",\"pid\":1,\"tid\":").append(mThreadIds[i]);
+
+        if(phase.equals("i"))
+        {
+            //Instant events are thread scoped so they line up with whatever else ran there
+            event.append(",\"s\":\"t\"");
+        }
+        else
+        {
+            event.append(",\"id\":").append(mTimerIds[i]);
+        }
+
+        event.append(",\"args\":{\"timer\":").append(mTimerIds[i])
+                .append(",\"remaining\":").append(mTimerValues[i])
+                .append(",\"interval\":").append(mIntervalValues[i])
+                .append(",\"iteration\":").append(mIterations[i])
+                .append("}}");
+
+        out.write(event.toString());
+        return false;
+    }
+//endregion
+}
@@ -0,0 +1,49 @@
+package com.expandedlabs.behavioraltimerbase;
+
+/**
+ * The piece that actually drives a behavioral timer. On a device this is the
+ * {@link CustomizedCountdown} (CountDownTimer style ticks on the main Looper), but anything
+ * that calls {@link BehaviorCountDownTimer#innerTick(long)} and
+ * {@link BehaviorCountDownTimer#innerFinish()} in order from a single thread can take its place.
+ */
+public interface Countdown
+{
+    /**
+     * Begin delivering ticks to the behavioral timer
+     */
+    void startCountdown();
+
+    /**
+     * Stop delivering ticks, nothing else will be delivered after this returns
+     */
+    void cancelCountdown();
+
+    /**
+     * A countdown the behavioral timer starts over with a new length instead of asking its
+     * factory for a new one, so starting and pausing a timer allocates nothing
+     */
+    interface Restartable extends Countdown
+    {
+        /**
+         * Only called while the countdown is cancelled or finished, applies to the next
+         * startCountdown()
+         * @param millisInFuture Milliseconds until the countdown should call innerFinish()
+         */
+        void setMillisInFuture(long millisInFuture);
+    }
+
+    /**
+     * Creates a countdown when the behavioral timer is started/resumed and the one it has can't
+     * be restarted
+     */
+    interface Factory
+    {
+        /**
+         * @param millisInFuture    Milliseconds until the countdown should call innerFinish()
+         * @param countDownInterval Milliseconds between each innerTick()
+         * @param bTimer            The behavioral timer to drive
+         * @return A countdown that has not been started yet
+         */
+        Countdown create(long millisInFuture, long countDownInterval, BehaviorCountDownTimer bTimer);
+    }
+}
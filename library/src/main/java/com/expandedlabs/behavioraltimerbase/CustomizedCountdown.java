@@ -1,43 +1,132 @@
 package com.expandedlabs.behavioraltimerbase;
 
-import android.os.CountDownTimer;
-import android.util.Log;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 
 /**
- * This is the actual android countdown timer the behavioral timer uses. We didn't extend
- * to this class simply because the basic timer has no pause functionality. The only way
- * to stop it is by calling cancel() and when that's done, there's no way to update the
- * millis in future without having to call new.
+ * This is the actual android countdown the behavioral timer uses. It delivers like the android
+ * CountDownTimer (a tick on start, one every interval and the finish at the stop time) on a
+ * Handler of the creating thread's Looper. We don't use CountDownTimer itself because its millis
+ * in future is fixed when it is created, the timer would need a new one on every start.
  */
 @SuppressWarnings("WeakerAccess")
-public class CustomizedCountdown extends CountDownTimer
+public class CustomizedCountdown implements Countdown.Restartable, Runnable
 {
     private static final String TAG = "BCDT.CustomizedCountdown";
     private final BehaviorCountDownTimer mBTimer;
+    private final long mCountDownInterval;
+    private final Handler mHandler = new Handler(Looper.myLooper());
+
+    private long mMillisInFuture;
+    private long mStopTimeInFuture;
+    private boolean mCancelled = false;
+
+    /**
+     * Bumped on every start so a tick that restarted the countdown doesn't post another one
+     */
+    private int mGeneration = 0;
+
+    /**
+     * Default factory used by every behavioral timer, ticks on the creating thread's Looper
+     */
+    static final Countdown.Factory FACTORY = new Countdown.Factory()
+    {
+        @Override
+        public Countdown create(long millisInFuture, long countDownInterval, BehaviorCountDownTimer bTimer)
+        {
+            return new CustomizedCountdown(millisInFuture, countDownInterval, bTimer);
+        }
+    };
 
     /**
      * @param millisInFuture    The number of millis in the future from the call
-     *                          to {@link #start()} until the countdown is done and {@link #onFinish()}
-     *                          is called.
+     *                          to {@link #startCountdown()} until the countdown is done and
+     *                          {@link #onFinish()} is called.
      * @param countDownInterval The interval along the way to receive
      *                          {@link #onTick(long)} callbacks.
      */
     public CustomizedCountdown(long millisInFuture, long countDownInterval, BehaviorCountDownTimer bTimer)
     {
-        super(millisInFuture, countDownInterval);
+        mMillisInFuture = millisInFuture;
+        mCountDownInterval = countDownInterval;
         mBTimer = bTimer;
     }
 
     @Override
+    public void setMillisInFuture(long millisInFuture)
+    {
+        mMillisInFuture = millisInFuture;
+    }
+
+    @Override
+    public void startCountdown()
+    {
+        mCancelled = false;
+        ++mGeneration;
+        mHandler.removeCallbacks(this);
+        if(mMillisInFuture <= 0)
+        {
+            onFinish();
+            return;
+        }
+
+        mStopTimeInFuture = SystemClock.elapsedRealtime() + mMillisInFuture;
+        mHandler.post(this);
+    }
+
+    @Override
+    public void cancelCountdown()
+    {
+        mCancelled = true;
+        mHandler.removeCallbacks(this);
+    }
+
+    @Override
+    public void run()
+    {
+        if(mCancelled) return;
+
+        long millisLeft = mStopTimeInFuture - SystemClock.elapsedRealtime();
+        if(millisLeft <= 0)
+        {
+            mCancelled = true;
+            onFinish();
+            return;
+        }
+
+        int generation = mGeneration;
+        long lastTickStart = SystemClock.elapsedRealtime();
+        onTick(millisLeft);
+        if(mCancelled || generation != mGeneration) return;
+
+        //Take the time the tick took out of the delay, skip ticks that took longer than an
+        //interval like CountDownTimer does
+        long lastTickDuration = SystemClock.elapsedRealtime() - lastTickStart;
+        long delay;
+        if(millisLeft < mCountDownInterval)
+        {
+            delay = Math.max(0, millisLeft - lastTickDuration);
+        }
+        else
+        {
+            delay = mCountDownInterval - lastTickDuration;
+            while(delay < 0)
+            {
+                delay += mCountDownInterval;
+            }
+        }
+        mHandler.postDelayed(this, delay);
+    }
+
     public void onTick(long millisUntilFinished)
     {
         mBTimer.innerTick(millisUntilFinished);
     }
 
-    @Override
     public void onFinish()
     {
-        Log.d(TAG, "finished.");
+        TimerDiagnostics.debug(TAG, "finished.");
         mBTimer.innerFinish();
     }
-}
\ No newline at end of file
+}
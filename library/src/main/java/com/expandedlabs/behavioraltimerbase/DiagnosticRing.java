@@ -0,0 +1,113 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Diagnostic sink that keeps the latest entries in memory for a bug report. Entries are stored
+ * as their parts in preallocated arrays, writing one allocates nothing and they are only
+ * formatted by {@link #writeTo(Writer)}.
+ */
+@SuppressWarnings("WeakerAccess")
+public class DiagnosticRing implements TimerDiagnostics.Sink
+{
+//region MEMBER VARIABLES
+    private final long[] mTimes;
+    private final int[] mLevels;
+    private final String[] mTags;
+    private final String[] mFormats;
+    private final long[] mFirstArgs;
+    private final long[] mSecondArgs;
+
+    /**
+     * Entries written since the last clear, the oldest are overwritten
+     */
+    private long mWritten = 0;
+//endregion
+
+//region CONSTRUCTOR
+    /**
+     * @param capacity Most recent entries kept
+     */
+    public DiagnosticRing(int capacity)
+    {
+        if(capacity <= 0)
+        {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+
+        mTimes = new long[capacity];
+        mLevels = new int[capacity];
+        mTags = new String[capacity];
+        mFormats = new String[capacity];
+        mFirstArgs = new long[capacity];
+        mSecondArgs = new long[capacity];
+    }
+//endregion
+
+//region SINK
+    @Override
+    public synchronized void write(int level, String tag, String format, long arg0, long arg1)
+    {
+        int slot = (int) (mWritten % mTimes.length);
+        mTimes[slot] = System.currentTimeMillis();
+        mLevels[slot] = level;
+        mTags[slot] = tag;
+        mFormats[slot] = format;
+        mFirstArgs[slot] = arg0;
+        mSecondArgs[slot] = arg1;
+        ++mWritten;
+    }
+//endregion
+
+//region READER
+    /**
+     * @return Entries currently kept
+     */
+    public synchronized int getCount() { return (int) Math.min(mWritten, mTimes.length); }
+
+    /**
+     * @return Entries overwritten before they were read
+     */
+    public synchronized long getOverwrittenCount() { return Math.max(0, mWritten - mTimes.length); }
+
+    public synchronized void clear()
+    {
+        mWritten = 0;
+        Arrays.fill(mTags, null);
+        Arrays.fill(mFormats, null);
+    }
+
+    /**
+     * Format the kept entries oldest first, one per line: wall clock millis, level, tag, message
+     */
+    public synchronized void writeTo(Writer out) throws IOException
+    {
+        long first = mWritten - getCount();
+        for(long i = first; i < mWritten; ++i)
+        {
+            int slot = (int) (i % mTimes.length);
+            out.write(mTimes[slot] + " " + levelName(mLevels[slot]) + "/" + mTags[slot] + ": "
+                    + TimerDiagnostics.format(mFormats[slot], mFirstArgs[slot], mSecondArgs[slot])
+                    + "\n");
+        }
+        out.flush();
+    }
+//endregion
+
+//region PRIVATE HELPER METHODS
+    private static String levelName(int level)
+    {
+        switch(level)
+        {
+            case TimerDiagnostics.VERBOSE: return "V";
+            case TimerDiagnostics.DEBUG: return "D";
+            case TimerDiagnostics.INFO: return "I";
+            case TimerDiagnostics.WARN: return "W";
+            case TimerDiagnostics.ERROR: return "E";
+            default: return String.valueOf(level);
+        }
+    }
+//endregion
+}
@@ -0,0 +1,27 @@
+package com.expandedlabs.behavioraltimerbase;
+
+/**
+ * Display frame pulses for {@link BehaviorCountDownTimer#setFrameSource(FrameSource)}. On a
+ * device this is the {@link ChoreographerFrameSource} (vsync), anything that calls the posted
+ * callbacks once on the timer's thread at the next frame can take its place.
+ */
+public interface FrameSource
+{
+    /**
+     * Call the callback once at the next frame
+     */
+    void postFrameCallback(Callback callback);
+
+    /**
+     * Forget a posted callback, it won't be called after this returns
+     */
+    void removeFrameCallback(Callback callback);
+
+    interface Callback
+    {
+        /**
+         * @param frameTimeNanos Time the frame started at, System.nanoTime() base
+         */
+        void doFrame(long frameTimeNanos);
+    }
+}
@@ -0,0 +1,237 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import java.util.ArrayList;
+
+/**
+ * Compiled table of the steps an interval cycle goes through e.g. cue, response window,
+ * consequence and inter-trial interval. The timer runs the steps in order and starts over after
+ * the last one, moving to the next step is a lookup in the table.
+ *
+ * Each step is either the timer's defined interval (with its random style), a fixed length or a
+ * uniform random length. Counting an iteration and being a limited hold are separate: a cue or
+ * inter-trial step counts nothing and is still not a hold window, only steps marked with
+ * Builder.asLimitedHold() are reported as limited holds. Without a cycle set the timer compiles
+ * its own from the definitions: the interval, followed by the limited hold if there is one.
+ */
+@SuppressWarnings("WeakerAccess")
+public class IntervalCycle
+{
+//region MEMBER VARIABLES
+    public static final int KIND_DEFINED = 0;
+    public static final int KIND_FIXED = 1;
+    public static final int KIND_RANDOM = 2;
+
+    private final String[] mNames;
+    private final int[] mKinds;
+    private final long[] mMinLengths;
+    private final long[] mMaxLengths;
+    private final boolean[] mCountsIteration;
+    private final boolean[] mLimitedHold;
+
+    /**
+     * Step that follows each step, the last one wraps to the first
+     */
+    private final int[] mNextSteps;
+    private int mCount;
+//endregion
+
+//region CONSTRUCTOR
+    private IntervalCycle(int capacity)
+    {
+        mNames = new String[capacity];
+        mKinds = new int[capacity];
+        mMinLengths = new long[capacity];
+        mMaxLengths = new long[capacity];
+        mCountsIteration = new boolean[capacity];
+        mLimitedHold = new boolean[capacity];
+        mNextSteps = new int[capacity];
+    }
+
+    /**
+     * Cycle the timer compiles from its definitions, recompiled in place
+     */
+    static IntervalCycle createDefault()
+    {
+        IntervalCycle cycle = new IntervalCycle(2);
+        cycle.compileDefault(false, 0);
+        return cycle;
+    }
+//endregion
+
+//region GETTERS
+    public int getStepCount() { return mCount; }
+
+    public String getName(int step) { return mNames[step]; }
+
+    /**
+     * @return KIND_DEFINED, KIND_FIXED or KIND_RANDOM
+     */
+    public int getKind(int step) { return mKinds[step]; }
+
+    /**
+     * @return Length of a fixed step or the shortest a random step can be, in milliseconds
+     */
+    public long getMinLength(int step) { return mMinLengths[step]; }
+
+    /**
+     * @return Length of a fixed step or the longest a random step can be, in milliseconds
+     */
+    public long getMaxLength(int step) { return mMaxLengths[step]; }
+
+    /**
+     * @return True if the iteration count goes up when the step ends
+     */
+    public boolean getCountsIteration(int step) { return mCountsIteration[step]; }
+
+    /**
+     * @return True if the step is a limited hold window, reported to hold analytics and listeners
+     */
+    public boolean isLimitedHold(int step) { return mLimitedHold[step]; }
+
+    /**
+     * @return Step that comes after the given one
+     */
+    public int getNextStep(int step) { return mNextSteps[step]; }
+
+    /**
+     * Length of one whole cycle, used to fit the timer
+     * @param definedInterval Length the defined steps take
+     * @return Milliseconds or -1 if a step has a random length
+     */
+    public long getCycleLength(long definedInterval)
+    {
+        long length = 0;
+        for(int i = 0; i < mCount; ++i)
+        {
+            if(mKinds[i] == KIND_RANDOM) return -1;
+            length += mKinds[i] == KIND_DEFINED ? definedInterval : mMinLengths[i];
+        }
+        return length;
+    }
+//endregion
+
+//region PRIVATE HELPER METHODS
+    /**
+     * Interval followed by the limited hold when there is one. Unused slots still point at the
+     * first step so a step index from before the recompile can never run off the table.
+     */
+    void compileDefault(boolean limitedHold, long limitedHoldValue)
+    {
+        set(0, "interval", KIND_DEFINED, 0, 0, true, false);
+        set(1, "limited hold", KIND_FIXED, limitedHoldValue, limitedHoldValue, false, true);
+        mCount = limitedHold ? 2 : 1;
+        mNextSteps[0] = limitedHold ? 1 : 0;
+        mNextSteps[1] = 0;
+    }
+
+    private void set(int step, String name, int kind, long minLength, long maxLength,
+                     boolean countsIteration, boolean limitedHold)
+    {
+        mNames[step] = name;
+        mKinds[step] = kind;
+        mMinLengths[step] = minLength;
+        mMaxLengths[step] = maxLength;
+        mCountsIteration[step] = countsIteration;
+        mLimitedHold[step] = limitedHold;
+    }
+//endregion
+
+    /**
+     * Adds steps in the order they run
+     */
+    public static class Builder
+    {
+        private final ArrayList<Step> mSteps = new ArrayList<>();
+
+        /**
+         * Step that takes the timer's defined interval and random style
+         */
+        public Builder addDefinedStep(String name, boolean countsIteration)
+        {
+            return add(name, KIND_DEFINED, 0, 0, countsIteration);
+        }
+
+        /**
+         * @param length Whole seconds in milliseconds, the timer realigns every boundary to the
+         *               second
+         */
+        public Builder addFixedStep(String name, long length, boolean countsIteration)
+        {
+            if(length <= 0 || length % 1000 != 0)
+            {
+                throw new IllegalArgumentException("Step length must be whole seconds.");
+            }
+            return add(name, KIND_FIXED, length, length, countsIteration);
+        }
+
+        /**
+         * Step drawn uniformly between min and max, rounded down to the second like the
+         * timer's regular random intervals
+         */
+        public Builder addRandomStep(String name, long minLength, long maxLength,
+                                     boolean countsIteration)
+        {
+            if(minLength < 1000 || maxLength < minLength)
+            {
+                throw new IllegalArgumentException("Random steps need 1000 <= min <= max.");
+            }
+            return add(name, KIND_RANDOM, minLength, maxLength, countsIteration);
+        }
+
+        /**
+         * Marks the step added last as a limited hold window, e.g. the response window after a
+         * cue. Steps are not holds unless marked, whether they count an iteration or not.
+         */
+        public Builder asLimitedHold()
+        {
+            if(mSteps.isEmpty())
+            {
+                throw new IllegalStateException("Add a step before marking it a limited hold.");
+            }
+            mSteps.get(mSteps.size() - 1).mLimitedHold = true;
+            return this;
+        }
+
+        public IntervalCycle build()
+        {
+            if(mSteps.isEmpty())
+            {
+                throw new IllegalArgumentException("A cycle needs at least one step.");
+            }
+
+            IntervalCycle cycle = new IntervalCycle(mSteps.size());
+            for(int i = 0; i < mSteps.size(); ++i)
+            {
+                Step step = mSteps.get(i);
+                cycle.set(i, step.mName, step.mKind, step.mMinLength, step.mMaxLength,
+                        step.mCountsIteration, step.mLimitedHold);
+                cycle.mNextSteps[i] = (i + 1) % mSteps.size();
+            }
+            cycle.mCount = mSteps.size();
+            return cycle;
+        }
+
+        private Builder add(String name, int kind, long minLength, long maxLength,
+                            boolean countsIteration)
+        {
+            Step step = new Step();
+            step.mName = name;
+            step.mKind = kind;
+            step.mMinLength = minLength;
+            step.mMaxLength = maxLength;
+            step.mCountsIteration = countsIteration;
+            mSteps.add(step);
+            return this;
+        }
+
+        private static final class Step
+        {
+            String mName;
+            int mKind;
+            long mMinLength;
+            long mMaxLength;
+            boolean mCountsIteration;
+            boolean mLimitedHold;
+        }
+    }
+}
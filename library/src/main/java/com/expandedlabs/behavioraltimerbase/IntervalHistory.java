@@ -0,0 +1,94 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import java.util.Arrays;
+
+/**
+ * Every interval a timer without a protocol has started since its last reset, in order. Start
+ * values are timer values (time left) so they only ever go down, which lets a seek find the
+ * interval for a time with a binary search. Arrays grow by doubling and are kept across resets.
+ *
+ * Starts are stored relative to an offset so moving every interval at once is a single add.
+ */
+class IntervalHistory
+{
+    private long[] mStarts = new long[16];
+    private long[] mLengths = new long[16];
+    private int[] mSteps = new int[16];
+    private int[] mIterations = new int[16];
+    private int mCount = 0;
+
+    /**
+     * Added to every stored start
+     */
+    private long mOffset = 0;
+
+    void clear()
+    {
+        mCount = 0;
+        mOffset = 0;
+    }
+
+    /**
+     * @param start Timer value the interval starts at
+     * @param length Planned length in milliseconds
+     * @param step Cycle step of the interval
+     * @param iteration Iterations completed when it started
+     */
+    void add(long start, long length, int step, int iteration)
+    {
+        if(mCount == mStarts.length)
+        {
+            int capacity = mCount * 2;
+            mStarts = Arrays.copyOf(mStarts, capacity);
+            mLengths = Arrays.copyOf(mLengths, capacity);
+            mSteps = Arrays.copyOf(mSteps, capacity);
+            mIterations = Arrays.copyOf(mIterations, capacity);
+        }
+
+        mStarts[mCount] = start - mOffset;
+        mLengths[mCount] = length;
+        mSteps[mCount] = step;
+        mIterations[mCount] = iteration;
+        ++mCount;
+    }
+
+    /**
+     * Forget every interval from the given one on
+     */
+    void truncate(int count) { mCount = Math.min(mCount, count); }
+
+    /**
+     * Move every interval by a change of the timer value
+     */
+    void shift(long timerValueChange) { mOffset += timerValueChange; }
+
+    /**
+     * @param timerValue Time left on the timer
+     * @return Index of the last interval that started at or before that time, -1 if none did
+     */
+    int find(long timerValue)
+    {
+        long storedValue = timerValue - mOffset;
+        int low = -1;
+        int high = mCount - 1;
+        while(low < high)
+        {
+            int middle = (low + high + 1) >> 1;
+            if(mStarts[middle] >= storedValue)
+            {
+                low = middle;
+            }
+            else
+            {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    int getCount() { return mCount; }
+    long getStart(int index) { return mStarts[index] + mOffset; }
+    long getLength(int index) { return mLengths[index]; }
+    int getStep(int index) { return mSteps[index]; }
+    int getIteration(int index) { return mIterations[index]; }
+}
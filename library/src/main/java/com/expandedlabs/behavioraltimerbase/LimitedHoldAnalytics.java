@@ -0,0 +1,185 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import java.util.Arrays;
+
+/**
+ * Reaction latency of every limited hold window of a timer, set with
+ * {@link BehaviorCountDownTimer#setLimitedHoldAnalytics(LimitedHoldAnalytics)} and fed by
+ * {@link BehaviorCountDownTimer#recordResponse()}. A window with a response is a hit and its
+ * latency (window open to the first response) goes into running statistics and a fixed bucket
+ * histogram, a window that closes without one is a miss. Every update is O(1) and nothing grows
+ * with the session. Read it on the timer's thread.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class LimitedHoldAnalytics
+{
+//region MEMBER VARIABLES
+    private final long mBucketWidth;
+    private final long[] mBuckets;
+    private final StreamingStatistics mLatencyStats = new StreamingStatistics();
+
+    private long mWindows = 0;
+    private long mHits = 0;
+    private long mMisses = 0;
+
+    /**
+     * State of the open window and the outcome of the last closed one
+     */
+    private boolean mWindowOpen = false;
+    private boolean mResponded = false;
+    private boolean mLastWindowHit = false;
+    private long mLastLatency = -1;
+//endregion
+
+//region CONSTRUCTOR
+    /**
+     * @param bucketWidth Milliseconds covered by each histogram bucket
+     * @param bucketCount Number of buckets, the last one also takes every longer latency
+     */
+    public LimitedHoldAnalytics(long bucketWidth, int bucketCount)
+    {
+        if(bucketWidth <= 0 || bucketCount <= 0)
+        {
+            throw new IllegalArgumentException("Bucket width and count must be positive.");
+        }
+
+        mBucketWidth = bucketWidth;
+        mBuckets = new long[bucketCount];
+    }
+//endregion
+
+//region TIMER THREAD
+    void openWindow()
+    {
+        mWindowOpen = true;
+        mResponded = false;
+        ++mWindows;
+    }
+
+    /**
+     * @return True if this was the first response of the open window
+     */
+    boolean recordLatency(long latency)
+    {
+        if(!mWindowOpen || mResponded) return false;
+
+        mResponded = true;
+        ++mHits;
+        mLastLatency = latency;
+        mLatencyStats.add(latency);
+        ++mBuckets[(int) Math.min(latency / mBucketWidth, mBuckets.length - 1)];
+        return true;
+    }
+
+    void closeWindow()
+    {
+        if(!mWindowOpen) return;
+
+        mWindowOpen = false;
+        mLastWindowHit = mResponded;
+        if(!mResponded)
+        {
+            ++mMisses;
+            mLastLatency = -1;
+        }
+    }
+
+    /**
+     * The window was cut off by a reset or seek. A response already made still counts as a hit,
+     * without one the window isn't counted at all.
+     */
+    void abandonWindow()
+    {
+        if(!mWindowOpen) return;
+
+        mWindowOpen = false;
+        if(mResponded)
+        {
+            mLastWindowHit = true;
+        }
+        else
+        {
+            --mWindows;
+        }
+    }
+//endregion
+
+//region GETTERS
+    /**
+     * @return Windows opened, including the open one
+     */
+    public long getWindowCount() { return mWindows; }
+
+    public long getHitCount() { return mHits; }
+
+    public long getMissCount() { return mMisses; }
+
+    /**
+     * @return Hits out of every window that was decided, an open window is decided by its
+     *         first response
+     */
+    public double getHitRate()
+    {
+        long decided = mHits + mMisses;
+        return decided == 0 ? 0 : (double) mHits / decided;
+    }
+
+    public boolean getWindowOpenFlag() { return mWindowOpen; }
+
+    /**
+     * @return True if the last closed window had a response
+     */
+    public boolean getLastWindowHitFlag() { return mLastWindowHit; }
+
+    /**
+     * @return Latency of the latest hit in milliseconds, -1 if the last closed window was a miss
+     */
+    public long getLastLatency() { return mLastLatency; }
+
+    /**
+     * @return Running statistics of every hit's latency in milliseconds
+     */
+    public StreamingStatistics getLatencyStats() { return mLatencyStats; }
+
+    public long getBucketWidth() { return mBucketWidth; }
+
+    public int getBucketCount() { return mBuckets.length; }
+
+    /**
+     * @return Hits with a latency from bucket * width up to the next bucket
+     */
+    public long getBucket(int bucket) { return mBuckets[bucket]; }
+
+    /**
+     * Latency below which the given fraction of hits fall, to the resolution of the buckets
+     * @param fraction 0 to 1 e.g. 0.5 for the median
+     * @return Upper edge of the bucket holding that hit in milliseconds, -1 without hits
+     */
+    public long getLatencyPercentile(double fraction)
+    {
+        if(mHits == 0) return -1;
+
+        long rank = Math.max(1, (long) Math.ceil(fraction * mHits));
+        long seen = 0;
+        for(int i = 0; i < mBuckets.length; ++i)
+        {
+            seen += mBuckets[i];
+            if(seen >= rank) return (i + 1) * mBucketWidth;
+        }
+        return mBuckets.length * mBucketWidth;
+    }
+
+    public void clear()
+    {
+        mWindows = 0;
+        mHits = 0;
+        mMisses = 0;
+        mWindowOpen = false;
+        mResponded = false;
+        mLastWindowHit = false;
+        mLastLatency = -1;
+        mLatencyStats.clear();
+        Arrays.fill(mBuckets, 0);
+    }
+//endregion
+}
@@ -0,0 +1,112 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import java.util.Arrays;
+
+/**
+ * What one observer recorded during a session: when each interval ended and when each response
+ * happened, both in milliseconds since the start of the session. Intervals run from the end of
+ * the previous one (or the start) up to their end, a response right on a boundary belongs to the
+ * next interval. Scored against another observer's record by {@link AgreementEngine}.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class ObserverRecord
+{
+    private final long[] mBoundaries;
+    private final long[] mResponses;
+
+    /**
+     * @param boundaries End of every interval, ascending, the last one is the end of the session
+     * @param responses Time of every response, ascending
+     */
+    public ObserverRecord(long[] boundaries, long[] responses)
+    {
+        checkAscending(boundaries, "Boundaries");
+        checkAscending(responses, "Responses");
+
+        mBoundaries = boundaries.clone();
+        mResponses = responses.clone();
+    }
+
+    private ObserverRecord(long[] boundaries, int boundaryCount, long[] responses, int responseCount)
+    {
+        mBoundaries = Arrays.copyOf(boundaries, boundaryCount);
+        mResponses = Arrays.copyOf(responses, responseCount);
+    }
+
+    public int getIntervalCount() { return mBoundaries.length; }
+
+    public long getBoundary(int interval) { return mBoundaries[interval]; }
+
+    public int getResponseCount() { return mResponses.length; }
+
+    public long getResponse(int response) { return mResponses[response]; }
+
+    /**
+     * Package access to the arrays for the engine's inner loop, never modified
+     */
+    long[] boundaries() { return mBoundaries; }
+
+    long[] responses() { return mResponses; }
+
+    private static void checkAscending(long[] values, String name)
+    {
+        for(int i = 1; i < values.length; ++i)
+        {
+            if(values[i] < values[i - 1])
+            {
+                throw new IllegalArgumentException(name + " must be in ascending order.");
+            }
+        }
+    }
+
+    /**
+     * Records a session as it runs e.g. addBoundary() from onIntervalReached() and onFinish()
+     * and addResponse() next to recordResponse()
+     */
+    public static class Builder
+    {
+        private long[] mBoundaries = new long[64];
+        private long[] mResponses = new long[64];
+        private int mBoundaryCount = 0;
+        private int mResponseCount = 0;
+
+        /**
+         * @param elapsedMillis Milliseconds since the start of the session the interval ended at
+         */
+        public Builder addBoundary(long elapsedMillis)
+        {
+            if(mBoundaryCount > 0 && elapsedMillis < mBoundaries[mBoundaryCount - 1])
+            {
+                throw new IllegalArgumentException("Boundaries must be in ascending order.");
+            }
+            if(mBoundaryCount == mBoundaries.length)
+            {
+                mBoundaries = Arrays.copyOf(mBoundaries, mBoundaryCount * 2);
+            }
+            mBoundaries[mBoundaryCount++] = elapsedMillis;
+            return this;
+        }
+
+        /**
+         * @param elapsedMillis Milliseconds since the start of the session the response happened
+         */
+        public Builder addResponse(long elapsedMillis)
+        {
+            if(mResponseCount > 0 && elapsedMillis < mResponses[mResponseCount - 1])
+            {
+                throw new IllegalArgumentException("Responses must be in ascending order.");
+            }
+            if(mResponseCount == mResponses.length)
+            {
+                mResponses = Arrays.copyOf(mResponses, mResponseCount * 2);
+            }
+            mResponses[mResponseCount++] = elapsedMillis;
+            return this;
+        }
+
+        public ObserverRecord build()
+        {
+            return new ObserverRecord(mBoundaries, mBoundaryCount, mResponses, mResponseCount);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import com.expandedlabs.behavioraltimerbase.exceptions.IntervalTimerException;
+import com.expandedlabs.behavioraltimerbase.exceptions.IterationException;
+import com.expandedlabs.behavioraltimerbase.exceptions.LimitedHoldException;
+import com.expandedlabs.behavioraltimerbase.exceptions.MinMaxException;
+import com.expandedlabs.behavioraltimerbase.exceptions.TotalTimerException;
+
+import java.util.Random;
+
+/**
+ * One phase of a {@link TimerProtocol} e.g. a 5 minute fixed interval baseline. Takes the same
+ * values as the {@link BehaviorCountDownTimer} constructor. The phase's interval schedule is
+ * planned up front into arrays that are allocated once, so replanning on every reset and moving
+ * from one phase to the next never allocates.
+ */
+@SuppressWarnings("WeakerAccess")
+public class ProtocolPhase
+{
+//region MEMBER VARIABLES
+    private final long mTimerValue;
+    private final long mIntervalValue;
+    private final boolean mRandomFlag;
+    private final BehaviorCountDownTimer.RandomStyleEnum mStyle;
+    private final long mMinRandomValue;
+    private final long mMaxRandomValue;
+    private final int mRandIterationValue;
+    private final boolean mLimitedHold;
+    private final long mLimitedHoldValue;
+
+    private final BehaviorCountDownTimer.IllFitEnum mTimerFitting;
+
+    /**
+     * Planned schedule. Interval i ends mBoundaries[i] milliseconds into the phase and
+     * mLimitedHolds[i] is true when interval i is a limited hold.
+     */
+    private final long[] mBoundaries;
+    private final boolean[] mLimitedHolds;
+    private int mIntervalCount = 0;
+
+    /**
+     * Prefix counts of the regular intervals, mIterationsBefore[i] intervals ended before
+     * interval i started
+     */
+    private final int[] mIterationsBefore;
+    private int mIterationCount = 0;
+//endregion
+
+//region CONSTRUCTOR
+    public ProtocolPhase(long timerValue,
+                         long intervalValue,
+                         boolean randomFlag,
+                         BehaviorCountDownTimer.RandomStyleEnum style,
+                         long minRandom, long maxRandom,
+                         int numberOfIterations,
+                         boolean limitedHoldFlag, long limitedHold)
+            throws IntervalTimerException,
+            IterationException,
+            LimitedHoldException,
+            MinMaxException,
+            TotalTimerException
+    {
+        //Same rules as the timer's own definitions
+        BehaviorCountDownTimer.checkTimerValue(timerValue);
+        BehaviorCountDownTimer.checkIntervalValue(intervalValue);
+        BehaviorCountDownTimer.checkTimerRandom(randomFlag, style, minRandom, maxRandom,
+                numberOfIterations);
+        BehaviorCountDownTimer.checkLimitedHold(limitedHoldFlag, limitedHold);
+
+        mIntervalValue = intervalValue;
+        mRandomFlag = randomFlag;
+        mStyle = style;
+        mMinRandomValue = Math.min(minRandom, maxRandom);
+        mMaxRandomValue = Math.max(minRandom, maxRandom);
+        mRandIterationValue = numberOfIterations;
+        mLimitedHold = limitedHoldFlag;
+        mLimitedHoldValue = limitedHoldFlag ? limitedHold : 0;
+
+        //Same fitting the timer does, fixed intervals have to fit the phase evenly
+        mTimerValue = randomFlag ? timerValue : BehaviorCountDownTimer.fitTimerValue(timerValue,
+                intervalValue + mLimitedHoldValue);
+        mTimerFitting = mTimerValue != timerValue
+                ? BehaviorCountDownTimer.IllFitEnum.INTERVAL_ADJUSTMENT
+                : BehaviorCountDownTimer.IllFitEnum.NO_ADJUSTMENT;
+
+        //Random intervals are planned at least a second long, a limited hold can follow each
+        long shortestInterval = randomFlag ? 1000 : intervalValue;
+        int capacity = (int) (2 * (mTimerValue / shortestInterval + 1));
+        mBoundaries = new long[capacity];
+        mLimitedHolds = new boolean[capacity];
+        mIterationsBefore = new int[capacity];
+    }
+//endregion
+
+//region GETTERS
+    public long getTimerValue() { return mTimerValue; }
+    public long getIntervalValue() { return mIntervalValue; }
+    public boolean getRandomFlag() { return mRandomFlag; }
+    public BehaviorCountDownTimer.RandomStyleEnum getStyle() { return mStyle; }
+    public long getMinRandomValue() { return mMinRandomValue; }
+    public long getMaxRandomValue() { return mMaxRandomValue; }
+    public int getRandIterationValue() { return mRandIterationValue; }
+    public boolean getLimitedHoldFlag() { return mLimitedHold; }
+    public long getLimitedHoldValue() { return mLimitedHoldValue; }
+    public BehaviorCountDownTimer.IllFitEnum getTimerFitting() { return mTimerFitting; }
+
+    /**
+     * @return Number of intervals (limited holds included) in the planned schedule
+     */
+    public int getIntervalCount() { return mIntervalCount; }
+
+    /**
+     * @param index Interval index, 0 to getIntervalCount() - 1
+     * @return Milliseconds from the start of the phase to the end of the interval
+     */
+    public long getBoundary(int index) { return mBoundaries[index]; }
+
+    /**
+     * @param index Interval index, 0 to getIntervalCount() - 1
+     * @return True if the interval is a limited hold
+     */
+    public boolean getLimitedHoldFlag(int index) { return mLimitedHolds[index]; }
+
+    /**
+     * @param index Interval index, 0 to getIntervalCount() - 1
+     * @return Length of the interval in milliseconds
+     */
+    public long getIntervalLength(int index)
+    {
+        return index == 0 ? mBoundaries[0] : mBoundaries[index] - mBoundaries[index - 1];
+    }
+
+    /**
+     * @param index Interval index, 0 to getIntervalCount() - 1
+     * @return Iterations completed in the phase before the interval started
+     */
+    public int getIterationsBefore(int index) { return mIterationsBefore[index]; }
+
+    /**
+     * @return Iterations in the whole planned phase
+     */
+    public int getIterationCount() { return mIterationCount; }
+
+    /**
+     * Binary search of the planned schedule
+     * @param elapsed Milliseconds from the start of the phase
+     * @return Index of the interval running at that time, the last one past the end
+     */
+    public int findInterval(long elapsed)
+    {
+        int low = 0;
+        int high = mIntervalCount - 1;
+        while(low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if(mBoundaries[middle] > elapsed)
+            {
+                high = middle;
+            }
+            else
+            {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+//endregion
+
+//region PACKAGE
+    /**
+     * Plan every interval of the phase with the same rules the timer uses while running
+     * @param randomGen Random generator of the owning timer
+     */
+    void plan(Random randomGen)
+    {
+        long elapsed = 0;
+        int iteration = 0;
+        boolean limitedHold = false;
+        mIntervalCount = 0;
+
+        while(elapsed < mTimerValue)
+        {
+            long timeLeft = mTimerValue - elapsed;
+            long interval;
+
+            if(limitedHold)
+            {
+                interval = mLimitedHoldValue;
+            }
+            else if(mRandomFlag)
+            {
+                switch(mStyle)
+                {
+                    case ITERATION:
+                        interval = BehaviorCountDownTimer.iterationInterval(randomGen.nextDouble(),
+                                mRandIterationValue, iteration, timeLeft);
+                        break;
+                    case DEVIATION:
+                        double random = randomGen.nextDouble();
+                        interval = BehaviorCountDownTimer.deviationInterval(random,
+                                randomGen.nextBoolean(), mIntervalValue,
+                                mMinRandomValue, mMaxRandomValue, timeLeft);
+                        break;
+                    case REGULAR:
+                    default:
+                        interval = BehaviorCountDownTimer.regularRandomInterval(randomGen.nextDouble(),
+                                mMinRandomValue, mMaxRandomValue, timeLeft);
+                }
+
+                //Keep every planned interval at least a second so the schedule always moves forward
+                interval = Math.max(interval, 1000);
+            }
+            else
+            {
+                interval = mIntervalValue;
+            }
+
+            elapsed += Math.min(interval, timeLeft);
+            mBoundaries[mIntervalCount] = elapsed;
+            mLimitedHolds[mIntervalCount] = limitedHold;
+            mIterationsBefore[mIntervalCount] = iteration;
+            ++mIntervalCount;
+
+            if(!limitedHold)
+            {
+                ++iteration;
+            }
+
+            //A limited hold always follows a regular interval
+            limitedHold = mLimitedHold && !limitedHold;
+        }
+
+        mIterationCount = iteration;
+    }
+//endregion
+}
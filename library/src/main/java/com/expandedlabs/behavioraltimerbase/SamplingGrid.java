@@ -0,0 +1,144 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Observation grid for momentary time sampling and partial interval recording. Every sample
+ * point of a session is computed in one pass from the same values the timer takes: a point at the
+ * end of every regular interval, with random styles giving randomized points. Limited holds are
+ * not sampled, the point is the end of the interval the hold follows.
+ *
+ * Points are milliseconds from the start of the session. Set a grid on a timer with
+ * {@link BehaviorCountDownTimer#setSamplingGrid(SamplingGrid)} to get
+ * {@link BehaviorCountDownTimer#onSampleReached(int)} at every point.
+ */
+@SuppressWarnings("WeakerAccess")
+public class SamplingGrid
+{
+    private long[] mPoints;
+    private int mCount = 0;
+
+    /**
+     * @param capacity Expected number of points, the grid grows if a session needs more
+     */
+    public SamplingGrid(int capacity)
+    {
+        mPoints = new long[Math.max(capacity, 1)];
+    }
+
+    /**
+     * Replace the grid with the sample points of a session
+     * @param configuration Session values, only the definitions are used
+     * @param seed Seed for random styles
+     * @return Number of sample points
+     */
+    public int generate(ProtocolPhase configuration, long seed)
+    {
+        int maxPoints = maxPoints(configuration);
+        if(mPoints.length < maxPoints)
+        {
+            mPoints = new long[maxPoints];
+        }
+
+        mCount = generate(configuration, new Random(seed), mPoints, 0);
+        return mCount;
+    }
+
+    /**
+     * Bulk generation into a caller's array e.g. one slice per student of a large grid
+     * @param configuration Session values, only the definitions are used
+     * @param randomGen Random generator for random styles
+     * @param points Array the points are written to, needs maxPoints(configuration) room
+     * @param offset Where the first point is written
+     * @return Number of points written
+     */
+    public static int generate(ProtocolPhase configuration, Random randomGen,
+                               long[] points, int offset)
+    {
+        final long timerValue = configuration.getTimerValue();
+        final long holdValue = configuration.getLimitedHoldValue();
+
+        long elapsed = 0;
+        int count = 0;
+
+        while(elapsed < timerValue)
+        {
+            long timeLeft = timerValue - elapsed;
+            long interval;
+
+            if(!configuration.getRandomFlag())
+            {
+                interval = configuration.getIntervalValue();
+            }
+            else
+            {
+                switch(configuration.getStyle())
+                {
+                    case ITERATION:
+                        interval = BehaviorCountDownTimer.iterationInterval(randomGen.nextDouble(),
+                                configuration.getRandIterationValue(), count, timeLeft);
+                        break;
+                    case DEVIATION:
+                        double random = randomGen.nextDouble();
+                        interval = BehaviorCountDownTimer.deviationInterval(random,
+                                randomGen.nextBoolean(), configuration.getIntervalValue(),
+                                configuration.getMinRandomValue(),
+                                configuration.getMaxRandomValue(), timeLeft);
+                        break;
+                    case REGULAR:
+                    default:
+                        interval = BehaviorCountDownTimer.regularRandomInterval(randomGen.nextDouble(),
+                                configuration.getMinRandomValue(),
+                                configuration.getMaxRandomValue(), timeLeft);
+                }
+
+                //Keep every interval at least a second so the grid always moves forward
+                interval = Math.max(interval, 1000);
+            }
+
+            elapsed += Math.min(interval, timeLeft);
+            points[offset + count] = elapsed;
+            ++count;
+
+            //The hold is not sampled, it just pushes the next interval back
+            elapsed += holdValue;
+        }
+
+        return count;
+    }
+
+    /**
+     * @return Room generate() needs for a configuration
+     */
+    public static int maxPoints(ProtocolPhase configuration)
+    {
+        long shortestInterval = configuration.getRandomFlag()
+                ? 1000 : configuration.getIntervalValue();
+        return (int) (configuration.getTimerValue() / shortestInterval + 1);
+    }
+
+    /**
+     * @return Number of sample points
+     */
+    public int getCount() { return mCount; }
+
+    /**
+     * @param index Point index, 0 to getCount() - 1
+     * @return Milliseconds from the start of the session to the sample point
+     */
+    public long getPoint(int index) { return mPoints[index]; }
+
+    /**
+     * @return Copy of the sample points
+     */
+    public long[] toArray() { return Arrays.copyOf(mPoints, mCount); }
+
+    /**
+     * Which of several students a point observes when the observer rotates between them
+     * @param index Point index
+     * @param students Number of students observed in turn
+     * @return Student index for the point
+     */
+    public static int getStudent(int index, int students) { return index % students; }
+}
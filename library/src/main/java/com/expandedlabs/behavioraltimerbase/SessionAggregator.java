@@ -0,0 +1,246 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Per protocol report over every session of a {@link SessionArchive}. Blocks are split into
+ * ranges that are decoded on the executor's threads, every range keeps its own totals and they
+ * are merged once all are done, so nothing is shared while decoding.
+ */
+@SuppressWarnings("WeakerAccess")
+public class SessionAggregator
+{
+    private final ExecutorService mExecutor;
+    private final int mTaskCount;
+
+    /**
+     * @param executor Runs the ranges e.g. a fixed pool with a thread per core
+     * @param taskCount Ranges the archive is split into, a few per thread evens out sessions
+     *                  of different lengths
+     */
+    public SessionAggregator(ExecutorService executor, int taskCount)
+    {
+        if(taskCount <= 0)
+        {
+            throw new IllegalArgumentException("Task count must be positive.");
+        }
+
+        mExecutor = executor;
+        mTaskCount = taskCount;
+    }
+
+    /**
+     * @return Summaries keyed and ordered by protocol id
+     */
+    public Map<Integer, ProtocolSummary> aggregate(final SessionArchive archive)
+            throws IOException, InterruptedException
+    {
+        int sessions = archive.getSessionCount();
+        int tasks = Math.max(1, Math.min(mTaskCount, sessions));
+
+        List<Callable<Map<Integer, ProtocolSummary>>> ranges = new ArrayList<>(tasks);
+        for(int i = 0; i < tasks; ++i)
+        {
+            final int from = (int) ((long) sessions * i / tasks);
+            final int to = (int) ((long) sessions * (i + 1) / tasks);
+            ranges.add(new Callable<Map<Integer, ProtocolSummary>>()
+            {
+                @Override
+                public Map<Integer, ProtocolSummary> call() throws Exception
+                {
+                    return aggregateRange(archive, from, to);
+                }
+            });
+        }
+
+        TreeMap<Integer, ProtocolSummary> report = new TreeMap<>();
+        for(Future<Map<Integer, ProtocolSummary>> result : mExecutor.invokeAll(ranges))
+        {
+            try
+            {
+                for(Map.Entry<Integer, ProtocolSummary> entry : result.get().entrySet())
+                {
+                    ProtocolSummary summary = report.get(entry.getKey());
+                    if(summary == null)
+                    {
+                        report.put(entry.getKey(), entry.getValue());
+                    }
+                    else
+                    {
+                        summary.merge(entry.getValue());
+                    }
+                }
+            } catch (ExecutionException e)
+            {
+                if(e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return report;
+    }
+
+    /**
+     * Sequential work of one task
+     */
+    static Map<Integer, ProtocolSummary> aggregateRange(SessionArchive archive, int from, int to)
+            throws IOException
+    {
+        HashMap<Integer, ProtocolSummary> summaries = new HashMap<>();
+        SessionReader reader = new SessionReader();
+        for(int i = from; i < to; ++i)
+        {
+            reader.clear();
+            int protocolId = archive.readSession(i, reader);
+
+            ProtocolSummary summary = summaries.get(protocolId);
+            if(summary == null)
+            {
+                summary = new ProtocolSummary();
+                summaries.put(protocolId, summary);
+            }
+            reader.addTo(summary);
+        }
+        return summaries;
+    }
+
+    /**
+     * Totals of every session of one protocol
+     */
+    public static final class ProtocolSummary
+    {
+        private long mSessions = 0;
+        private long mCompletedSessions = 0;
+        private long mPauses = 0;
+        private long mPauseMillis = 0;
+        private final StreamingStatistics mIntervalStats = new StreamingStatistics();
+        private final StreamingStatistics mLimitedHoldStats = new StreamingStatistics();
+
+        public long getSessions() { return mSessions; }
+
+        /**
+         * @return Sessions that ran to the end of the timer
+         */
+        public long getCompletedSessions() { return mCompletedSessions; }
+
+        public double getCompletionRate()
+        {
+            return mSessions == 0 ? 0 : (double) mCompletedSessions / mSessions;
+        }
+
+        public long getPauses() { return mPauses; }
+
+        /**
+         * @return Wall clock milliseconds spent paused, pauses never resumed are not counted
+         */
+        public long getPauseMillis() { return mPauseMillis; }
+
+        /**
+         * @return Length regular intervals actually ran for, in timer time
+         */
+        public StreamingStatistics getIntervalStats() { return mIntervalStats; }
+
+        public StreamingStatistics getLimitedHoldStats() { return mLimitedHoldStats; }
+
+        void merge(ProtocolSummary other)
+        {
+            mSessions += other.mSessions;
+            mCompletedSessions += other.mCompletedSessions;
+            mPauses += other.mPauses;
+            mPauseMillis += other.mPauseMillis;
+            mIntervalStats.merge(other.mIntervalStats);
+            mLimitedHoldStats.merge(other.mLimitedHoldStats);
+        }
+    }
+
+    /**
+     * Follows the events of one session, reused for every session of a task
+     */
+    private static final class SessionReader implements SessionEventRing.Consumer
+    {
+        private final StreamingStatistics mIntervalStats = new StreamingStatistics();
+        private final StreamingStatistics mLimitedHoldStats = new StreamingStatistics();
+        private long mLastBoundary;
+        private boolean mInLimitedHold;
+        private long mPauseStart;
+        private long mPauses;
+        private long mPauseMillis;
+        private boolean mCompleted;
+
+        void clear()
+        {
+            mIntervalStats.clear();
+            mLimitedHoldStats.clear();
+            mLastBoundary = -1;
+            mInLimitedHold = false;
+            mPauseStart = -1;
+            mPauses = 0;
+            mPauseMillis = 0;
+            mCompleted = false;
+        }
+
+        @Override
+        public void onEvent(int type, long timeMillis, long timerValue, long intervalValue,
+                            int iteration)
+        {
+            switch(type)
+            {
+                case SessionEventRing.TYPE_START:
+                    if(mPauseStart >= 0)
+                    {
+                        ++mPauses;
+                        mPauseMillis += Math.max(0, timeMillis - mPauseStart);
+                        mPauseStart = -1;
+                    }
+                    if(mLastBoundary < 0)
+                    {
+                        mLastBoundary = timerValue;
+                    }
+                    break;
+                case SessionEventRing.TYPE_PAUSE:
+                    mPauseStart = timeMillis;
+                    break;
+                case SessionEventRing.TYPE_RESET:
+                    mLastBoundary = timerValue;
+                    mInLimitedHold = false;
+                    break;
+                case SessionEventRing.TYPE_INTERVAL:
+                case SessionEventRing.TYPE_LIMITED_HOLD:
+                case SessionEventRing.TYPE_FINISH:
+                    if(mLastBoundary >= 0)
+                    {
+                        (mInLimitedHold ? mLimitedHoldStats : mIntervalStats)
+                                .add(mLastBoundary - timerValue);
+                    }
+                    mLastBoundary = timerValue;
+                    mInLimitedHold = type == SessionEventRing.TYPE_LIMITED_HOLD;
+                    mCompleted |= type == SessionEventRing.TYPE_FINISH;
+                    break;
+                default:
+                    //Phase changes come with the interval event of the same boundary
+                    break;
+            }
+        }
+
+        @Override
+        public void onBatchEnd() {}
+
+        void addTo(ProtocolSummary summary)
+        {
+            ++summary.mSessions;
+            if(mCompleted) ++summary.mCompletedSessions;
+            summary.mPauses += mPauses;
+            summary.mPauseMillis += mPauseMillis;
+            summary.mIntervalStats.merge(mIntervalStats);
+            summary.mLimitedHoldStats.merge(mLimitedHoldStats);
+        }
+    }
+}
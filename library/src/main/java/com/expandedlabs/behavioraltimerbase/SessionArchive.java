@@ -0,0 +1,360 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Compressed archive of recorded sessions e.g. years of history kept for reports. Every session
+ * is one block holding the events a {@link SessionEventRing} delivers for it, a block decodes on
+ * its own so a reader can hand blocks to different threads ({@link SessionAggregator}).
+ *
+ * Events are stored as varint deltas from the previous event of the block. Boundary events
+ * (interval, limited hold, finish) store their timer value against where the previous event said
+ * the interval ends, which leaves just the tick lateness. Wall time is stored as its difference
+ * from the timer time that passed, so a running session costs about a byte for it. A boundary
+ * event takes about 4 bytes instead of the ring's 32.
+ *
+ * Layout, version 1:
+ * <pre>
+ * header  int magic "BTSA", short version, short header size (big endian)
+ * block   varint payload size, varint protocol id, varint event count, then per event:
+ *         varint (zigzag iteration delta &lt;&lt; 3 | type), zigzag timer time passed
+ *         (minus the previous interval value for boundary events), zigzag (wall time delta -
+ *         timer time passed), zigzag interval value delta
+ * </pre>
+ * Deltas of the first event are taken from zero.
+ */
+@SuppressWarnings("WeakerAccess")
+public class SessionArchive
+{
+//region MEMBER VARIABLES
+    public static final int MAGIC = 0x42545341;
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 8;
+    private static final int TYPE_BITS = 3;
+    private static final int TYPE_MASK = (1 << TYPE_BITS) - 1;
+
+    private final ByteBuffer mBuffer;
+
+    /**
+     * Offset of every block's payload, found with one pass over the block sizes
+     */
+    private int[] mOffsets = new int[64];
+    private int[] mSizes = new int[64];
+    private int mCount = 0;
+//endregion
+
+//region CONSTRUCTOR
+    /**
+     * Read sessions from a buffer, only the block sizes are read here
+     * @param buffer Whole archive, absolute reads only so it can be shared between threads
+     */
+    public SessionArchive(ByteBuffer buffer) throws IOException
+    {
+        mBuffer = buffer;
+
+        if(buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+        {
+            throw new IOException("Not a session archive.");
+        }
+
+        int version = buffer.getShort(4);
+        if(version < 1 || version > VERSION)
+        {
+            throw new IOException("Unsupported session archive version " + version + ".");
+        }
+        if(buffer.getShort(6) != HEADER_SIZE)
+        {
+            throw new IOException("Session archive is corrupt.");
+        }
+
+        Cursor cursor = new Cursor(HEADER_SIZE, buffer.limit());
+        while(cursor.mPosition < buffer.limit())
+        {
+            long size = readVarLong(buffer, cursor);
+            if(size <= 0 || size > buffer.limit() - cursor.mPosition)
+            {
+                throw new IOException("Session archive is corrupt.");
+            }
+
+            if(mCount == mOffsets.length)
+            {
+                mOffsets = Arrays.copyOf(mOffsets, mCount * 2);
+                mSizes = Arrays.copyOf(mSizes, mCount * 2);
+            }
+            mOffsets[mCount] = cursor.mPosition;
+            mSizes[mCount] = (int) size;
+            ++mCount;
+            cursor.mPosition += (int) size;
+        }
+    }
+
+    /**
+     * Map a file read only, the mapping stays valid after this returns
+     */
+    public static SessionArchive open(File file) throws IOException
+    {
+        FileInputStream in = new FileInputStream(file);
+        try
+        {
+            FileChannel channel = in.getChannel();
+            return new SessionArchive(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+//endregion
+
+//region READER
+    /**
+     * @return Number of sessions in the archive
+     */
+    public int getSessionCount() { return mCount; }
+
+    /**
+     * @return Id the session was written with e.g. its protocol's index in a TimerConfigFile
+     */
+    public int getProtocolId(int index) throws IOException
+    {
+        Cursor cursor = blockCursor(index);
+        return (int) readVarLong(mBuffer, cursor);
+    }
+
+    /**
+     * Decode one session, safe to call from several threads at once
+     * @param consumer Gets every event in order, then onBatchEnd() once
+     * @return Protocol id of the session
+     */
+    public int readSession(int index, SessionEventRing.Consumer consumer) throws IOException
+    {
+        Cursor cursor = blockCursor(index);
+        int protocolId = (int) readVarLong(mBuffer, cursor);
+        long eventCount = readVarLong(mBuffer, cursor);
+
+        long time = 0;
+        long timerValue = 0;
+        long intervalValue = 0;
+        int iteration = 0;
+        for(long i = 0; i < eventCount; ++i)
+        {
+            long head = readVarLong(mBuffer, cursor);
+            int type = (int) (head & TYPE_MASK);
+            long timerDelta = unzigzag(readVarLong(mBuffer, cursor))
+                    + (isBoundary(type) ? intervalValue : 0);
+
+            iteration += (int) unzigzag(head >>> TYPE_BITS);
+            timerValue -= timerDelta;
+            time += unzigzag(readVarLong(mBuffer, cursor)) + timerDelta;
+            intervalValue += unzigzag(readVarLong(mBuffer, cursor));
+
+            consumer.onEvent(type, time, timerValue, intervalValue, iteration);
+        }
+
+        consumer.onBatchEnd();
+        return protocolId;
+    }
+//endregion
+
+//region PRIVATE HELPER METHODS
+    private Cursor blockCursor(int index)
+    {
+        if(index < 0 || index >= mCount)
+        {
+            throw new IndexOutOfBoundsException("Session " + index + " out of range.");
+        }
+        return new Cursor(mOffsets[index], mOffsets[index] + mSizes[index]);
+    }
+
+    private static long readVarLong(ByteBuffer buffer, Cursor cursor) throws IOException
+    {
+        long value = 0;
+        for(int shift = 0; shift < 64; shift += 7)
+        {
+            if(cursor.mPosition >= cursor.mEnd)
+            {
+                throw new IOException("Session archive is corrupt.");
+            }
+
+            byte b = buffer.get(cursor.mPosition++);
+            value |= (long) (b & 0x7F) << shift;
+            if(b >= 0) return value;
+        }
+        throw new IOException("Session archive is corrupt.");
+    }
+
+    /**
+     * Events whose timer value is predicted by the previous event's interval value
+     */
+    private static boolean isBoundary(int type)
+    {
+        return type == SessionEventRing.TYPE_INTERVAL || type == SessionEventRing.TYPE_LIMITED_HOLD
+                || type == SessionEventRing.TYPE_FINISH;
+    }
+
+    private static long zigzag(long value) { return (value << 1) ^ (value >> 63); }
+
+    private static long unzigzag(long value) { return (value >>> 1) ^ -(value & 1); }
+
+    /**
+     * Read position inside one block, one per decode so readers never share state
+     */
+    private static final class Cursor
+    {
+        int mPosition;
+        final int mEnd;
+
+        Cursor(int position, int end)
+        {
+            mPosition = position;
+            mEnd = end;
+        }
+    }
+//endregion
+
+    /**
+     * Appends sessions to an archive, one thread only e.g. the thread draining the event ring.
+     * Events of the open session are encoded in memory, the block is written when it ends.
+     */
+    public static class Writer
+    {
+        private final OutputStream mOut;
+        private byte[] mBlock = new byte[256];
+        private int mBlockSize = 0;
+        private final byte[] mSizePrefix = new byte[10];
+        private final byte[] mCountPrefix = new byte[10];
+
+        private boolean mSessionOpen = false;
+        private int mEventCount = 0;
+        private long mTime;
+        private long mTimerValue;
+        private long mIntervalValue;
+        private int mIteration;
+
+        /**
+         * Write a new archive, the header is written right away
+         */
+        public Writer(OutputStream out) throws IOException
+        {
+            mOut = out;
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC);
+            header.putShort((short) VERSION);
+            header.putShort((short) HEADER_SIZE);
+            mOut.write(header.array());
+        }
+
+        /**
+         * Start a session, an open one is dropped
+         * @param protocolId Key the aggregator groups by e.g. the protocol's index in a
+         *                   TimerConfigFile
+         */
+        public void beginSession(int protocolId)
+        {
+            if(protocolId < 0)
+            {
+                throw new IllegalArgumentException("Protocol id can't be negative.");
+            }
+
+            mSessionOpen = true;
+            mBlockSize = 0;
+            mEventCount = 0;
+            mTime = 0;
+            mTimerValue = 0;
+            mIntervalValue = 0;
+            mIteration = 0;
+            putVarLong(protocolId);
+        }
+
+        /**
+         * Same values a SessionEventRing.Consumer receives
+         */
+        public void addEvent(int type, long timeMillis, long timerValue, long intervalValue,
+                             int iteration)
+        {
+            if(!mSessionOpen)
+            {
+                throw new IllegalStateException("No session has begun.");
+            }
+            if(type < 0 || type > TYPE_MASK)
+            {
+                throw new IllegalArgumentException("Unknown event type " + type + ".");
+            }
+
+            long timerDelta = mTimerValue - timerValue;
+            putVarLong(zigzag(iteration - mIteration) << TYPE_BITS | type);
+            putVarLong(zigzag(isBoundary(type) ? timerDelta - mIntervalValue : timerDelta));
+            putVarLong(zigzag(timeMillis - mTime - timerDelta));
+            putVarLong(zigzag(intervalValue - mIntervalValue));
+
+            mTime = timeMillis;
+            mTimerValue = timerValue;
+            mIntervalValue = intervalValue;
+            mIteration = iteration;
+            ++mEventCount;
+        }
+
+        /**
+         * Write the open session as one block
+         */
+        public void endSession() throws IOException
+        {
+            if(!mSessionOpen)
+            {
+                throw new IllegalStateException("No session has begun.");
+            }
+            mSessionOpen = false;
+
+            //The event count goes after the protocol id, only known now
+            int idSize = varLongSize(mBlock, 0);
+            int countSize = writeVarLong(mCountPrefix, 0, mEventCount);
+            int prefixSize = writeVarLong(mSizePrefix, 0, mBlockSize + countSize);
+
+            mOut.write(mSizePrefix, 0, prefixSize);
+            mOut.write(mBlock, 0, idSize);
+            mOut.write(mCountPrefix, 0, countSize);
+            mOut.write(mBlock, idSize, mBlockSize - idSize);
+        }
+
+        public void flush() throws IOException { mOut.flush(); }
+
+        private void putVarLong(long value)
+        {
+            if(mBlockSize + 10 > mBlock.length)
+            {
+                mBlock = Arrays.copyOf(mBlock, mBlock.length * 2);
+            }
+            mBlockSize += writeVarLong(mBlock, mBlockSize, value);
+        }
+
+        private static int writeVarLong(byte[] into, int offset, long value)
+        {
+            int size = 0;
+            while((value & ~0x7FL) != 0)
+            {
+                into[offset + size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            into[offset + size++] = (byte) value;
+            return size;
+        }
+
+        private static int varLongSize(byte[] from, int offset)
+        {
+            int size = 1;
+            while(from[offset + size - 1] < 0)
+            {
+                ++size;
+            }
+            return size;
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single producer/single consumer ring of timer transitions kept off the java heap. The timer
+ * thread publishes fixed width records without locks or allocation and a persistence thread
+ * drains them in batches, so disk I/O never happens on the tick path.
+ *
+ * Events are never dropped. When the consumer falls a full ring behind the producer waits for
+ * room, every wait is counted so the producer side can see the consumer lagging. The producer is
+ * the timer's thread, usually the main thread, so a stalled consumer stalls the UI. Size the ring
+ * for the longest pause the consumer can take, e.g. a slow disk flush, and keep its onEvent()
+ * cheap.
+ */
+@SuppressWarnings("WeakerAccess")
+public class SessionEventRing
+{
+//region MEMBER VARIABLES
+    public static final int TYPE_START = 1;
+    public static final int TYPE_PAUSE = 2;
+    public static final int TYPE_RESET = 3;
+    public static final int TYPE_INTERVAL = 4;
+    public static final int TYPE_LIMITED_HOLD = 5;
+    public static final int TYPE_PHASE = 6;
+    public static final int TYPE_FINISH = 7;
+
+    /**
+     * Record layout: wall clock millis, timer value, interval value, iteration, type
+     */
+    static final int RECORD_SIZE = 32;
+    private static final int OFFSET_TIME = 0;
+    private static final int OFFSET_TIMER_VALUE = 8;
+    private static final int OFFSET_INTERVAL_VALUE = 16;
+    private static final int OFFSET_ITERATION = 24;
+    private static final int OFFSET_TYPE = 28;
+
+    /**
+     * Receives drained events, called on the draining thread
+     */
+    public interface Consumer
+    {
+        void onEvent(int type, long timeMillis, long timerValue, long intervalValue, int iteration);
+
+        /**
+         * Called once after every drained batch e.g. to flush to disk
+         */
+        void onBatchEnd();
+    }
+
+    private final ByteBuffer mBuffer;
+    private final int mMask;
+
+    /**
+     * Next sequence the producer writes and the next one the consumer reads
+     */
+    private final PaddedSequence mProducerSequence = new PaddedSequence();
+    private final PaddedSequence mConsumerSequence = new PaddedSequence();
+
+    /**
+     * Producer only, consumer sequence last seen so a publish rarely touches the shared counter
+     */
+    private long mCachedConsumerSequence = 0;
+
+    /**
+     * Back-pressure statistics, written by the producer only
+     */
+    private volatile long mProducerWaits = 0;
+    private volatile long mProducerWaitNanos = 0;
+    private volatile long mMaxBacklog = 0;
+//endregion
+
+//region CONSTRUCTOR
+    /**
+     * @param capacity Number of records, rounded up to a power of two
+     */
+    public SessionEventRing(int capacity)
+    {
+        if(capacity <= 0)
+        {
+            throw new IllegalArgumentException("Ring capacity must be greater than zero.");
+        }
+
+        int size = Integer.highestOneBit(capacity * 2 - 1);
+        mMask = size - 1;
+        mBuffer = ByteBuffer.allocateDirect(size * RECORD_SIZE).order(ByteOrder.nativeOrder());
+    }
+//endregion
+
+//region PRODUCER
+    /**
+     * Publish an event, blocks until the consumer frees a slot if the ring is full. Producer
+     * thread only.
+     */
+    public void publish(int type, long timerValue, long intervalValue, int iteration)
+    {
+        long sequence = mProducerSequence.get();
+        long wrapPoint = sequence - mMask - 1;
+
+        if(mCachedConsumerSequence <= wrapPoint)
+        {
+            mCachedConsumerSequence = mConsumerSequence.get();
+            if(mCachedConsumerSequence <= wrapPoint)
+            {
+                waitForConsumer(wrapPoint);
+            }
+        }
+
+        int offset = (int) (sequence & mMask) * RECORD_SIZE;
+        mBuffer.putLong(offset + OFFSET_TIME, System.currentTimeMillis());
+        mBuffer.putLong(offset + OFFSET_TIMER_VALUE, timerValue);
+        mBuffer.putLong(offset + OFFSET_INTERVAL_VALUE, intervalValue);
+        mBuffer.putInt(offset + OFFSET_ITERATION, iteration);
+        mBuffer.putInt(offset + OFFSET_TYPE, type);
+
+        //Ordered store, the record is visible before the consumer can see the new sequence
+        mProducerSequence.lazySet(sequence + 1);
+
+        //The cached sequence can be far behind, a new maximum is checked against the live one
+        long backlog = sequence + 1 - mCachedConsumerSequence;
+        if(backlog > mMaxBacklog)
+        {
+            backlog = sequence + 1 - mConsumerSequence.get();
+            if(backlog > mMaxBacklog)
+            {
+                mMaxBacklog = backlog;
+            }
+        }
+    }
+
+    /**
+     * @return Number of times publish() had to wait for the consumer
+     */
+    public long getProducerWaits() { return mProducerWaits; }
+
+    /**
+     * @return Total nanoseconds publish() spent waiting for the consumer
+     */
+    public long getProducerWaitNanos() { return mProducerWaitNanos; }
+
+    /**
+     * @return Highest number of undrained events seen by the producer
+     */
+    public long getMaxBacklog() { return mMaxBacklog; }
+//endregion
+
+//region CONSUMER
+    /**
+     * Hand every published event to the consumer, up to maxBatch of them. Consumer thread only.
+     * @return Number of events drained
+     */
+    public int drain(Consumer consumer, int maxBatch)
+    {
+        long sequence = mConsumerSequence.get();
+        long available = Math.min(mProducerSequence.get() - sequence, maxBatch);
+        if(available <= 0) return 0;
+
+        for(long i = 0; i < available; ++i)
+        {
+            int offset = (int) ((sequence + i) & mMask) * RECORD_SIZE;
+            consumer.onEvent(mBuffer.getInt(offset + OFFSET_TYPE),
+                    mBuffer.getLong(offset + OFFSET_TIME),
+                    mBuffer.getLong(offset + OFFSET_TIMER_VALUE),
+                    mBuffer.getLong(offset + OFFSET_INTERVAL_VALUE),
+                    mBuffer.getInt(offset + OFFSET_ITERATION));
+        }
+
+        //Slots are only released after the whole batch was handed over
+        mConsumerSequence.lazySet(sequence + available);
+        consumer.onBatchEnd();
+        return (int) available;
+    }
+
+    /**
+     * Background thread that keeps draining until interrupted, then drains what is left
+     * @param consumer Receives the events
+     * @param maxBatch Most events handed over per batch
+     * @param idleMillis How long to sleep when the ring is empty
+     * @return Thread that has not been started
+     */
+    public Thread newDrainThread(final Consumer consumer, final int maxBatch, final long idleMillis)
+    {
+        Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                while(!Thread.currentThread().isInterrupted())
+                {
+                    if(drain(consumer, maxBatch) == 0)
+                    {
+                        try
+                        {
+                            Thread.sleep(idleMillis);
+                        } catch (InterruptedException e)
+                        {
+                            break;
+                        }
+                    }
+                }
+
+                //Nothing is ever lost, empty the ring before leaving
+                while(drain(consumer, maxBatch) > 0)
+                {
+                    //Keep draining
+                }
+            }
+        }, "BCDT.SessionEventRing");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * @return Events published but not drained yet
+     */
+    public long getBacklog()
+    {
+        return mProducerSequence.get() - mConsumerSequence.get();
+    }
+//endregion
+
+//region PRIVATE HELPER METHODS
+    private void waitForConsumer(long wrapPoint)
+    {
+        long waitStart = System.nanoTime();
+        int spins = 0;
+
+        while((mCachedConsumerSequence = mConsumerSequence.get()) <= wrapPoint)
+        {
+            if(++spins < 100)
+            {
+                Thread.yield();
+            }
+            else
+            {
+                LockSupport.parkNanos(50000);
+            }
+        }
+
+        mProducerWaits = mProducerWaits + 1;
+        mProducerWaitNanos = mProducerWaitNanos + System.nanoTime() - waitStart;
+    }
+
+    /**
+     * Sequence counter padded to its own cache line so producer and consumer don't false share
+     */
+    @SuppressWarnings("unused")
+    private static final class PaddedSequence extends AtomicLong
+    {
+        private static final long serialVersionUID = 1L;
+
+        long p1, p2, p3, p4, p5, p6, p7;
+    }
+//endregion
+}
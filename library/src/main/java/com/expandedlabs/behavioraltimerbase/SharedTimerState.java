@@ -0,0 +1,291 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import android.os.SystemClock;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Live timer state in a small memory mapped file so another process (e.g. a wear or secondary
+ * display service) can sample it at display rate without IPC. One timer writes it through
+ * {@link BehaviorCountDownTimer#setSharedState(SharedTimerState)}, any number of readers open
+ * the same file.
+ *
+ * The region is a seqlock: the writer makes the sequence odd, writes the values and makes it
+ * even again, readers retry until they see the same even sequence before and after reading.
+ * Mapped memory has no ordered loads in Java 7, so the sequence alone can't stop a reader in
+ * another process from mixing two publishes. The writer also stores a checksum of the sequence
+ * and the values, readers copy the record and only accept it if the checksum matches. Layout
+ * (big endian):
+ * <pre>
+ *  0 long sequence          8 long timer remaining     16 long interval remaining
+ * 24 long publish time     32 int iteration           36 int phase index
+ * 40 int flags             44 int magic "BTSS"        48 int version
+ * 56 long checksum
+ * </pre>
+ * The publish time is SystemClock.elapsedRealtime(), which every process shares, so readers can
+ * count down smoothly between the 100ms ticks.
+ */
+@SuppressWarnings("WeakerAccess")
+public class SharedTimerState
+{
+//region MEMBER VARIABLES
+    public static final int MAGIC = 0x42545353;
+    public static final int VERSION = 2;
+    public static final int SIZE = 64;
+
+    public static final int FLAG_RUNNING = 1;
+    public static final int FLAG_LIMITED_HOLD = 2;
+
+    private static final int SEQUENCE = 0;
+    private static final int TIMER_VALUE = 8;
+    private static final int INTERVAL_VALUE = 16;
+    private static final int PUBLISH_TIME = 24;
+    private static final int ITERATION = 32;
+    private static final int PHASE = 36;
+    private static final int FLAGS = 40;
+    private static final int MAGIC_OFFSET = 44;
+    private static final int VERSION_OFFSET = 48;
+    private static final int CHECKSUM = 56;
+
+    /**
+     * Readers give up after this many torn reads in a row, the writer only holds the sequence
+     * odd for a handful of stores
+     */
+    private static final int MAX_READ_ATTEMPTS = 64;
+
+    private final MappedByteBuffer mBuffer;
+    private final boolean mWriter;
+    private long mSequence;
+
+    /**
+     * Java 7 has no explicit fences for mapped memory. Accessing a volatile field orders the
+     * surrounding buffer accesses on ART and HotSpot, which emit a barrier instruction for it,
+     * but nothing guarantees it so the checksum is what rejects a torn record. It is only ever
+     * zero.
+     */
+    private volatile int mFence = 0;
+//endregion
+
+//region CONSTRUCTOR
+    private SharedTimerState(MappedByteBuffer buffer, boolean writer)
+    {
+        mBuffer = buffer;
+        mWriter = writer;
+        mSequence = buffer.getLong(SEQUENCE);
+    }
+
+    /**
+     * Create (or take over) the region a timer publishes to. Only one writer may use a file.
+     */
+    public static SharedTimerState openWriter(File file) throws IOException
+    {
+        RandomAccessFile access = new RandomAccessFile(file, "rw");
+        try
+        {
+            access.setLength(SIZE);
+            SharedTimerState state = new SharedTimerState(
+                    access.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, SIZE), true);
+
+            //A writer that died mid-publish leaves the sequence odd, move past it
+            if((state.mSequence & 1) != 0)
+            {
+                ++state.mSequence;
+                state.mBuffer.putLong(SEQUENCE, state.mSequence);
+            }
+            state.mBuffer.putInt(MAGIC_OFFSET, MAGIC);
+            state.mBuffer.putInt(VERSION_OFFSET, VERSION);
+            return state;
+        }
+        finally
+        {
+            access.close();
+        }
+    }
+
+    /**
+     * Open a region another process writes
+     */
+    public static SharedTimerState openReader(File file) throws IOException
+    {
+        RandomAccessFile access = new RandomAccessFile(file, "r");
+        try
+        {
+            if(access.length() < SIZE)
+            {
+                throw new IOException("Not a shared timer state file.");
+            }
+
+            SharedTimerState state = new SharedTimerState(
+                    access.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, SIZE), false);
+            if(state.mBuffer.getInt(MAGIC_OFFSET) != MAGIC)
+            {
+                throw new IOException("Not a shared timer state file.");
+            }
+            //Older versions have no checksum and can't be read safely
+            if(state.mBuffer.getInt(VERSION_OFFSET) != VERSION)
+            {
+                throw new IOException("Unsupported shared timer state version.");
+            }
+            return state;
+        }
+        finally
+        {
+            access.close();
+        }
+    }
+//endregion
+
+//region WRITER
+    /**
+     * Publish the timer's state, called on the timer's thread
+     */
+    void publish(BehaviorCountDownTimer bTimer)
+    {
+        if(!mWriter)
+        {
+            throw new IllegalStateException("Shared state was opened for reading.");
+        }
+
+        long timerValue = bTimer.getCurrentTimerValue();
+        long intervalValue = bTimer.getCurrentIntervalValue();
+        long publishTime = SystemClock.elapsedRealtime();
+        int iteration = bTimer.getCurrentIterationValue();
+        int phase = bTimer.getCurrentPhaseIndex();
+        int flags = (bTimer.getTimerRunningFlag() ? FLAG_RUNNING : 0)
+                | (bTimer.getCurrentLimitedHoldFlag() ? FLAG_LIMITED_HOLD : 0);
+
+        mBuffer.putLong(SEQUENCE, ++mSequence);
+        mFence = 0;
+
+        mBuffer.putLong(TIMER_VALUE, timerValue);
+        mBuffer.putLong(INTERVAL_VALUE, intervalValue);
+        mBuffer.putLong(PUBLISH_TIME, publishTime);
+        mBuffer.putInt(ITERATION, iteration);
+        mBuffer.putInt(PHASE, phase);
+        mBuffer.putInt(FLAGS, flags);
+        //Covers the even sequence the record is published under
+        mBuffer.putLong(CHECKSUM, checksum(mSequence + 1, timerValue, intervalValue,
+                publishTime, iteration, phase, flags));
+
+        mFence = 0;
+        mBuffer.putLong(SEQUENCE, ++mSequence);
+    }
+//endregion
+
+//region READER
+    /**
+     * Take a consistent copy of the state, never blocks the writer
+     * @param into Reused for every read so sampling every frame allocates nothing
+     * @return False if the writer kept the region busy, into is left unchanged
+     */
+    public boolean read(Snapshot into)
+    {
+        for(int attempt = 0; attempt < MAX_READ_ATTEMPTS; ++attempt)
+        {
+            long before = mBuffer.getLong(SEQUENCE);
+            //The volatile reads of the (always zero) fence order the loads around them
+            if((before & 1) != 0 || mFence != 0) continue;
+
+            long timerValue = mBuffer.getLong(TIMER_VALUE);
+            long intervalValue = mBuffer.getLong(INTERVAL_VALUE);
+            long publishTime = mBuffer.getLong(PUBLISH_TIME);
+            int iteration = mBuffer.getInt(ITERATION);
+            int phase = mBuffer.getInt(PHASE);
+            int flags = mBuffer.getInt(FLAGS);
+            long checksum = mBuffer.getLong(CHECKSUM);
+
+            if(mFence != 0 || mBuffer.getLong(SEQUENCE) != before) continue;
+
+            //The loads may still have been reordered around the sequence, a record mixed from
+            // two publishes doesn't match its checksum
+            if(checksum != checksum(before, timerValue, intervalValue, publishTime, iteration,
+                    phase, flags)) continue;
+
+            into.mSequence = before;
+            into.mTimerValue = timerValue;
+            into.mIntervalValue = intervalValue;
+            into.mPublishTime = publishTime;
+            into.mIteration = iteration;
+            into.mPhaseIndex = phase;
+            into.mFlags = flags;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Hash of a record and the sequence it was published under, zero for the empty region
+     * before the first publish
+     */
+    private static long checksum(long sequence, long timerValue, long intervalValue,
+                                 long publishTime, int iteration, int phase, int flags)
+    {
+        if(sequence == 0) return 0;
+
+        long hash = mix(sequence);
+        hash = mix(hash ^ timerValue);
+        hash = mix(hash ^ intervalValue);
+        hash = mix(hash ^ publishTime);
+        hash = mix(hash ^ iteration);
+        hash = mix(hash ^ phase);
+        return mix(hash ^ flags);
+    }
+
+    private static long mix(long value)
+    {
+        value *= 0x9E3779B97F4A7C15L;
+        return value ^ (value >>> 32);
+    }
+
+    /**
+     * One consistent read of the shared state
+     */
+    public static final class Snapshot
+    {
+        private long mSequence;
+        private long mTimerValue;
+        private long mIntervalValue;
+        private long mPublishTime;
+        private int mIteration;
+        private int mPhaseIndex;
+        private int mFlags;
+
+        /**
+         * @return Even number that changes on every publish, zero before the first one
+         */
+        public long getSequence() { return mSequence; }
+
+        public long getTimerValue() { return mTimerValue; }
+
+        public long getIntervalValue() { return mIntervalValue; }
+
+        /**
+         * @return SystemClock.elapsedRealtime() when the values were published
+         */
+        public long getPublishTime() { return mPublishTime; }
+
+        public int getIterationValue() { return mIteration; }
+
+        public int getPhaseIndex() { return mPhaseIndex; }
+
+        public boolean getRunningFlag() { return (mFlags & FLAG_RUNNING) != 0; }
+
+        public boolean getLimitedHoldFlag() { return (mFlags & FLAG_LIMITED_HOLD) != 0; }
+
+        /**
+         * Time left on the timer at a given moment, counted down from the last publish while
+         * the timer is running
+         * @param elapsedRealtime SystemClock.elapsedRealtime() of the frame being drawn
+         */
+        public long getTimerValueAt(long elapsedRealtime)
+        {
+            if(!getRunningFlag()) return mTimerValue;
+            return Math.max(0, mTimerValue - Math.max(0, elapsedRealtime - mPublishTime));
+        }
+    }
+//endregion
+}
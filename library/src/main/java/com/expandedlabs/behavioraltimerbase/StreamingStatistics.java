@@ -0,0 +1,99 @@
+package com.expandedlabs.behavioraltimerbase;
+
+/**
+ * Constant space running statistics (Welford's mean/variance plus min/max). Adding a value is
+ * O(1) and every value can be read at any moment, nothing is kept per sample.
+ */
+@SuppressWarnings("WeakerAccess")
+public class StreamingStatistics
+{
+    private long mCount = 0;
+    private double mMean = 0;
+    private double mSumSquares = 0;
+    private long mMin = 0;
+    private long mMax = 0;
+    private long mTotal = 0;
+
+    /**
+     * Add a value in milliseconds
+     */
+    public void add(long value)
+    {
+        ++mCount;
+        mTotal += value;
+
+        double delta = value - mMean;
+        mMean += delta / mCount;
+        mSumSquares += delta * (value - mMean);
+
+        if(mCount == 1 || value < mMin) mMin = value;
+        if(mCount == 1 || value > mMax) mMax = value;
+    }
+
+    /**
+     * Add every value another instance has seen e.g. to combine statistics computed in parallel
+     */
+    public void merge(StreamingStatistics other)
+    {
+        if(other.mCount == 0) return;
+        if(mCount == 0)
+        {
+            mCount = other.mCount;
+            mMean = other.mMean;
+            mSumSquares = other.mSumSquares;
+            mMin = other.mMin;
+            mMax = other.mMax;
+            mTotal = other.mTotal;
+            return;
+        }
+
+        //Chan et al. pairwise update
+        long count = mCount + other.mCount;
+        double delta = other.mMean - mMean;
+        mMean += delta * other.mCount / count;
+        mSumSquares += other.mSumSquares + delta * delta * mCount * other.mCount / count;
+        mCount = count;
+        mTotal += other.mTotal;
+        mMin = Math.min(mMin, other.mMin);
+        mMax = Math.max(mMax, other.mMax);
+    }
+
+    public void clear()
+    {
+        mCount = 0;
+        mMean = 0;
+        mSumSquares = 0;
+        mMin = 0;
+        mMax = 0;
+        mTotal = 0;
+    }
+
+    public long getCount() { return mCount; }
+
+    /**
+     * @return Sum of every value added
+     */
+    public long getTotal() { return mTotal; }
+
+    public double getMean() { return mMean; }
+
+    /**
+     * @return Sample variance, zero with less than two values
+     */
+    public double getVariance()
+    {
+        return mCount < 2 ? 0 : mSumSquares / (mCount - 1);
+    }
+
+    public double getStandardDeviation() { return Math.sqrt(getVariance()); }
+
+    /**
+     * @return Smallest value, zero when empty
+     */
+    public long getMin() { return mMin; }
+
+    /**
+     * @return Largest value, zero when empty
+     */
+    public long getMax() { return mMax; }
+}
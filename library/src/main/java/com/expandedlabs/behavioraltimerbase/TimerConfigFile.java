@@ -0,0 +1,327 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import com.expandedlabs.behavioraltimerbase.exceptions.IntervalTimerException;
+import com.expandedlabs.behavioraltimerbase.exceptions.IterationException;
+import com.expandedlabs.behavioraltimerbase.exceptions.LimitedHoldException;
+import com.expandedlabs.behavioraltimerbase.exceptions.MinMaxException;
+import com.expandedlabs.behavioraltimerbase.exceptions.TotalTimerException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+
+/**
+ * Compact binary file of named timer protocols e.g. everything a picker lists at startup. Opening
+ * a file only checks the header, a protocol's name and length are read straight from the mapped
+ * file and its phases are only decoded and validated when it is opened with getProtocol().
+ *
+ * Layout (big endian), version 1:
+ * <pre>
+ * header  int magic "BTCF", short version, short header size, int protocol count, int reserved
+ * index   per protocol: int record offset, short phase count, short name length,
+ *         int total timer value
+ * record  long seed, UTF-8 name, then per phase: int timer, int interval, int min random,
+ *         int max random, int iterations, int limited hold, byte flags, byte style,
+ *         short reserved
+ * </pre>
+ * Values are milliseconds and the style is the RandomStyleEnum ordinal, new styles can only be
+ * appended. Readers reject versions newer than they know.
+ */
+@SuppressWarnings("WeakerAccess")
+public class TimerConfigFile
+{
+//region MEMBER VARIABLES
+    public static final int MAGIC = 0x42544346;
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 16;
+    private static final int INDEX_ENTRY_SIZE = 12;
+    private static final int PHASE_SIZE = 28;
+    private static final int SEED_SIZE = 8;
+
+    private static final int FLAG_RANDOM = 1;
+    private static final int FLAG_LIMITED_HOLD = 2;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final ByteBuffer mBuffer;
+    private final int mVersion;
+    private final int mCount;
+//endregion
+
+//region CONSTRUCTOR
+    /**
+     * Read protocols from a buffer e.g. an asset loaded in memory
+     * @param buffer Whole file, absolute reads only so it can be shared between threads
+     */
+    public TimerConfigFile(ByteBuffer buffer) throws IOException
+    {
+        mBuffer = buffer;
+
+        if(buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+        {
+            throw new IOException("Not a timer configuration file.");
+        }
+
+        mVersion = buffer.getShort(4);
+        if(mVersion < 1 || mVersion > VERSION)
+        {
+            throw new IOException("Unsupported timer configuration version " + mVersion + ".");
+        }
+
+        int headerSize = buffer.getShort(6);
+        mCount = buffer.getInt(8);
+        if(headerSize != HEADER_SIZE || mCount < 0
+                || (long) HEADER_SIZE + (long) mCount * INDEX_ENTRY_SIZE > buffer.limit())
+        {
+            throw new IOException("Timer configuration file is corrupt.");
+        }
+    }
+
+    /**
+     * Map a file read only, the mapping stays valid after this returns
+     */
+    public static TimerConfigFile open(File file) throws IOException
+    {
+        FileInputStream in = new FileInputStream(file);
+        try
+        {
+            FileChannel channel = in.getChannel();
+            return new TimerConfigFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+//endregion
+
+//region GETTERS
+    public int getVersion() { return mVersion; }
+
+    /**
+     * @return Number of protocols in the file
+     */
+    public int getCount() { return mCount; }
+
+    public String getName(int index) throws IOException
+    {
+        int nameLength = mBuffer.getShort(indexEntry(index) + 6) & 0xFFFF;
+        byte[] name = new byte[nameLength];
+
+        ByteBuffer record = mBuffer.duplicate();
+        record.position(recordOffset(index) + SEED_SIZE);
+        record.get(name);
+        return new String(name, UTF_8);
+    }
+
+    /**
+     * @return Total duration of the protocol in milliseconds, fitting included
+     */
+    public long getTimerValue(int index)
+    {
+        return mBuffer.getInt(indexEntry(index) + 8) & 0xFFFFFFFFL;
+    }
+
+    public int getPhaseCount(int index)
+    {
+        return mBuffer.getShort(indexEntry(index) + 4) & 0xFFFF;
+    }
+
+    /**
+     * @return Seed to set with setRandomSeed() so the protocol plays out as authored
+     */
+    public long getSeed(int index) throws IOException
+    {
+        return mBuffer.getLong(recordOffset(index));
+    }
+
+    /**
+     * Decode and validate one phase
+     */
+    public ProtocolPhase getPhase(int index, int phaseIndex)
+            throws IOException,
+            IntervalTimerException,
+            IterationException,
+            LimitedHoldException,
+            MinMaxException,
+            TotalTimerException
+    {
+        if(phaseIndex < 0 || phaseIndex >= getPhaseCount(index))
+        {
+            throw new IndexOutOfBoundsException("Phase " + phaseIndex + " out of range.");
+        }
+
+        int nameLength = mBuffer.getShort(indexEntry(index) + 6) & 0xFFFF;
+        int offset = recordOffset(index) + SEED_SIZE + nameLength + phaseIndex * PHASE_SIZE;
+
+        int flags = mBuffer.get(offset + 24);
+        int style = mBuffer.get(offset + 25);
+        BehaviorCountDownTimer.RandomStyleEnum[] styles = BehaviorCountDownTimer.RandomStyleEnum.values();
+        if(style < 0 || style >= styles.length)
+        {
+            throw new IOException("Timer configuration file is corrupt.");
+        }
+
+        return new ProtocolPhase(mBuffer.getInt(offset),
+                mBuffer.getInt(offset + 4),
+                (flags & FLAG_RANDOM) != 0,
+                styles[style],
+                mBuffer.getInt(offset + 8), mBuffer.getInt(offset + 12),
+                mBuffer.getInt(offset + 16),
+                (flags & FLAG_LIMITED_HOLD) != 0, mBuffer.getInt(offset + 20));
+    }
+
+    /**
+     * Decode and validate every phase of a protocol
+     */
+    public TimerProtocol getProtocol(int index)
+            throws IOException,
+            IntervalTimerException,
+            IterationException,
+            LimitedHoldException,
+            MinMaxException,
+            TotalTimerException
+    {
+        ProtocolPhase[] phases = new ProtocolPhase[getPhaseCount(index)];
+        for(int i = 0; i < phases.length; ++i)
+        {
+            phases[i] = getPhase(index, i);
+        }
+        return new TimerProtocol(phases);
+    }
+//endregion
+
+//region PRIVATE HELPER METHODS
+    private int indexEntry(int index)
+    {
+        if(index < 0 || index >= mCount)
+        {
+            throw new IndexOutOfBoundsException("Protocol " + index + " out of range.");
+        }
+        return HEADER_SIZE + index * INDEX_ENTRY_SIZE;
+    }
+
+    /**
+     * Offset of a protocol's record, checked against the end of the file
+     */
+    private int recordOffset(int index) throws IOException
+    {
+        int entry = indexEntry(index);
+        int offset = mBuffer.getInt(entry);
+        int nameLength = mBuffer.getShort(entry + 6) & 0xFFFF;
+        int phaseCount = mBuffer.getShort(entry + 4) & 0xFFFF;
+
+        if(offset < HEADER_SIZE || (long) offset + SEED_SIZE + nameLength
+                + (long) phaseCount * PHASE_SIZE > mBuffer.limit())
+        {
+            throw new IOException("Timer configuration file is corrupt.");
+        }
+        return offset;
+    }
+//endregion
+
+    /**
+     * Writes protocols in the current version
+     */
+    public static class Builder
+    {
+        private final ArrayList<String> mNames = new ArrayList<>();
+        private final ArrayList<Long> mSeeds = new ArrayList<>();
+        private final ArrayList<TimerProtocol> mProtocols = new ArrayList<>();
+
+        /**
+         * @param name Shown in pickers
+         * @param seed Seed for the protocol's random intervals
+         * @param protocol Phases to store, fitted values are stored
+         */
+        public Builder add(String name, long seed, TimerProtocol protocol)
+        {
+            if(name.getBytes(UTF_8).length > 0xFFFF || protocol.getPhaseCount() > 0xFFFF
+                    || protocol.getTimerValue() > 0xFFFFFFFFL)
+            {
+                throw new IllegalArgumentException("Protocol " + name + " is too large.");
+            }
+
+            mNames.add(name);
+            mSeeds.add(seed);
+            mProtocols.add(protocol);
+            return this;
+        }
+
+        public ByteBuffer build()
+        {
+            int size = HEADER_SIZE + mProtocols.size() * INDEX_ENTRY_SIZE;
+            byte[][] names = new byte[mNames.size()][];
+            for(int i = 0; i < names.length; ++i)
+            {
+                names[i] = mNames.get(i).getBytes(UTF_8);
+                size += SEED_SIZE + names[i].length + mProtocols.get(i).getPhaseCount() * PHASE_SIZE;
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(size);
+            buffer.putInt(MAGIC);
+            buffer.putShort((short) VERSION);
+            buffer.putShort((short) HEADER_SIZE);
+            buffer.putInt(mProtocols.size());
+            buffer.putInt(0);
+
+            int recordOffset = HEADER_SIZE + mProtocols.size() * INDEX_ENTRY_SIZE;
+            for(int i = 0; i < names.length; ++i)
+            {
+                TimerProtocol protocol = mProtocols.get(i);
+                buffer.putInt(recordOffset);
+                buffer.putShort((short) protocol.getPhaseCount());
+                buffer.putShort((short) names[i].length);
+                buffer.putInt((int) protocol.getTimerValue());
+                recordOffset += SEED_SIZE + names[i].length + protocol.getPhaseCount() * PHASE_SIZE;
+            }
+
+            for(int i = 0; i < names.length; ++i)
+            {
+                TimerProtocol protocol = mProtocols.get(i);
+                buffer.putLong(mSeeds.get(i));
+                buffer.put(names[i]);
+
+                for(int p = 0; p < protocol.getPhaseCount(); ++p)
+                {
+                    ProtocolPhase phase = protocol.getPhase(p);
+                    buffer.putInt(toInt(phase.getTimerValue()));
+                    buffer.putInt(toInt(phase.getIntervalValue()));
+                    buffer.putInt(toInt(phase.getMinRandomValue()));
+                    buffer.putInt(toInt(phase.getMaxRandomValue()));
+                    buffer.putInt(phase.getRandIterationValue());
+                    buffer.putInt(toInt(phase.getLimitedHoldValue()));
+                    buffer.put((byte) ((phase.getRandomFlag() ? FLAG_RANDOM : 0)
+                            | (phase.getLimitedHoldFlag() ? FLAG_LIMITED_HOLD : 0)));
+                    buffer.put((byte) phase.getStyle().ordinal());
+                    buffer.putShort((short) 0);
+                }
+            }
+
+            buffer.flip();
+            return buffer;
+        }
+
+        public void writeTo(OutputStream out) throws IOException
+        {
+            ByteBuffer buffer = build();
+            out.write(buffer.array(), 0, buffer.limit());
+            out.flush();
+        }
+
+        private static int toInt(long millis)
+        {
+            if(millis > Integer.MAX_VALUE || millis < Integer.MIN_VALUE)
+            {
+                throw new IllegalArgumentException("Value " + millis + " does not fit the format.");
+            }
+            return (int) millis;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import android.util.Log;
+
+/**
+ * Debug output of the timers. Entries are a constant format with up to two long arguments, the
+ * "{}" placeholders are only filled in when a sink shows the entry, so logging on the tick path
+ * allocates nothing. Nothing is written until a sink is set e.g. {@link #LOGCAT} while
+ * developing or a {@link DiagnosticRing} kept for bug reports.
+ *
+ * Builds that set COMPILED to false drop every call site's body at compile time.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class TimerDiagnostics
+{
+//region MEMBER VARIABLES
+    public static final boolean COMPILED = true;
+
+    public static final int VERBOSE = Log.VERBOSE;
+    public static final int DEBUG = Log.DEBUG;
+    public static final int INFO = Log.INFO;
+    public static final int WARN = Log.WARN;
+    public static final int ERROR = Log.ERROR;
+
+    /**
+     * Receives entries on the thread that logged them
+     */
+    public interface Sink
+    {
+        /**
+         * @param format Constant message, see {@link TimerDiagnostics#format}
+         */
+        void write(int level, String tag, String format, long arg0, long arg1);
+    }
+
+    /**
+     * Formats every entry straight to logcat, like the timers used to
+     */
+    public static final Sink LOGCAT = new Sink()
+    {
+        @Override
+        public void write(int level, String tag, String format, long arg0, long arg1)
+        {
+            Log.println(level, tag, format(format, arg0, arg1));
+        }
+    };
+
+    private static volatile Sink sSink = null;
+    private static volatile int sLevel = DEBUG;
+//endregion
+
+    private TimerDiagnostics() {}
+
+//region SETTINGS
+    /**
+     * @param sink Where entries go, null to drop them all
+     */
+    public static void setSink(Sink sink) { sSink = sink; }
+
+    public static Sink getSink() { return sSink; }
+
+    /**
+     * @param level Lowest level written e.g. INFO to skip the per boundary DEBUG entries
+     */
+    public static void setLevel(int level) { sLevel = level; }
+
+    public static int getLevel() { return sLevel; }
+
+    /**
+     * @return True if an entry of the level would be written
+     */
+    public static boolean isLoggable(int level)
+    {
+        return COMPILED && sSink != null && level >= sLevel;
+    }
+//endregion
+
+//region LOGGING
+    public static void debug(String tag, String format)
+    {
+        log(DEBUG, tag, format, 0, 0);
+    }
+
+    public static void debug(String tag, String format, long arg0)
+    {
+        log(DEBUG, tag, format, arg0, 0);
+    }
+
+    public static void debug(String tag, String format, long arg0, long arg1)
+    {
+        log(DEBUG, tag, format, arg0, arg1);
+    }
+
+    public static void log(int level, String tag, String format, long arg0, long arg1)
+    {
+        if(!COMPILED) return;
+
+        Sink sink = sSink;
+        if(sink != null && level >= sLevel)
+        {
+            sink.write(level, tag, format, arg0, arg1);
+        }
+    }
+
+    /**
+     * Fill the first two "{}" of a format with the arguments, extra placeholders stay as they are
+     */
+    public static String format(String format, long arg0, long arg1)
+    {
+        int first = format.indexOf("{}");
+        if(first < 0) return format;
+
+        StringBuilder message = new StringBuilder(format.length() + 16);
+        message.append(format, 0, first).append(arg0);
+
+        int second = format.indexOf("{}", first + 2);
+        if(second < 0)
+        {
+            return message.append(format, first + 2, format.length()).toString();
+        }
+        return message.append(format, first + 2, second).append(arg1)
+                .append(format, second + 2, format.length()).toString();
+    }
+//endregion
+}
@@ -0,0 +1,636 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import java.util.HashMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Headless host for a large number of behavioral timers. Every registered timer is driven by the
+ * engine instead of an android Looper so the same sessions the tablets run can be mirrored on a
+ * plain JVM.
+ *
+ * Sessions live in a lock-striped registry keyed by session id. Each session is pinned to a
+ * single thread for its whole life and its control calls and posted commands are queued to that
+ * thread, so the timer callbacks never race with each other and nothing locks the tick path,
+ * just like on the main thread.
+ */
+@SuppressWarnings("WeakerAccess")
+public class TimerEngine implements Countdown.Factory
+{
+//region MEMBER VARIABLES
+    /**
+     * SHARDED - Sessions are spread across a fixed number of scheduled executors, each shard
+     *           owning one thread. Cheapest per session.
+     * THREAD_PER_SESSION - Every running session gets its own thread from the supplied
+     *           ThreadFactory. Pass a virtual thread factory (e.g. Thread.ofVirtual().factory())
+     *           on a JVM that has them, otherwise this is only sensible for small session counts.
+     */
+    public enum ExecutionModeEnum
+    {
+        SHARDED,
+        THREAD_PER_SESSION
+    }
+
+    private final ExecutionModeEnum mExecutionMode;
+
+    /**
+     * Registry stripes, a session id always maps to the same stripe
+     */
+    private final Stripe[] mStripes;
+    private final int mStripeMask;
+
+    /**
+     * Only created for SHARDED, a timer always maps to the same shard
+     */
+    private final ScheduledExecutorService[] mShards;
+
+    /**
+     * Only used for THREAD_PER_SESSION
+     */
+    private final ThreadFactory mThreadFactory;
+
+    /**
+     * Only used for THREAD_PER_SESSION, threads of timers the engine was set on as the countdown
+     * factory without registering them. Guarded by itself.
+     */
+    private final WeakHashMap<BehaviorCountDownTimer, SessionThread> mDirectSessions =
+            new WeakHashMap<>();
+
+    private final AtomicLong mNextSessionId = new AtomicLong(1);
+    private volatile boolean mShutdown = false;
+//endregion
+
+//region CONSTRUCTOR
+    /**
+     * @param executionMode How sessions are executed
+     * @param shardCount    Number of shard threads for SHARDED, ignored otherwise
+     * @param threadFactory Creates shard threads for SHARDED or session threads for
+     *                      THREAD_PER_SESSION, null for the default thread factory
+     */
+    public TimerEngine(ExecutionModeEnum executionMode, int shardCount, ThreadFactory threadFactory)
+    {
+        if(shardCount <= 0)
+        {
+            throw new IllegalArgumentException("Shard count must be greater than zero.");
+        }
+
+        mExecutionMode = executionMode;
+        mThreadFactory = threadFactory == null ? Executors.defaultThreadFactory() : threadFactory;
+
+        //Stripe count is a power of two so a session id maps to its stripe with a mask
+        int stripeCount = Integer.highestOneBit(Math.max(shardCount, 16) * 2 - 1);
+        mStripes = new Stripe[stripeCount];
+        mStripeMask = stripeCount - 1;
+        for(int i = 0; i < stripeCount; ++i)
+        {
+            mStripes[i] = new Stripe();
+        }
+
+        if(executionMode == ExecutionModeEnum.SHARDED)
+        {
+            mShards = new ScheduledExecutorService[shardCount];
+            for(int i = 0; i < shardCount; ++i)
+            {
+                mShards[i] = Executors.newSingleThreadScheduledExecutor(mThreadFactory);
+            }
+        }
+        else
+        {
+            mShards = null;
+        }
+    }
+//endregion
+
+//region SESSIONS
+    /**
+     * Hand a timer over to the engine, from now on it ticks on the engine's threads
+     * @param bTimer Timer that is not currently running
+     * @return The session id used for every other engine call
+     * @throws IllegalStateException If the engine was shut down
+     */
+    public long register(BehaviorCountDownTimer bTimer)
+    {
+        long sessionId = mNextSessionId.getAndIncrement();
+        Session session;
+        if(mExecutionMode == ExecutionModeEnum.SHARDED)
+        {
+            session = new Session(bTimer, shardFor(bTimer));
+            bTimer.setCountdownFactory(this);
+        }
+        else
+        {
+            SessionThread sessionThread = new SessionThread(mThreadFactory);
+            session = new Session(bTimer, sessionThread);
+            bTimer.setCountdownFactory(sessionThread);
+        }
+        bTimer.setCommandExecutor(session.mExecutor);
+
+        Stripe stripe = stripeFor(sessionId);
+        synchronized(stripe)
+        {
+            //Checked under the stripe lock, shutdown() takes it after setting the flag
+            if(mShutdown)
+            {
+                throw new IllegalStateException("Engine was shut down.");
+            }
+            stripe.mSessions.put(sessionId, session);
+        }
+        return sessionId;
+    }
+
+    /**
+     * Pause and remove a session from the engine. The timer is paused and handed back to the
+     * android countdown on the thread that owns it, so that can be after this returns.
+     * @param sessionId Id returned by register()
+     * @return The removed timer or null if the id is unknown
+     */
+    public BehaviorCountDownTimer unregister(long sessionId)
+    {
+        Stripe stripe = stripeFor(sessionId);
+        Session session;
+        synchronized(stripe)
+        {
+            session = stripe.mSessions.remove(sessionId);
+        }
+        if(session == null) return null;
+
+        //Handed back on its own thread, a tick in flight finishes with the engine first
+        final BehaviorCountDownTimer removed = session.mTimer;
+        session.mExecutor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                removed.pause();
+                removed.setCountdownFactory(null);
+                removed.setCommandExecutor(null);
+            }
+        });
+        return removed;
+    }
+
+    /**
+     * @param sessionId Id returned by register()
+     * @return The registered timer or null if the id is unknown
+     */
+    public BehaviorCountDownTimer get(long sessionId)
+    {
+        Session session = sessionFor(sessionId);
+        return session == null ? null : session.mTimer;
+    }
+
+    /**
+     * Start/resume a session on the thread that owns it
+     * @param sessionId Id returned by register()
+     * @return False if the id is unknown
+     */
+    public boolean start(long sessionId)
+    {
+        Session session = sessionFor(sessionId);
+        if(session == null) return false;
+
+        session.mExecutor.execute(startAction(session.mTimer));
+        return true;
+    }
+
+    /**
+     * Pause a session on the thread that owns it
+     * @param sessionId Id returned by register()
+     * @return False if the id is unknown
+     */
+    public boolean pause(long sessionId)
+    {
+        Session session = sessionFor(sessionId);
+        if(session == null) return false;
+
+        session.mExecutor.execute(pauseAction(session.mTimer));
+        return true;
+    }
+
+    /**
+     * @return Number of registered sessions
+     */
+    public int size()
+    {
+        int size = 0;
+        for(Stripe stripe : mStripes)
+        {
+            synchronized(stripe)
+            {
+                size += stripe.mSessions.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Stop every shard or session thread, running sessions will no longer tick. Nothing can be
+     * registered afterwards.
+     */
+    public void shutdown()
+    {
+        mShutdown = true;
+
+        if(mShards != null)
+        {
+            for(ScheduledExecutorService shard : mShards)
+            {
+                shard.shutdownNow();
+            }
+            return;
+        }
+
+        for(Stripe stripe : mStripes)
+        {
+            synchronized(stripe)
+            {
+                for(Session session : stripe.mSessions.values())
+                {
+                    ((SessionThread) session.mExecutor).shutdown();
+                }
+            }
+        }
+        synchronized(mDirectSessions)
+        {
+            for(SessionThread sessionThread : mDirectSessions.values())
+            {
+                sessionThread.shutdown();
+            }
+        }
+    }
+
+    public ExecutionModeEnum getExecutionMode() { return mExecutionMode; }
+//endregion
+
+//region COUNTDOWN FACTORY
+    @Override
+    public Countdown create(long millisInFuture, long countDownInterval, BehaviorCountDownTimer bTimer)
+    {
+        if(mExecutionMode == ExecutionModeEnum.SHARDED)
+        {
+            return new ShardCountdown(millisInFuture, countDownInterval, bTimer, shardFor(bTimer));
+        }
+
+        //Registered sessions use their own thread as the factory, this is a timer the engine
+        //was handed directly
+        SessionThread sessionThread;
+        synchronized(mDirectSessions)
+        {
+            sessionThread = mDirectSessions.get(bTimer);
+            if(sessionThread == null)
+            {
+                sessionThread = new SessionThread(mThreadFactory);
+                if(mShutdown)
+                {
+                    sessionThread.shutdown();
+                }
+                mDirectSessions.put(bTimer, sessionThread);
+            }
+        }
+        return sessionThread.create(millisInFuture, countDownInterval, bTimer);
+    }
+//endregion
+
+//region PRIVATE HELPER METHODS
+    private Stripe stripeFor(long sessionId)
+    {
+        return mStripes[(int) (sessionId ^ (sessionId >>> 32)) & mStripeMask];
+    }
+
+    private Session sessionFor(long sessionId)
+    {
+        Stripe stripe = stripeFor(sessionId);
+        synchronized(stripe)
+        {
+            return stripe.mSessions.get(sessionId);
+        }
+    }
+
+    /**
+     * Identity hash keeps a timer on the same shard across pause/resume
+     */
+    private ScheduledExecutorService shardFor(BehaviorCountDownTimer bTimer)
+    {
+        return mShards[(System.identityHashCode(bTimer) & Integer.MAX_VALUE) % mShards.length];
+    }
+
+    private static Runnable startAction(final BehaviorCountDownTimer bTimer)
+    {
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                bTimer.start();
+            }
+        };
+    }
+
+    private static Runnable pauseAction(final BehaviorCountDownTimer bTimer)
+    {
+        return new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                bTimer.pause();
+            }
+        };
+    }
+
+    private static long now()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    private static final class Stripe
+    {
+        final HashMap<Long, Session> mSessions = new HashMap<>();
+    }
+
+    /**
+     * A registered timer and the executor that owns it. Control calls and posted commands both
+     * go through the executor so they run in order with the ticks.
+     */
+    private static final class Session
+    {
+        final BehaviorCountDownTimer mTimer;
+        final Executor mExecutor;
+
+        Session(BehaviorCountDownTimer bTimer, Executor executor)
+        {
+            mTimer = bTimer;
+            mExecutor = executor;
+        }
+    }
+
+    /**
+     * Countdown that ticks as a periodic task on a shard
+     */
+    private static final class ShardCountdown implements Countdown.Restartable, Runnable
+    {
+        private long mMillisInFuture;
+        private final long mCountDownInterval;
+        private final BehaviorCountDownTimer mBTimer;
+        private final ScheduledExecutorService mShard;
+
+        private long mStopTime;
+        private volatile boolean mCancelled = false;
+        private ScheduledFuture<?> mFuture;
+
+        ShardCountdown(long millisInFuture, long countDownInterval,
+                       BehaviorCountDownTimer bTimer, ScheduledExecutorService shard)
+        {
+            mMillisInFuture = millisInFuture;
+            mCountDownInterval = countDownInterval;
+            mBTimer = bTimer;
+            mShard = shard;
+        }
+
+        @Override
+        public void setMillisInFuture(long millisInFuture)
+        {
+            mMillisInFuture = millisInFuture;
+        }
+
+        @Override
+        public void startCountdown()
+        {
+            mCancelled = false;
+            mStopTime = now() + mMillisInFuture;
+            mFuture = mShard.scheduleAtFixedRate(this, 0, mCountDownInterval, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void cancelCountdown()
+        {
+            mCancelled = true;
+            if(mFuture != null)
+            {
+                mFuture.cancel(false);
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            if(mCancelled) return;
+
+            long millisLeft = mStopTime - now();
+            if(millisLeft <= 0)
+            {
+                cancelCountdown();
+                mBTimer.innerFinish();
+                return;
+            }
+            mBTimer.innerTick(millisLeft);
+        }
+    }
+
+    /**
+     * The thread a THREAD_PER_SESSION session owns. Ticks, control calls and posted commands are
+     * all run on it in order so the timer never needs a lock, same as the shards. The thread is
+     * created when work arrives and ends once the session is idle, a paused session holds none.
+     * After shutdown() it takes no more work, like a shard that was shut down.
+     */
+    private static final class SessionThread implements Executor, Countdown.Factory, Runnable
+    {
+        private final ThreadFactory mThreadFactory;
+        private final ConcurrentLinkedQueue<Runnable> mTasks = new ConcurrentLinkedQueue<>();
+
+        /**
+         * Guarded by this, only taken to create the thread or let it end
+         */
+        private Thread mThread;
+
+        /**
+         * Countdown currently ticking on this thread, null while the session is idle
+         */
+        private volatile ThreadCountdown mCountdown;
+
+        private volatile boolean mShutdown = false;
+
+        SessionThread(ThreadFactory threadFactory)
+        {
+            mThreadFactory = threadFactory;
+        }
+
+        @Override
+        public void execute(Runnable task)
+        {
+            if(mShutdown)
+            {
+                throw new RejectedExecutionException("Session thread was shut down.");
+            }
+            mTasks.offer(task);
+            wake();
+        }
+
+        /**
+         * Drop the countdown and every queued task and stop the thread, a callback in flight
+         * finishes first
+         */
+        void shutdown()
+        {
+            mShutdown = true;
+            mCountdown = null;
+            mTasks.clear();
+
+            synchronized(this)
+            {
+                if(mThread != null && mThread != Thread.currentThread())
+                {
+                    mThread.interrupt();
+                }
+            }
+        }
+
+        @Override
+        public Countdown create(long millisInFuture, long countDownInterval, BehaviorCountDownTimer bTimer)
+        {
+            return new ThreadCountdown(millisInFuture, countDownInterval, bTimer, this);
+        }
+
+        /**
+         * Start the thread if the session had none, otherwise cut its wait for the next tick short
+         */
+        private synchronized void wake()
+        {
+            if(mShutdown) return;
+
+            if(mThread == null)
+            {
+                mThread = mThreadFactory.newThread(this);
+                mThread.start();
+            }
+            else if(mThread != Thread.currentThread())
+            {
+                LockSupport.unpark(mThread);
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                while(!mShutdown)
+                {
+                    Runnable task;
+                    while(!mShutdown && (task = mTasks.poll()) != null)
+                    {
+                        task.run();
+                    }
+
+                    ThreadCountdown countdown = mCountdown;
+                    if(mShutdown) return;
+                    if(countdown == null)
+                    {
+                        //A task offered before this check is seen here, one offered after
+                        //finds no thread and starts a new one
+                        synchronized(this)
+                        {
+                            if(mTasks.isEmpty() && mCountdown == null)
+                            {
+                                mThread = null;
+                                return;
+                            }
+                        }
+                        continue;
+                    }
+
+                    long wait = countdown.mNextTick - now();
+                    if(wait > 0)
+                    {
+                        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(wait));
+                        Thread.interrupted();
+                        continue;
+                    }
+                    countdown.tick();
+                }
+            } finally
+            {
+                //Left by a shutdown or a callback throwing (an idle exit already let go of the
+                //thread). After a throw the next execute() starts a fresh thread for the tasks
+                //still queued.
+                synchronized(this)
+                {
+                    if(mThread == Thread.currentThread())
+                    {
+                        mThread = null;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Countdown ticked by its session's thread
+     */
+    private static final class ThreadCountdown implements Countdown.Restartable
+    {
+        private long mMillisInFuture;
+        private final long mCountDownInterval;
+        private final BehaviorCountDownTimer mBTimer;
+        private final SessionThread mSession;
+
+        private long mStopTime;
+        private long mNextTick;
+
+        ThreadCountdown(long millisInFuture, long countDownInterval,
+                        BehaviorCountDownTimer bTimer, SessionThread session)
+        {
+            mMillisInFuture = millisInFuture;
+            mCountDownInterval = countDownInterval;
+            mBTimer = bTimer;
+            mSession = session;
+        }
+
+        @Override
+        public void setMillisInFuture(long millisInFuture)
+        {
+            mMillisInFuture = millisInFuture;
+        }
+
+        @Override
+        public void startCountdown()
+        {
+            mStopTime = now() + mMillisInFuture;
+            mNextTick = now();
+            mSession.mCountdown = this;
+            mSession.wake();
+        }
+
+        @Override
+        public void cancelCountdown()
+        {
+            if(mSession.mCountdown == this)
+            {
+                mSession.mCountdown = null;
+            }
+        }
+
+        void tick()
+        {
+            long millisLeft = mStopTime - now();
+            if(millisLeft <= 0)
+            {
+                cancelCountdown();
+                mBTimer.innerFinish();
+                return;
+            }
+            mNextTick += mCountDownInterval;
+            mBTimer.innerTick(millisLeft);
+        }
+    }
+//endregion
+}
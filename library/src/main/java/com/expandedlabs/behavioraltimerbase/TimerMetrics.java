@@ -0,0 +1,71 @@
+package com.expandedlabs.behavioraltimerbase;
+
+/**
+ * Counters and gauges of a single timer, created by {@link TimerMetricsRegistry#register}.
+ * Only the timer's thread writes them so updates are plain uncontended volatile writes, every
+ * timer is its own stripe and the registry sums them when a snapshot is taken.
+ */
+@SuppressWarnings("WeakerAccess")
+public final class TimerMetrics
+{
+    private volatile long mTicks = 0;
+    private volatile long mBoundaries = 0;
+    private volatile long mInvalidateResets = 0;
+    private volatile long mPauses = 0;
+    private volatile long mWorstLateness = 0;
+    private volatile boolean mRunning = false;
+
+    /**
+     * Slot in the registry, -1 once unregistered
+     */
+    int mRegistryIndex = -1;
+
+    /**
+     * Registry the metrics were created by
+     */
+    TimerMetricsRegistry mRegistry = null;
+
+    TimerMetrics() {}
+
+//region TIMER THREAD
+    void onTick() { mTicks = mTicks + 1; }
+
+    /**
+     * @param lateness Milliseconds the boundary was handled after it was due
+     */
+    void onBoundary(long lateness)
+    {
+        mBoundaries = mBoundaries + 1;
+        if(lateness > mWorstLateness)
+        {
+            mWorstLateness = lateness;
+        }
+    }
+
+    void onInvalidateReset() { mInvalidateResets = mInvalidateResets + 1; }
+
+    void onPause() { mPauses = mPauses + 1; }
+
+    void setRunning(boolean running) { mRunning = running; }
+//endregion
+
+//region GETTERS
+    public long getTicks() { return mTicks; }
+
+    public long getBoundaries() { return mBoundaries; }
+
+    /**
+     * @return Resets done because the definitions were invalidated, not the ones called directly
+     */
+    public long getInvalidateResets() { return mInvalidateResets; }
+
+    public long getPauses() { return mPauses; }
+
+    /**
+     * @return Largest delay in milliseconds between a boundary being due and being handled
+     */
+    public long getWorstLateness() { return mWorstLateness; }
+
+    public boolean getRunningFlag() { return mRunning; }
+//endregion
+}
@@ -0,0 +1,173 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import java.util.ArrayList;
+
+/**
+ * Fleet wide view of every registered timer's {@link TimerMetrics}. Timers only ever write their
+ * own metrics, snapshot() sums them so a telemetry uploader can poll without touching the tick
+ * path. Totals of unregistered timers are kept so counters never go backwards.
+ */
+@SuppressWarnings("WeakerAccess")
+public class TimerMetricsRegistry
+{
+//region MEMBER VARIABLES
+    private final ArrayList<TimerMetrics> mMetrics = new ArrayList<>();
+
+    /**
+     * Totals of timers that have been unregistered
+     */
+    private long mRetiredTicks = 0;
+    private long mRetiredBoundaries = 0;
+    private long mRetiredInvalidateResets = 0;
+    private long mRetiredPauses = 0;
+    private long mRetiredWorstLateness = 0;
+//endregion
+
+//region REGISTRATION
+    /**
+     * Start collecting a timer's metrics, call before the timer starts
+     * @param bTimer Timer to collect, replaces any metrics it already had in this registry
+     * @return The timer's metrics
+     * @throws IllegalStateException if the timer is registered with another registry
+     */
+    public TimerMetrics register(BehaviorCountDownTimer bTimer)
+    {
+        TimerMetrics current = bTimer.getMetrics();
+        if(current != null)
+        {
+            if(current.mRegistry != this)
+            {
+                throw new IllegalStateException("Timer is registered with another registry.");
+            }
+
+            //Retire the old metrics so they don't stay in the sums next to the new ones
+            unregister(bTimer);
+        }
+
+        TimerMetrics metrics = new TimerMetrics();
+        metrics.mRegistry = this;
+        synchronized(this)
+        {
+            metrics.mRegistryIndex = mMetrics.size();
+            mMetrics.add(metrics);
+        }
+
+        bTimer.setMetrics(metrics);
+        return metrics;
+    }
+
+    /**
+     * Stop collecting a timer's metrics, its totals stay in the registry
+     * @param bTimer Timer registered with this registry
+     */
+    public void unregister(BehaviorCountDownTimer bTimer)
+    {
+        TimerMetrics metrics = bTimer.getMetrics();
+        if(metrics == null || metrics.mRegistry != this) return;
+
+        bTimer.setMetrics(null);
+        synchronized(this)
+        {
+            int index = metrics.mRegistryIndex;
+            if(index < 0 || index >= mMetrics.size() || mMetrics.get(index) != metrics) return;
+
+            //Swap the last one into the hole so removal stays O(1)
+            TimerMetrics last = mMetrics.remove(mMetrics.size() - 1);
+            if(last != metrics)
+            {
+                mMetrics.set(index, last);
+                last.mRegistryIndex = index;
+            }
+            metrics.mRegistryIndex = -1;
+
+            mRetiredTicks += metrics.getTicks();
+            mRetiredBoundaries += metrics.getBoundaries();
+            mRetiredInvalidateResets += metrics.getInvalidateResets();
+            mRetiredPauses += metrics.getPauses();
+            mRetiredWorstLateness = Math.max(mRetiredWorstLateness, metrics.getWorstLateness());
+        }
+    }
+//endregion
+
+//region SNAPSHOT
+    /**
+     * Sum every timer's metrics, counters are read one timer at a time so a snapshot taken while
+     * timers run is not an atomic cut across them
+     */
+    public synchronized Snapshot snapshot()
+    {
+        Snapshot snapshot = new Snapshot();
+        snapshot.mTimeNanos = System.nanoTime();
+        snapshot.mRegisteredTimers = mMetrics.size();
+        snapshot.mTicks = mRetiredTicks;
+        snapshot.mBoundaries = mRetiredBoundaries;
+        snapshot.mInvalidateResets = mRetiredInvalidateResets;
+        snapshot.mPauses = mRetiredPauses;
+        snapshot.mWorstLateness = mRetiredWorstLateness;
+
+        for(int i = 0; i < mMetrics.size(); ++i)
+        {
+            TimerMetrics metrics = mMetrics.get(i);
+            if(metrics.getRunningFlag()) ++snapshot.mActiveTimers;
+            snapshot.mTicks += metrics.getTicks();
+            snapshot.mBoundaries += metrics.getBoundaries();
+            snapshot.mInvalidateResets += metrics.getInvalidateResets();
+            snapshot.mPauses += metrics.getPauses();
+            snapshot.mWorstLateness = Math.max(snapshot.mWorstLateness, metrics.getWorstLateness());
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Values of the whole registry at one point in time
+     */
+    public static final class Snapshot
+    {
+        private long mTimeNanos;
+        private int mRegisteredTimers;
+        private int mActiveTimers;
+        private long mTicks;
+        private long mBoundaries;
+        private long mInvalidateResets;
+        private long mPauses;
+        private long mWorstLateness;
+
+        private Snapshot() {}
+
+        /**
+         * @return System.nanoTime() the snapshot was taken at
+         */
+        public long getTimeNanos() { return mTimeNanos; }
+
+        public int getRegisteredTimers() { return mRegisteredTimers; }
+
+        /**
+         * @return Registered timers that are running
+         */
+        public int getActiveTimers() { return mActiveTimers; }
+
+        public long getTicks() { return mTicks; }
+
+        public long getBoundaries() { return mBoundaries; }
+
+        public long getInvalidateResets() { return mInvalidateResets; }
+
+        public long getPauses() { return mPauses; }
+
+        public long getWorstLateness() { return mWorstLateness; }
+
+        /**
+         * @param previous Earlier snapshot of the same registry
+         * @return Ticks per second between the two snapshots
+         */
+        public double getTicksPerSecondSince(Snapshot previous)
+        {
+            long elapsedNanos = mTimeNanos - previous.mTimeNanos;
+            if(elapsedNanos <= 0) return 0;
+
+            return (mTicks - previous.mTicks) * 1e9 / elapsedNanos;
+        }
+    }
+//endregion
+}
@@ -0,0 +1,128 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import com.expandedlabs.behavioraltimerbase.exceptions.IntervalTimerException;
+import com.expandedlabs.behavioraltimerbase.exceptions.IterationException;
+import com.expandedlabs.behavioraltimerbase.exceptions.LimitedHoldException;
+import com.expandedlabs.behavioraltimerbase.exceptions.MinMaxException;
+import com.expandedlabs.behavioraltimerbase.exceptions.TotalTimerException;
+
+/**
+ * Bounded pool of timers for sessions that are created and thrown away constantly e.g. one per
+ * trial. Released timers are kept up to the capacity and handed out again through
+ * {@link BehaviorCountDownTimer#reinitialize}, so once the pool is warm a new trial allocates
+ * no timer.
+ */
+@SuppressWarnings("WeakerAccess")
+public class TimerPool<T extends BehaviorCountDownTimer>
+{
+    /**
+     * Creates a timer when the pool is empty, takes the same values as the timer constructor
+     */
+    public interface Factory<T extends BehaviorCountDownTimer>
+    {
+        T create(long timerValue,
+                 long intervalValue,
+                 boolean randomFlag,
+                 BehaviorCountDownTimer.RandomStyleEnum style,
+                 long minRandom, long maxRandom,
+                 int numberOfIterations,
+                 boolean limitedHoldFlag, long limitedHold)
+                throws IntervalTimerException,
+                IterationException,
+                LimitedHoldException,
+                MinMaxException,
+                TotalTimerException;
+    }
+
+    private final Factory<T> mFactory;
+    private final Object[] mTimers;
+    private int mSize = 0;
+
+    /**
+     * @param capacity Most timers kept for reuse
+     * @param factory Creates timers when none are free
+     */
+    public TimerPool(int capacity, Factory<T> factory)
+    {
+        if(capacity <= 0)
+        {
+            throw new IllegalArgumentException("Capacity must be positive.");
+        }
+
+        mTimers = new Object[capacity];
+        mFactory = factory;
+    }
+
+    /**
+     * Get a reset timer for the given values, reused if one is free
+     */
+    public T acquire(long timerValue,
+                     long intervalValue,
+                     boolean randomFlag,
+                     BehaviorCountDownTimer.RandomStyleEnum style,
+                     long minRandom, long maxRandom,
+                     int numberOfIterations,
+                     boolean limitedHoldFlag, long limitedHold)
+            throws IntervalTimerException,
+            IterationException,
+            LimitedHoldException,
+            MinMaxException,
+            TotalTimerException
+    {
+        T timer = poll();
+        if(timer == null)
+        {
+            return mFactory.create(timerValue, intervalValue, randomFlag, style,
+                    minRandom, maxRandom, numberOfIterations, limitedHoldFlag, limitedHold);
+        }
+
+        try
+        {
+            timer.reinitialize(timerValue, intervalValue, randomFlag, style,
+                    minRandom, maxRandom, numberOfIterations, limitedHoldFlag, limitedHold);
+        }
+        catch (IntervalTimerException | IterationException | LimitedHoldException
+                | MinMaxException | TotalTimerException e)
+        {
+            //Invalid values are rejected before the timer is touched, it goes back as it was
+            release(timer);
+            throw e;
+        }
+        return timer;
+    }
+
+    /**
+     * Hand a timer back, it is paused and must not be used by the caller anymore. A nested timer
+     * is taken out of its parent and its children are paused and taken out of it, none of them
+     * stay linked to a pooled timer.
+     * @return False if the pool was full and the timer was left for the garbage collector
+     */
+    public boolean release(T timer)
+    {
+        timer.pause();
+        timer.detachFromTree();
+
+        synchronized(this)
+        {
+            if(mSize == mTimers.length) return false;
+
+            mTimers[mSize++] = timer;
+            return true;
+        }
+    }
+
+    /**
+     * @return Timers waiting to be reused
+     */
+    public synchronized int getFreeCount() { return mSize; }
+
+    @SuppressWarnings("unchecked")
+    private synchronized T poll()
+    {
+        if(mSize == 0) return null;
+
+        T timer = (T) mTimers[--mSize];
+        mTimers[mSize] = null;
+        return timer;
+    }
+}
@@ -0,0 +1,123 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import java.util.Random;
+
+/**
+ * Ordered set of phases a single timer runs back to back e.g. a fixed interval baseline, then a
+ * random interval with a limited hold, then a probe. The timer keeps ticking across phase changes
+ * and the iteration count carries on from one phase to the next.
+ *
+ * A protocol holds the planned schedule of its phases, so it should only be set on one timer at
+ * a time.
+ */
+@SuppressWarnings("WeakerAccess")
+public class TimerProtocol
+{
+    private final ProtocolPhase[] mPhases;
+
+    /**
+     * Where each phase starts, in milliseconds from the start of the protocol
+     */
+    private final long[] mPhaseOffsets;
+    private final long mTimerValue;
+
+    /**
+     * Iterations planned before each phase, filled in by plan()
+     */
+    private final int[] mIterationsBefore;
+
+    public TimerProtocol(ProtocolPhase... phases)
+    {
+        if(phases == null || phases.length == 0)
+        {
+            throw new IllegalArgumentException("A protocol needs at least one phase.");
+        }
+
+        mPhases = phases.clone();
+        mPhaseOffsets = new long[mPhases.length];
+        mIterationsBefore = new int[mPhases.length];
+
+        long offset = 0;
+        for(int i = 0; i < mPhases.length; ++i)
+        {
+            mPhaseOffsets[i] = offset;
+            offset += mPhases[i].getTimerValue();
+        }
+        mTimerValue = offset;
+    }
+
+    /**
+     * @return Total duration of every phase in milliseconds
+     */
+    public long getTimerValue() { return mTimerValue; }
+
+    public int getPhaseCount() { return mPhases.length; }
+
+    public ProtocolPhase getPhase(int index) { return mPhases[index]; }
+
+    /**
+     * @param index Phase index
+     * @return Milliseconds from the start of the protocol to the start of the phase
+     */
+    public long getPhaseOffset(int index) { return mPhaseOffsets[index]; }
+
+    /**
+     * @param index Phase index
+     * @return Iterations planned in the phases before it
+     */
+    public int getIterationsBefore(int index) { return mIterationsBefore[index]; }
+
+    /**
+     * Binary search of the phase offsets
+     * @param elapsed Milliseconds from the start of the protocol
+     * @return Index of the phase running at that time
+     */
+    public int findPhase(long elapsed)
+    {
+        int low = 0;
+        int high = mPhases.length - 1;
+        while(low < high)
+        {
+            int middle = (low + high + 1) >>> 1;
+            if(mPhaseOffsets[middle] <= elapsed)
+            {
+                low = middle;
+            }
+            else
+            {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns INTERVAL_ADJUSTMENT if any phase had to be fitted
+     * @return The type of adjustment done to the phases
+     */
+    public BehaviorCountDownTimer.IllFitEnum getTimerFitting()
+    {
+        for(ProtocolPhase phase : mPhases)
+        {
+            if(phase.getTimerFitting() != BehaviorCountDownTimer.IllFitEnum.NO_ADJUSTMENT)
+            {
+                return phase.getTimerFitting();
+            }
+        }
+        return BehaviorCountDownTimer.IllFitEnum.NO_ADJUSTMENT;
+    }
+
+    /**
+     * Plan the schedule of every phase, done once per reset of the owning timer
+     */
+    void plan(Random randomGen)
+    {
+        int iterations = 0;
+        for(int i = 0; i < mPhases.length; ++i)
+        {
+            mPhases[i].plan(randomGen);
+            mIterationsBefore[i] = iterations;
+            iterations += mPhases[i].getIterationCount();
+        }
+    }
+}
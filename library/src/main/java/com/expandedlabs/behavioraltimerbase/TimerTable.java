@@ -0,0 +1,319 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import java.util.Arrays;
+
+/**
+ * Batch simulation of a very large number of timers. Instead of one BehaviorCountDownTimer
+ * object per session, the timer state lives in parallel primitive arrays indexed by timer id and
+ * every timer is moved forward together by {@link #advance(long)}. A timer costs roughly 33 bytes,
+ * so a million simulated sessions fit in a few tens of megabytes.
+ *
+ * Timers follow the same rules as a {@link ProtocolPhase} schedule: a regular (fixed or random)
+ * interval, then a limited hold if one is defined, with boundaries landing exactly on the
+ * planned time. Configurations are shared, each timer only stores the index of its own.
+ */
+@SuppressWarnings("WeakerAccess")
+public class TimerTable
+{
+//region MEMBER VARIABLES
+    public static final byte FLAG_RUNNING = 1;
+    public static final byte FLAG_LIMITED_HOLD = 1 << 1;
+    public static final byte FLAG_FINISHED = 1 << 2;
+
+    /**
+     * Receives boundary events while the table advances, called on the advancing thread
+     */
+    public interface Listener
+    {
+        void onIntervalReached(int timerId, int iteration, boolean limitedHold);
+        void onFinish(int timerId, int iteration);
+    }
+
+    private ProtocolPhase[] mConfigurations = new ProtocolPhase[4];
+    private int mConfigurationCount = 0;
+
+    /**
+     * Timer state, index is the timer id. Remaining and next boundary count down like the
+     * timer's current value, a boundary is due once remaining reaches the next boundary.
+     */
+    private final long[] mRemaining;
+    private final long[] mNextBoundary;
+    private final int[] mIteration;
+    private final byte[] mFlags;
+    private final long[] mRandomState;
+    private final int[] mConfiguration;
+    private int mSize = 0;
+
+    private Listener mListener;
+//endregion
+
+//region CONSTRUCTOR
+    /**
+     * @param capacity Most timers the table will hold, every array is allocated up front
+     */
+    public TimerTable(int capacity)
+    {
+        mRemaining = new long[capacity];
+        mNextBoundary = new long[capacity];
+        mIteration = new int[capacity];
+        mFlags = new byte[capacity];
+        mRandomState = new long[capacity];
+        mConfiguration = new int[capacity];
+    }
+//endregion
+
+//region TIMERS
+    /**
+     * Add a configuration timers can share
+     * @param configuration Timer values, only the definitions are used
+     * @return Configuration id for addTimer()
+     */
+    public int addConfiguration(ProtocolPhase configuration)
+    {
+        if(mConfigurationCount == mConfigurations.length)
+        {
+            mConfigurations = Arrays.copyOf(mConfigurations, mConfigurationCount * 2);
+        }
+        mConfigurations[mConfigurationCount] = configuration;
+        return mConfigurationCount++;
+    }
+
+    /**
+     * Add a timer in its reset state
+     * @param configurationId Id returned by addConfiguration()
+     * @param seed Seed for the timer's random intervals
+     * @return Timer id
+     */
+    public int addTimer(int configurationId, long seed)
+    {
+        if(mSize == mRemaining.length)
+        {
+            throw new IllegalStateException("Timer table is full.");
+        }
+        if(configurationId < 0 || configurationId >= mConfigurationCount)
+        {
+            throw new IllegalArgumentException("Unknown configuration " + configurationId + ".");
+        }
+
+        int timerId = mSize++;
+        mConfiguration[timerId] = configurationId;
+        //xorshift state can't be zero
+        mRandomState[timerId] = seed == 0 ? 0x9E3779B97F4A7C15L : seed;
+        reset(timerId);
+        return timerId;
+    }
+
+    /**
+     * Put a timer back to the start of its configuration, stopped
+     */
+    public void reset(int timerId)
+    {
+        ProtocolPhase configuration = mConfigurations[mConfiguration[timerId]];
+
+        mRemaining[timerId] = configuration.getTimerValue();
+        mIteration[timerId] = 0;
+        mFlags[timerId] = 0;
+        mNextBoundary[timerId] = mRemaining[timerId]
+                - nextRegularInterval(timerId, configuration, mRemaining[timerId]);
+    }
+
+    public void start(int timerId)
+    {
+        if((mFlags[timerId] & FLAG_FINISHED) != 0)
+        {
+            reset(timerId);
+        }
+        mFlags[timerId] |= FLAG_RUNNING;
+    }
+
+    public void pause(int timerId)
+    {
+        mFlags[timerId] &= ~FLAG_RUNNING;
+    }
+
+    public void startAll()
+    {
+        for(int i = 0; i < mSize; ++i)
+        {
+            start(i);
+        }
+    }
+
+    /**
+     * Move every running timer forward
+     * @param millis Milliseconds to move forward, any number of boundaries can be crossed
+     * @return Number of boundaries (finishes included) crossed by all timers
+     */
+    public int advance(long millis)
+    {
+        final long[] remaining = mRemaining;
+        final long[] nextBoundary = mNextBoundary;
+        final byte[] flags = mFlags;
+        final int size = mSize;
+
+        //Branch free pass over every timer, stopped timers move by zero
+        for(int i = 0; i < size; ++i)
+        {
+            remaining[i] -= millis * (flags[i] & FLAG_RUNNING);
+        }
+
+        //Only timers that reached a boundary leave the fast path
+        int boundaries = 0;
+        for(int i = 0; i < size; ++i)
+        {
+            if((flags[i] & FLAG_RUNNING) != 0
+                    && (remaining[i] <= nextBoundary[i] || remaining[i] <= 0))
+            {
+                boundaries += crossBoundaries(i);
+            }
+        }
+        return boundaries;
+    }
+
+    public void setListener(Listener listener) { mListener = listener; }
+//endregion
+
+//region GETTERS
+    public int size() { return mSize; }
+    public int capacity() { return mRemaining.length; }
+
+    /**
+     * @return Milliseconds left on the timer
+     */
+    public long getRemaining(int timerId) { return mRemaining[timerId]; }
+
+    /**
+     * @return Milliseconds left in the current interval
+     */
+    public long getIntervalRemaining(int timerId)
+    {
+        return Math.max(0, mRemaining[timerId] - Math.max(0, mNextBoundary[timerId]));
+    }
+
+    public int getIteration(int timerId) { return mIteration[timerId]; }
+
+    /**
+     * @return FLAG_RUNNING, FLAG_LIMITED_HOLD and FLAG_FINISHED bits of the timer
+     */
+    public byte getFlags(int timerId) { return mFlags[timerId]; }
+
+    public boolean getLimitedHoldFlag(int timerId)
+    {
+        return (mFlags[timerId] & FLAG_LIMITED_HOLD) != 0;
+    }
+
+    public boolean getFinishedFlag(int timerId)
+    {
+        return (mFlags[timerId] & FLAG_FINISHED) != 0;
+    }
+//endregion
+
+//region PRIVATE HELPER METHODS
+    /**
+     * Slow path for a timer that reached one or more boundaries
+     * @return Boundaries crossed
+     */
+    private int crossBoundaries(int timerId)
+    {
+        ProtocolPhase configuration = mConfigurations[mConfiguration[timerId]];
+        int boundaries = 0;
+
+        while(mNextBoundary[timerId] > 0 && mRemaining[timerId] <= mNextBoundary[timerId])
+        {
+            boolean limitedHold = (mFlags[timerId] & FLAG_LIMITED_HOLD) != 0;
+            if(!limitedHold)
+            {
+                ++mIteration[timerId];
+            }
+
+            long boundary = mNextBoundary[timerId];
+            if(configuration.getLimitedHoldFlag() && !limitedHold)
+            {
+                mFlags[timerId] |= FLAG_LIMITED_HOLD;
+                mNextBoundary[timerId] = boundary - configuration.getLimitedHoldValue();
+            }
+            else
+            {
+                mFlags[timerId] &= ~FLAG_LIMITED_HOLD;
+                mNextBoundary[timerId] = boundary
+                        - nextRegularInterval(timerId, configuration, boundary);
+            }
+
+            ++boundaries;
+            if(mListener != null)
+            {
+                mListener.onIntervalReached(timerId, mIteration[timerId],
+                        (mFlags[timerId] & FLAG_LIMITED_HOLD) != 0);
+            }
+        }
+
+        if(mRemaining[timerId] <= 0)
+        {
+            // Final increment iteration when we aren't doing a limited hold
+            if((mFlags[timerId] & FLAG_LIMITED_HOLD) == 0)
+            {
+                ++mIteration[timerId];
+            }
+
+            mRemaining[timerId] = 0;
+            mFlags[timerId] = FLAG_FINISHED;
+
+            ++boundaries;
+            if(mListener != null)
+            {
+                mListener.onFinish(timerId, mIteration[timerId]);
+            }
+        }
+        return boundaries;
+    }
+
+    /**
+     * Length of the next regular interval, drawn the same way ProtocolPhase plans them
+     * @param timeLeft Milliseconds left on the timer when the interval starts
+     */
+    private long nextRegularInterval(int timerId, ProtocolPhase configuration, long timeLeft)
+    {
+        if(!configuration.getRandomFlag())
+        {
+            return configuration.getIntervalValue();
+        }
+
+        long interval;
+        switch(configuration.getStyle())
+        {
+            case ITERATION:
+                interval = BehaviorCountDownTimer.iterationInterval(nextDouble(timerId),
+                        configuration.getRandIterationValue(), mIteration[timerId], timeLeft);
+                break;
+            case DEVIATION:
+                double random = nextDouble(timerId);
+                interval = BehaviorCountDownTimer.deviationInterval(random,
+                        nextDouble(timerId) < 0.5, configuration.getIntervalValue(),
+                        configuration.getMinRandomValue(), configuration.getMaxRandomValue(),
+                        timeLeft);
+                break;
+            case REGULAR:
+            default:
+                interval = BehaviorCountDownTimer.regularRandomInterval(nextDouble(timerId),
+                        configuration.getMinRandomValue(), configuration.getMaxRandomValue(),
+                        timeLeft);
+        }
+
+        //Keep every interval at least a second so the timer always moves forward
+        return Math.max(interval, 1000);
+    }
+
+    /**
+     * xorshift64* draw from the timer's own random state
+     */
+    private double nextDouble(int timerId)
+    {
+        long x = mRandomState[timerId];
+        x ^= x >>> 12;
+        x ^= x << 25;
+        x ^= x >>> 27;
+        mRandomState[timerId] = x;
+        return ((x * 0x2545F4914F6CDD1DL) >>> 11) * 0x1.0p-53;
+    }
+//endregion
+}
@@ -0,0 +1,27 @@
+package com.expandedlabs.behavioraltimerbase;
+
+/**
+ * Receives every timer transition as it happens, set one with
+ * {@link BehaviorCountDownTimer#setTracer(TimerTracer)}. Called on the timer's thread right
+ * before the matching callback so the timer's getters describe the transition. Without a tracer
+ * set the timer only pays a null check.
+ */
+@SuppressWarnings("WeakerAccess")
+public interface TimerTracer
+{
+    int TRACE_TICK = 0;
+    int TRACE_START = 1;
+    int TRACE_PAUSE = 2;
+    int TRACE_RESET = 3;
+    int TRACE_INTERVAL = 4;
+    int TRACE_HOLD_START = 5;
+    int TRACE_HOLD_END = 6;
+    int TRACE_FINISH = 7;
+
+    /**
+     * @param type One of the TRACE_ constants, a hold ending is followed by the TRACE_INTERVAL
+     *             of the interval that starts with it
+     * @param bTimer Timer the transition happened on
+     */
+    void trace(int type, BehaviorCountDownTimer bTimer);
+}
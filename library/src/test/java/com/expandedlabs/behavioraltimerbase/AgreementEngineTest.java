@@ -0,0 +1,104 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AgreementEngineTest
+{
+    @Test
+    public void pair_isScored() throws Exception
+    {
+        //Six 5 second intervals, the second observer started 80ms late
+        ObserverRecord first = new ObserverRecord(
+                new long[] {5000, 10000, 15000, 20000, 25000, 30000},
+                new long[] {1000, 4990, 12000, 12500, 21000});
+        ObserverRecord second = new ObserverRecord(
+                new long[] {5080, 10080, 15080, 20080, 25080, 30080},
+                new long[] {5010, 12100, 24000, 26000});
+
+        AgreementEngine.Scores scores = new AgreementEngine.Scores(1);
+        AgreementEngine.scorePair(first, second, 250, scores, 0);
+
+        //Counts per interval, first: 2 0 2 0 1 0, second: 1 0 1 0 1 1
+        assertEquals(6, scores.getPairedIntervals(0));
+        assertEquals(0, scores.getUnpairedIntervals(0));
+        assertEquals(5 * 100.0 / 6, scores.getIntervalAgreement(0), 1e-9);
+        assertEquals(3 * 100.0 / 4, scores.getOccurrenceAgreement(0), 1e-9);
+        assertEquals(2 * 100.0 / 3, scores.getNonOccurrenceAgreement(0), 1e-9);
+        assertEquals(3 * 100.0 / 6, scores.getExactCountAgreement(0), 1e-9);
+    }
+
+    @Test
+    public void skewedBoundaries_areAligned() throws Exception
+    {
+        //The second observer is missing the 10 second boundary and ran 5 seconds longer
+        ObserverRecord first = new ObserverRecord(new long[] {5000, 10000, 15000},
+                new long[] {11000});
+        ObserverRecord second = new ObserverRecord(new long[] {4900, 15100, 20000},
+                new long[] {11000});
+
+        AgreementEngine.Scores scores = new AgreementEngine.Scores(1);
+        AgreementEngine.scorePair(first, second, 250, scores, 0);
+
+        assertEquals(2, scores.getPairedIntervals(0));
+        assertEquals(2, scores.getUnpairedIntervals(0));
+        assertEquals(100, scores.getIntervalAgreement(0), 1e-9);
+        assertEquals(100, scores.getOccurrenceAgreement(0), 1e-9);
+
+        //Nothing scored by either, occurrence agreement is undefined
+        AgreementEngine.scorePair(new ObserverRecord(new long[] {5000}, new long[0]),
+                new ObserverRecord(new long[] {5000}, new long[0]), 0, scores, 0);
+        assertTrue(Double.isNaN(scores.getOccurrenceAgreement(0)));
+        assertEquals(100, scores.getNonOccurrenceAgreement(0), 1e-9);
+    }
+
+    @Test
+    public void parallelScores_matchSequential() throws Exception
+    {
+        Random random = new Random(7);
+        int pairs = 500;
+        ObserverRecord[] first = new ObserverRecord[pairs];
+        ObserverRecord[] second = new ObserverRecord[pairs];
+        for(int pair = 0; pair < pairs; ++pair)
+        {
+            ObserverRecord.Builder a = new ObserverRecord.Builder();
+            ObserverRecord.Builder b = new ObserverRecord.Builder();
+            for(int interval = 1; interval <= 60; ++interval)
+            {
+                long end = interval * 10000L;
+                a.addBoundary(end + random.nextInt(100));
+                b.addBoundary(end + random.nextInt(100));
+                if(random.nextInt(3) == 0) a.addResponse(end - 5000);
+                if(random.nextInt(3) == 0) b.addResponse(end - 5000);
+            }
+            first[pair] = a.build();
+            second[pair] = b.build();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        AgreementEngine.Scores scores;
+        try
+        {
+            scores = new AgreementEngine(executor, 16, 500).score(first, second);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        AgreementEngine.Scores sequential = new AgreementEngine.Scores(pairs);
+        for(int pair = 0; pair < pairs; ++pair)
+        {
+            AgreementEngine.scorePair(first[pair], second[pair], 500, sequential, pair);
+            assertEquals(60, scores.getPairedIntervals(pair));
+            assertEquals(sequential.getIntervalAgreement(pair), scores.getIntervalAgreement(pair), 0);
+            assertEquals(sequential.getExactCountAgreement(pair), scores.getExactCountAgreement(pair), 0);
+        }
+    }
+}
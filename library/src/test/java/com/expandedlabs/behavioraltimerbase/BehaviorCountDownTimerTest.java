@@ -0,0 +1,1431 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import com.expandedlabs.behavioraltimerbase.exceptions.TotalTimerException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+import static com.expandedlabs.behavioraltimerbase.BehaviorCountDownTimer.RandomStyleEnum;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * The ApplicationTest scenarios on a VirtualClock, runs on the JVM without a device and without
+ * waiting for the timers in real time. Random timers are seeded so every run draws the same
+ * intervals.
+ */
+public class BehaviorCountDownTimerTest
+{
+    private static final long RANDOM_SEED = 42;
+
+    private VirtualClock mClock;
+    private BehaviorCountDownTimer mTimer;
+
+    @Before
+    public void TestSetUp()
+    {
+        mClock = new VirtualClock();
+    }
+
+    private void createDefaultTimer() throws Exception
+    {
+        createTimer(15 * 1000, 5 * 1000, false, RandomStyleEnum.REGULAR,
+                2 * 1000, 4 * 1000, 3, false, 5 * 1000, null);
+    }
+
+    private void createTimer(long timerValue, long intervalValue,
+                             boolean randomFlag, RandomStyleEnum style,
+                             long minRandom, long maxRandom, int numberOfIterations,
+                             boolean limitedHoldFlag, long limitedHold,
+                             final Runnable intervalCheck) throws Exception
+    {
+        mTimer = new BehaviorCountDownTimer(timerValue, intervalValue,
+                randomFlag, style, minRandom, maxRandom, numberOfIterations,
+                limitedHoldFlag, limitedHold)
+        {
+            @Override
+            public void onTick() {}
+
+            @Override
+            public void onFinish() {}
+
+            @Override
+            public void onIntervalReached()
+            {
+                if(intervalCheck != null)
+                {
+                    intervalCheck.run();
+                }
+            }
+        };
+        mTimer.setCountdownFactory(mClock);
+        mTimer.setRandomSeed(RANDOM_SEED);
+    }
+
+    private void runTimer()
+    {
+        mTimer.reset();
+        mTimer.start();
+        mClock.runUntilIdle();
+    }
+
+    /**
+     * Random interval within min/max unless it was cut short by the end of the timer
+     */
+    private void assertRegularRandom(long minRandom, long maxRandom)
+    {
+        long interval = mTimer.getNextIntervalValue();
+        assertTrue("Interval " + interval + " over max", interval <= maxRandom);
+        if(minRandom <= mTimer.getCurrentTimerValue())
+        {
+            assertTrue("Interval " + interval + " under min", interval >= minRandom);
+        }
+    }
+
+    /**
+     * Random interval is min/max away from the defined interval, on either side
+     */
+    private void assertDeviationRandom(long intervalValue, long minRandom, long maxRandom)
+    {
+        long deviation = Math.abs(mTimer.getNextIntervalValue() - intervalValue);
+        assertTrue("Deviation " + deviation + " over max", deviation <= maxRandom);
+        if(minRandom + intervalValue <= mTimer.getCurrentTimerValue())
+        {
+            assertTrue("Deviation " + deviation + " under min", deviation >= minRandom);
+        }
+    }
+
+    @Test
+    public void timer_isCorrect() throws Exception
+    {
+        createDefaultTimer();
+        mTimer.setTimerValue(5 * 1000);
+        mTimer.setIntervalValue(1000);
+        mTimer.setTimerRandom(false, RandomStyleEnum.REGULAR, 5 * 1000, 10 * 1000, 3);
+        mTimer.setLimitedHold(false, 10 * 1000);
+
+        runTimer();
+
+        assertEquals(0, mTimer.getCurrentTimerValue());
+        assertEquals(0, mTimer.getCurrentIntervalValue());
+        assertEquals(5, mTimer.getCurrentIterationValue());
+        assertEquals(5 * 1000, mClock.now());
+    }
+
+    @Test
+    public void limitedHold_isCorrect() throws Exception
+    {
+        createDefaultTimer();
+        mTimer.setTimerValue(30 * 1000);
+        mTimer.setIntervalValue(5 * 1000);
+        mTimer.setTimerRandom(false, RandomStyleEnum.REGULAR, 5 * 1000, 10 * 1000, 3);
+        mTimer.setLimitedHold(true, 10 * 1000);
+
+        runTimer();
+
+        assertEquals(2, mTimer.getCurrentIterationValue());
+    }
+
+    @Test
+    public void intervalImperfectFit_isCorrect() throws Exception
+    {
+        createDefaultTimer();
+        mTimer.setTimerValue(7 * 1000);
+        mTimer.setIntervalValue(3 * 1000);
+        mTimer.setTimerRandom(false, RandomStyleEnum.REGULAR, 5 * 1000, 10 * 1000, 3);
+        mTimer.setLimitedHold(true, 2 * 1000);
+
+        mTimer.reset();
+
+        assertEquals(10 * 1000, mTimer.getDefinedTimerValue());
+        assertEquals(BehaviorCountDownTimer.IllFitEnum.INTERVAL_ADJUSTMENT, mTimer.getTimerFitting());
+
+        runTimer();
+
+        assertEquals(2, mTimer.getCurrentIterationValue());
+    }
+
+    @Test
+    public void randomRegular_isCorrect() throws Exception
+    {
+        final long minRandom = 2 * 1000;
+        final long maxRandom = 5 * 1000;
+        createTimer(10 * 1000, 1000, true, RandomStyleEnum.REGULAR,
+                minRandom, maxRandom, 3, false, 5 * 1000, new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        assertRegularRandom(minRandom, maxRandom);
+                    }
+                });
+
+        runTimer();
+
+        assertEquals(10 * 1000, mClock.now());
+    }
+
+    @Test
+    public void randomRegLimited_isCorrect() throws Exception
+    {
+        final long minRandom = 2 * 1000;
+        final long maxRandom = 5 * 1000;
+        createTimer(10 * 1000, 1000, true, RandomStyleEnum.REGULAR,
+                minRandom, maxRandom, 3, true, 5 * 1000, new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        if(!mTimer.getCurrentLimitedHoldFlag())
+                        {
+                            assertRegularRandom(minRandom, maxRandom);
+                        }
+                    }
+                });
+
+        runTimer();
+    }
+
+    @Test
+    public void randomDeviation_isCorrect() throws Exception
+    {
+        final long intervalValue = 5 * 1000;
+        final long minRandom = 2 * 1000;
+        final long maxRandom = 4 * 1000;
+        createTimer(20 * 1000, intervalValue, true, RandomStyleEnum.DEVIATION,
+                minRandom, maxRandom, 3, false, 5 * 1000, new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        assertDeviationRandom(intervalValue, minRandom, maxRandom);
+                    }
+                });
+
+        runTimer();
+    }
+
+    @Test
+    public void randomDevLimited_isCorrect() throws Exception
+    {
+        final long intervalValue = 5 * 1000;
+        final long minRandom = 2 * 1000;
+        final long maxRandom = 4 * 1000;
+        createTimer(20 * 1000, intervalValue, true, RandomStyleEnum.DEVIATION,
+                minRandom, maxRandom, 3, true, 5 * 1000, new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        if(!mTimer.getCurrentLimitedHoldFlag())
+                        {
+                            assertDeviationRandom(intervalValue, minRandom, maxRandom);
+                        }
+                    }
+                });
+
+        runTimer();
+    }
+
+    @Test
+    public void randomIteration_isCorrect() throws Exception
+    {
+        createDefaultTimer();
+        mTimer.setTimerValue(20 * 1000);
+        mTimer.setTimerRandom(true, RandomStyleEnum.ITERATION, 1000, 1000, 2);
+
+        runTimer();
+
+        assertEquals(0, mTimer.getCurrentTimerValue());
+        assertEquals(0, mTimer.getCurrentIntervalValue());
+        assertEquals(2, mTimer.getCurrentIterationValue());
+    }
+
+    @Test
+    public void randomIterLimited_isCorrect() throws Exception
+    {
+        createDefaultTimer();
+        mTimer.setTimerValue(20 * 1000);
+        mTimer.setTimerRandom(true, RandomStyleEnum.ITERATION, 1000, 1000, 5);
+        mTimer.setLimitedHold(true, 2 * 1000);
+
+        runTimer();
+
+        //Iteration intervals don't account for the holds, some draws run out of time before
+        //the last iteration which is why this scenario depends on the seed
+        assertEquals(0, mTimer.getCurrentTimerValue());
+        assertEquals(0, mTimer.getCurrentIntervalValue());
+        assertEquals(5, mTimer.getCurrentIterationValue());
+    }
+
+    @Test
+    public void pauseResume_isCorrect() throws Exception
+    {
+        createDefaultTimer();
+        mTimer.setTimerValue(10 * 1000);
+        mTimer.setIntervalValue(1000);
+        mTimer.reset();
+
+        mTimer.start();
+        mClock.advance(3500);
+        mTimer.pause();
+        mClock.advance(60 * 1000);
+
+        assertEquals(3, mTimer.getCurrentIterationValue());
+
+        mTimer.start();
+        mClock.runUntilIdle();
+
+        assertEquals(10, mTimer.getCurrentIterationValue());
+        assertEquals(70 * 1000, mClock.now());
+    }
+
+    @Test
+    public void statistics_areCorrect() throws Exception
+    {
+        createDefaultTimer();
+        mTimer.setTimerValue(30 * 1000);
+        mTimer.setIntervalValue(5 * 1000);
+        mTimer.setLimitedHold(true, 10 * 1000);
+
+        runTimer();
+
+        StreamingStatistics planned = mTimer.getPlannedIntervalStats();
+        StreamingStatistics realized = mTimer.getRealizedIntervalStats();
+        StreamingStatistics limitedHold = mTimer.getLimitedHoldStats();
+
+        assertEquals(2, planned.getCount());
+        assertEquals(5 * 1000, planned.getMean(), 0);
+        assertEquals(2, realized.getCount());
+        assertEquals(5 * 1000, realized.getMin());
+        assertEquals(5 * 1000, realized.getMax());
+        assertEquals(0, realized.getVariance(), 0);
+        assertEquals(2, limitedHold.getCount());
+        assertEquals(20 * 1000, limitedHold.getTotal());
+        assertEquals(0, mTimer.getPauseStats().getCount());
+    }
+
+    @Test
+    public void intervalApproaching_isCorrect() throws Exception
+    {
+        assertIntervalApproaching(150);
+
+        //Shorter than the ticks, announced on the tick before
+        assertIntervalApproaching(50);
+    }
+
+    private void assertIntervalApproaching(final long leadMillis) throws Exception
+    {
+        final List<Long> approaching = new ArrayList<>();
+        final List<Long> reached = new ArrayList<>();
+        mTimer = new BehaviorCountDownTimer(6 * 1000, 1000, false, RandomStyleEnum.REGULAR,
+                0, 0, 1, true, 1000)
+        {
+            @Override
+            public void onTick() {}
+
+            @Override
+            public void onFinish()
+            {
+                reached.add(mClock.now());
+            }
+
+            @Override
+            public void onIntervalReached()
+            {
+                reached.add(mClock.now());
+            }
+
+            @Override
+            public void onIntervalApproaching(long millisUntilInterval)
+            {
+                assertTrue(millisUntilInterval >= leadMillis);
+                assertTrue(millisUntilInterval <= leadMillis + 100);
+                approaching.add(mClock.now() + millisUntilInterval);
+            }
+        };
+        mTimer.setCountdownFactory(mClock);
+        mTimer.setIntervalLeadTime(leadMillis);
+
+        runTimer();
+
+        //Every boundary (hold starts, hold ends and the finish) was announced for its exact time
+        assertEquals(6, approaching.size());
+        assertEquals(reached, approaching);
+    }
+
+    @Test
+    public void intervalCycle_isCorrect() throws Exception
+    {
+        final List<Integer> steps = new ArrayList<>();
+        mTimer = new BehaviorCountDownTimer(10 * 1000, 1000, false, RandomStyleEnum.REGULAR,
+                0, 0, 1, false, 0)
+        {
+            @Override
+            public void onTick() {}
+
+            @Override
+            public void onFinish() {}
+
+            @Override
+            public void onIntervalReached() {}
+
+            @Override
+            public void onIntervalReached(int cycleStep)
+            {
+                steps.add(cycleStep);
+            }
+        };
+        mTimer.setCountdownFactory(mClock);
+        mTimer.setLimitedHoldAnalytics(new LimitedHoldAnalytics(100, 10));
+        mTimer.setIntervalCycle(new IntervalCycle.Builder()
+                .addFixedStep("cue", 1000, false)
+                .addFixedStep("response", 2000, true)
+                .addFixedStep("inter-trial", 2000, false)
+                .build());
+
+        runTimer();
+
+        //Two whole cycles, only the response windows count
+        assertEquals(10 * 1000, mClock.now());
+        assertEquals(Arrays.asList(1, 2, 0, 1, 2), steps);
+        assertEquals(2, mTimer.getCurrentIterationValue());
+        assertEquals("inter-trial", mTimer.getIntervalCycle().getName(mTimer.getCurrentCycleStep()));
+
+        //Steps that don't count are still not holds unless marked
+        assertEquals(0, mTimer.getLimitedHoldStats().getCount());
+        assertEquals(0, mTimer.getLimitedHoldAnalytics().getWindowCount());
+        assertEquals(6, mTimer.getRealizedIntervalStats().getCount());
+    }
+
+    @Test
+    public void intervalCycleHold_isCorrect() throws Exception
+    {
+        createTimer(10 * 1000, 1000, false, RandomStyleEnum.REGULAR, 0, 0, 1, false, 0, null);
+        mTimer.setLimitedHoldAnalytics(new LimitedHoldAnalytics(100, 10));
+        mTimer.setIntervalCycle(new IntervalCycle.Builder()
+                .addFixedStep("cue", 1000, false)
+                .addFixedStep("response", 2000, false).asLimitedHold()
+                .addFixedStep("inter-trial", 2000, true)
+                .build());
+
+        runTimer();
+
+        //Only the marked response windows are holds, the inter-trial intervals count
+        assertEquals(2, mTimer.getCurrentIterationValue());
+        assertEquals(2, mTimer.getLimitedHoldStats().getCount());
+        assertEquals(2 * 1000, mTimer.getLimitedHoldStats().getMean(), 0);
+        assertEquals(2, mTimer.getLimitedHoldAnalytics().getWindowCount());
+        assertEquals(4, mTimer.getRealizedIntervalStats().getCount());
+    }
+
+    @Test
+    public void timeScale_isCorrect() throws Exception
+    {
+        final List<Integer> iterations = new ArrayList<>();
+        createTimer(10 * 1000, 1000, false, RandomStyleEnum.REGULAR, 0, 0, 1, false, 0,
+                new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        iterations.add(mTimer.getCurrentIterationValue());
+                    }
+                });
+
+        //Every tick covers two and a half intervals, none of them may be lost
+        mTimer.setTimeScale(25);
+        runTimer();
+
+        assertEquals(400, mClock.now());
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9), iterations);
+        assertEquals(10, mTimer.getCurrentIterationValue());
+
+        //Speed up while running, the change lands on the next tick
+        iterations.clear();
+        mTimer.setTimeScale(1);
+        mTimer.reset();
+        long startTime = mClock.now();
+        mTimer.start();
+        mClock.advance(2000);
+        mTimer.setTimeScale(4);
+        mClock.runUntilIdle();
+
+        assertEquals(startTime + 2100 + 7900 / 4, mClock.now());
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9), iterations);
+        assertEquals(10, mTimer.getCurrentIterationValue());
+    }
+
+    /**
+     * Timer that records the iteration count at every boundary, started at the clock's now
+     */
+    private List<Integer> startRecordingTimer(long timerValue, boolean limitedHoldFlag)
+            throws Exception
+    {
+        final List<Integer> iterations = new ArrayList<>();
+        createTimer(timerValue, 1000, false, RandomStyleEnum.REGULAR, 0, 0, 1,
+                limitedHoldFlag, limitedHoldFlag ? 1000 : 0,
+                new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        iterations.add(mTimer.getCurrentIterationValue());
+                    }
+                });
+        mTimer.reset();
+        mTimer.start();
+        return iterations;
+    }
+
+    @Test
+    public void liveTimerValue_isCorrect() throws Exception
+    {
+        //Extended, the elapsed time is kept
+        long startTime = mClock.now();
+        List<Integer> iterations = startRecordingTimer(10 * 1000, false);
+        mClock.advance(3050);
+        mTimer.setTimerValue(15 * 1000);
+        mClock.runUntilIdle();
+        assertEquals(startTime + 15 * 1000, mClock.now());
+        assertEquals(14, iterations.size());
+        assertEquals(15, mTimer.getCurrentIterationValue());
+
+        //Shortened
+        startTime = mClock.now();
+        iterations = startRecordingTimer(10 * 1000, false);
+        mClock.advance(3050);
+        mTimer.setTimerValue(6 * 1000);
+        mClock.runUntilIdle();
+        assertEquals(startTime + 6 * 1000, mClock.now());
+        assertEquals(6, mTimer.getCurrentIterationValue());
+
+        //Shortened below the elapsed time, finishes on the next tick
+        startTime = mClock.now();
+        startRecordingTimer(10 * 1000, false);
+        mClock.advance(3050);
+        mTimer.setTimerValue(2 * 1000);
+        mClock.runUntilIdle();
+        assertEquals(startTime + 3100, mClock.now());
+        assertEquals(0, mTimer.getCurrentTimerValue());
+
+        //Changed while paused, resumes where it was
+        startTime = mClock.now();
+        iterations = startRecordingTimer(10 * 1000, false);
+        mClock.advance(7050);
+        mTimer.pause();
+        mTimer.setTimerValue(40 * 1000);
+        mTimer.start();
+        assertEquals(33 * 1000, mTimer.getCurrentTimerValue());
+        assertEquals(7, mTimer.getCurrentIterationValue());
+        long resumeTime = mClock.now();
+        mClock.runUntilIdle();
+        assertEquals(resumeTime + 33 * 1000, mClock.now());
+        assertEquals(39, iterations.size());
+        assertEquals(40, mTimer.getCurrentIterationValue());
+
+        //Shortened below the elapsed time while paused, finishes on start
+        startRecordingTimer(10 * 1000, false);
+        mClock.advance(7050);
+        mTimer.pause();
+        mTimer.setTimerValue(5 * 1000);
+        mTimer.start();
+        assertFalse(mTimer.getTimerRunningFlag());
+        assertEquals(0, mTimer.getCurrentTimerValue());
+    }
+
+    @Test
+    public void liveIntervalValue_isCorrect() throws Exception
+    {
+        long startTime = mClock.now();
+        final List<Long> boundaries = new ArrayList<>();
+        createTimer(10 * 1000, 1000, false, RandomStyleEnum.REGULAR, 0, 0, 1, false, 0,
+                new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        boundaries.add(mClock.now());
+                    }
+                });
+        mTimer.reset();
+        mTimer.start();
+        mClock.advance(3050);
+
+        //The current interval ends as planned, the new length applies after it
+        mTimer.setIntervalValue(2000);
+        mClock.runUntilIdle();
+        assertEquals(Arrays.asList(1000L, 2000L, 3000L, 4000L, 6000L, 8000L),
+                offsets(boundaries, startTime));
+        assertEquals(7, mTimer.getCurrentIterationValue());
+    }
+
+    @Test
+    public void liveLimitedHold_isCorrect() throws Exception
+    {
+        //Removed during a hold, the hold still ends as planned
+        List<Integer> iterations = startRecordingTimer(10 * 1000, true);
+        mClock.advance(1050);
+        assertTrue(mTimer.getCurrentLimitedHoldFlag());
+        mTimer.setLimitedHold(false, 0);
+        mClock.runUntilIdle();
+        assertEquals(Arrays.asList(1, 1, 2, 3, 4, 5, 6, 7, 8), iterations);
+        assertEquals(9, mTimer.getCurrentIterationValue());
+
+        //Added during an interval, the hold follows it
+        iterations = startRecordingTimer(10 * 1000, false);
+        mClock.advance(1050);
+        mTimer.setLimitedHold(true, 1000);
+        mClock.runUntilIdle();
+        assertEquals(Arrays.asList(1, 2, 2, 3, 3, 4, 4, 5, 5), iterations);
+        assertEquals(6, mTimer.getCurrentIterationValue());
+
+        //Hold lengthened during a hold, the next hold is longer
+        iterations = startRecordingTimer(10 * 1000, true);
+        mClock.advance(1050);
+        mTimer.setLimitedHold(true, 2000);
+        mClock.runUntilIdle();
+        assertEquals(Arrays.asList(1, 1, 2, 2, 3, 3, 4), iterations);
+    }
+
+    private static List<Long> offsets(List<Long> times, long origin)
+    {
+        List<Long> offsets = new ArrayList<>();
+        for(long time : times)
+        {
+            offsets.add(time - origin);
+        }
+        return offsets;
+    }
+
+    @Test
+    public void protocolPhases_areCorrect() throws Exception
+    {
+        final List<String> events = new ArrayList<>();
+        final long[] startTime = {0};
+        mTimer = new BehaviorCountDownTimer(10 * 1000, 1000, false, RandomStyleEnum.REGULAR,
+                0, 0, 1, false, 0)
+        {
+            @Override
+            public void onTick() {}
+
+            @Override
+            public void onFinish()
+            {
+                events.add("finish " + (mClock.now() - startTime[0]) + " " + getCurrentIterationValue());
+            }
+
+            @Override
+            public void onPhaseReached()
+            {
+                events.add("phase " + (mClock.now() - startTime[0]));
+            }
+
+            @Override
+            public void onIntervalReached()
+            {
+                events.add((mClock.now() - startTime[0]) + " " + getCurrentIterationValue()
+                        + (getCurrentLimitedHoldFlag() ? " hold" : ""));
+            }
+        };
+        mTimer.setCountdownFactory(mClock);
+
+        //Fixed baseline, intervals with a limited hold, then fixed again
+        mTimer.setProtocol(new TimerProtocol(
+                new ProtocolPhase(4 * 1000, 1000, false, RandomStyleEnum.REGULAR, 0, 0, 1, false, 0),
+                new ProtocolPhase(6 * 1000, 2000, false, RandomStyleEnum.REGULAR, 0, 0, 1, true, 1000),
+                new ProtocolPhase(3 * 1000, 1000, false, RandomStyleEnum.REGULAR, 0, 0, 1, false, 0)));
+        mTimer.reset();
+        assertEquals(13 * 1000, mTimer.getDefinedTimerValue());
+
+        startTime[0] = mClock.now();
+        mTimer.start();
+        mClock.runUntilIdle();
+
+        //The iteration count carries over every phase change
+        assertEquals(Arrays.asList("1000 1", "2000 2", "3000 3",
+                "phase 4000", "4000 4",
+                "6000 5 hold", "7000 5", "9000 6 hold",
+                "phase 10000", "10000 6",
+                "11000 7", "12000 8", "finish 13000 9"), events);
+
+        //Clearing the protocol goes back to the timer's own definitions
+        mTimer.setProtocol(null);
+        mTimer.reset();
+        assertEquals(10 * 1000, mTimer.getDefinedTimerValue());
+        assertFalse(mTimer.getLimitedHoldFlag());
+        assertEquals(1000, mTimer.getNextIntervalValue());
+
+        events.clear();
+        startTime[0] = mClock.now();
+        mTimer.start();
+        mClock.runUntilIdle();
+        assertEquals("finish 10000 10", events.get(events.size() - 1));
+        assertEquals(10, events.size());
+    }
+
+    @Test
+    public void wholeSecondRealignment_isCorrect() throws Exception
+    {
+        assertEquals(3000, BehaviorCountDownTimer.alignToSecond(3000));
+        assertEquals(3000, BehaviorCountDownTimer.alignToSecond(2001));
+        assertEquals(3000, BehaviorCountDownTimer.alignToSecond(2999));
+        assertEquals(0, BehaviorCountDownTimer.alignToSecond(0));
+
+        //Every tick of the virtual clock lands exactly on the second at the boundaries
+        final List<Long> boundaries = new ArrayList<>();
+        long startTime = mClock.now();
+        createTimer(5 * 1000, 1000, false, RandomStyleEnum.REGULAR, 0, 0, 1, false, 0,
+                new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        boundaries.add(mClock.now());
+                    }
+                });
+        runTimer();
+
+        assertEquals(Arrays.asList(1000L, 2000L, 3000L, 4000L), offsets(boundaries, startTime));
+        assertEquals(1000, mTimer.getPlannedIntervalStats().getMin());
+        assertEquals(5, mTimer.getCurrentIterationValue());
+    }
+
+    @Test
+    public void subSecondInterval_isCorrect() throws Exception
+    {
+        final List<Long> boundaries = new ArrayList<>();
+        createTimer(5 * 1000, 500, false, RandomStyleEnum.REGULAR, 0, 0, 1, false, 0,
+                new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        assertTrue("Boundary loop", boundaries.size() < 100);
+                        boundaries.add(mClock.now());
+                    }
+                });
+        runTimer();
+
+        assertEquals(Arrays.asList(500L, 1000L, 1500L, 2000L, 2500L, 3000L, 3500L, 4000L, 4500L),
+                boundaries);
+        assertEquals(10, mTimer.getCurrentIterationValue());
+
+        //Random draws under a second count as a second
+        boundaries.clear();
+        createTimer(5 * 1000, 1000, true, RandomStyleEnum.REGULAR, 100, 900, 1, false, 0,
+                new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        assertTrue("Boundary loop", boundaries.size() < 100);
+                        boundaries.add(mClock.now() - mClock.now() % 100);
+                    }
+                });
+        runTimer();
+        assertEquals(4, boundaries.size());
+        assertEquals(5, mTimer.getCurrentIterationValue());
+    }
+
+    @Test
+    public void fastRandomTimers_finish() throws Exception
+    {
+        final int[] boundaries = {0};
+        Runnable count = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                assertTrue("Boundary loop", ++boundaries[0] < 100);
+            }
+        };
+
+        for(int scale : new int[] {3, 7})
+        {
+            for(long seed = 0; seed < 120; ++seed)
+            {
+                boundaries[0] = 0;
+                createTimer(37 * 1000, 1000, true, RandomStyleEnum.REGULAR, 1000, 4000, 1,
+                        false, 0, count);
+                mTimer.setRandomSeed(seed);
+                mTimer.setTimeScale(scale);
+                runTimer();
+
+                assertFalse(mTimer.getTimerRunningFlag());
+                assertEquals(boundaries[0] + 1, mTimer.getCurrentIterationValue());
+                assertTrue(boundaries[0] >= 9 && boundaries[0] <= 36);
+            }
+        }
+    }
+
+    @Test
+    public void stallNearEnd_finishes() throws Exception
+    {
+        final int[] boundaries = {0};
+        Runnable count = new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                assertTrue("Boundary loop", ++boundaries[0] < 100);
+            }
+        };
+
+        for(long seed = 0; seed < 40; ++seed)
+        {
+            for(long stall = 50; stall <= 4050; stall += 1000)
+            {
+                boundaries[0] = 0;
+                createTimer(37 * 1000, 1000, true, RandomStyleEnum.REGULAR, 1000, 4000, 1,
+                        false, 0, count);
+                mTimer.setRandomSeed(seed);
+                mTimer.reset();
+                mTimer.start();
+                long startTime = mClock.now();
+                mClock.advance(37 * 1000 - 4 * 1000 - seed * 7);
+                mClock.stall(stall);
+                long stallEnd = mClock.now();
+                mClock.runUntilIdle();
+
+                //A stall past the end finishes on the late tick
+                assertFalse(mTimer.getTimerRunningFlag());
+                assertEquals(Math.max(startTime + 37 * 1000, stallEnd), mClock.now());
+                assertEquals(boundaries[0] + 1, mTimer.getCurrentIterationValue());
+            }
+        }
+    }
+
+    @Test
+    public void catchUpPolicy_isCorrect() throws Exception
+    {
+        assertEquals(Arrays.asList(1, 2, 3, 4, 5, 6, 7, 8, 9),
+                runStalledTimer(BehaviorCountDownTimer.CatchUpPolicyEnum.REPLAY_ALL));
+        assertEquals(Arrays.asList(1, 2, 6, 7, 8, 9),
+                runStalledTimer(BehaviorCountDownTimer.CatchUpPolicyEnum.LATEST_ONLY));
+        assertEquals(Arrays.asList(1, 2, 7, 8, 9),
+                runStalledTimer(BehaviorCountDownTimer.CatchUpPolicyEnum.SKIP_TO_PRESENT));
+    }
+
+    /**
+     * 10 second timer with 1 second intervals that stalls from 2.05 to 6.05 seconds, the late
+     * tick passes the boundaries of iterations 3 to 6
+     * @return Iteration of every onIntervalReached() call
+     */
+    private List<Integer> runStalledTimer(BehaviorCountDownTimer.CatchUpPolicyEnum policy)
+            throws Exception
+    {
+        final List<Integer> iterations = new ArrayList<>();
+        final List<Integer> missed = new ArrayList<>();
+        mTimer = new BehaviorCountDownTimer(10 * 1000, 1000, false, RandomStyleEnum.REGULAR,
+                0, 0, 1, false, 0)
+        {
+            @Override
+            public void onTick() {}
+
+            @Override
+            public void onFinish() {}
+
+            @Override
+            public void onIntervalReached()
+            {
+                iterations.add(getCurrentIterationValue());
+            }
+
+            @Override
+            public void onBoundariesMissed(int missedCount)
+            {
+                missed.add(missedCount);
+            }
+        };
+        mTimer.setCountdownFactory(mClock);
+        mTimer.setCatchUpPolicy(policy);
+        mTimer.reset();
+        mTimer.start();
+
+        mClock.advance(2050);
+        mClock.stall(4000);
+        mClock.advance(0);
+
+        //Whatever was called back, the timer is in the present
+        assertEquals(6, mTimer.getCurrentIterationValue());
+        assertEquals(Arrays.asList(3), missed);
+        assertEquals(3, mTimer.getMissedBoundaryCount());
+
+        //Back on schedule, the next boundary is still on its second
+        long stallEnd = mClock.now();
+        mClock.advance(1000);
+        assertEquals(7, mTimer.getCurrentIterationValue());
+        mClock.runUntilIdle();
+        assertEquals(stallEnd + 3950, mClock.now());
+        assertEquals(10, mTimer.getCurrentIterationValue());
+        assertEquals(1, missed.size());
+        return iterations;
+    }
+
+    @Test
+    public void nestedTimers_shareClock() throws Exception
+    {
+        final List<Long> parentBoundaries = new ArrayList<>();
+        final List<Long> childBoundaries = new ArrayList<>();
+        final List<Long> childFinishes = new ArrayList<>();
+        mTimer = new BehaviorCountDownTimer(10 * 1000, 1000, false, RandomStyleEnum.REGULAR,
+                0, 0, 1, false, 0)
+        {
+            @Override
+            public void onTick() {}
+
+            @Override
+            public void onFinish() {}
+
+            @Override
+            public void onIntervalReached()
+            {
+                parentBoundaries.add(mClock.now());
+            }
+        };
+        BehaviorCountDownTimer trial = new BehaviorCountDownTimer(3 * 1000, 1000, false,
+                RandomStyleEnum.REGULAR, 0, 0, 1, false, 0)
+        {
+            @Override
+            public void onTick() {}
+
+            @Override
+            public void onFinish()
+            {
+                childFinishes.add(mClock.now());
+            }
+
+            @Override
+            public void onIntervalReached()
+            {
+                childBoundaries.add(mClock.now());
+            }
+        };
+        mTimer.setCountdownFactory(mClock);
+        mTimer.addChildTimer(trial);
+        assertEquals(mTimer, trial.getParentTimer());
+
+        //The child starts with the parent
+        mTimer.start();
+        assertTrue(trial.getTimerRunningFlag());
+        mClock.advance(1050);
+        assertEquals(Arrays.asList(1000L), parentBoundaries);
+        assertEquals(Arrays.asList(1000L), childBoundaries);
+
+        //Pausing the parent freezes both at the same tick
+        mTimer.pause();
+        assertFalse(trial.getTimerRunningFlag());
+        mClock.advance(5000);
+        assertEquals(9000, mTimer.getCurrentTimerValue());
+        assertEquals(2000, trial.getCurrentTimerValue());
+
+        //Both resume from where they were, the child finishes on the shared clock
+        mTimer.start();
+        assertTrue(trial.getTimerRunningFlag());
+        mClock.runUntilIdle();
+        assertEquals(Arrays.asList(1000L, 7050L), childBoundaries);
+        assertEquals(Arrays.asList(8050L), childFinishes);
+        assertEquals(15050, mClock.now());
+        assertEquals(9, parentBoundaries.size());
+
+        //A new session starts the trial over with it
+        mTimer.start();
+        assertTrue(trial.getTimerRunningFlag());
+        assertEquals(3000, trial.getCurrentTimerValue());
+        mClock.runUntilIdle();
+        assertEquals(Arrays.asList(8050L, 18050L), childFinishes);
+
+        try
+        {
+            trial.addChildTimer(mTimer);
+            fail("Timer nested in its own child");
+        } catch (IllegalArgumentException e)
+        {
+            //Expected
+        }
+
+        assertTrue(mTimer.removeChildTimer(trial));
+        assertEquals(null, trial.getParentTimer());
+    }
+
+    @Test
+    public void shortenedParent_stopsChildrenNow() throws Exception
+    {
+        final List<Long> childBoundaries = new ArrayList<>();
+        final List<Long> childFinishes = new ArrayList<>();
+        final List<Long> parentFinishes = new ArrayList<>();
+        mTimer = new BehaviorCountDownTimer(10 * 1000, 1000, false, RandomStyleEnum.REGULAR,
+                0, 0, 1, false, 0)
+        {
+            @Override
+            public void onTick() {}
+
+            @Override
+            public void onFinish()
+            {
+                parentFinishes.add(mClock.now());
+            }
+
+            @Override
+            public void onIntervalReached() {}
+        };
+        BehaviorCountDownTimer trial = new BehaviorCountDownTimer(5 * 1000, 1000, false,
+                RandomStyleEnum.REGULAR, 0, 0, 1, false, 0)
+        {
+            @Override
+            public void onTick() {}
+
+            @Override
+            public void onFinish()
+            {
+                childFinishes.add(mClock.now());
+            }
+
+            @Override
+            public void onIntervalReached()
+            {
+                childBoundaries.add(mClock.now());
+            }
+        };
+        mTimer.setCountdownFactory(mClock);
+        mTimer.addChildTimer(trial);
+        long origin = mClock.now();
+        mTimer.start();
+        mClock.advance(3050);
+
+        //Shortened below the elapsed time, the parent ends on the next tick
+        mTimer.setTimerValue(2000);
+        mClock.runUntilIdle();
+
+        assertEquals(Arrays.asList(3100L), offsets(parentFinishes, origin));
+        assertEquals(Arrays.asList(1000L, 2000L, 3000L), offsets(childBoundaries, origin));
+        assertTrue(childFinishes.isEmpty());
+        assertFalse(trial.getTimerRunningFlag());
+        assertEquals(1900, trial.getCurrentTimerValue());
+    }
+
+    @Test
+    public void frameAlignedTicks_areCorrect() throws Exception
+    {
+        final int[] ticks = {0};
+        final List<Long> boundaries = new ArrayList<>();
+        final boolean[] finished = {false};
+        mTimer = new BehaviorCountDownTimer(10 * 1000, 1000, false, RandomStyleEnum.REGULAR,
+                0, 0, 1, false, 0)
+        {
+            @Override
+            public void onTick()
+            {
+                assertFalse("Tick after the finish", finished[0]);
+                ++ticks[0];
+            }
+
+            @Override
+            public void onFinish()
+            {
+                finished[0] = true;
+            }
+
+            @Override
+            public void onIntervalReached()
+            {
+                boundaries.add(mClock.now());
+            }
+        };
+        VirtualFrameSource frames = new VirtualFrameSource();
+        mTimer.setCountdownFactory(mClock);
+        mTimer.setFrameSource(frames);
+        mTimer.reset();
+        mTimer.start();
+
+        //A slow display, 4 frames a second against 10 ticks
+        while(!finished[0])
+        {
+            mClock.advance(250);
+            frames.pulse(mClock.now() * 1000000);
+        }
+
+        //The tick waiting for the last frame was dropped with the finish
+        assertEquals(frames.getFrameCount() - 1, ticks[0]);
+        assertEquals(Arrays.asList(1000L, 2000L, 3000L, 4000L, 5000L, 6000L, 7000L, 8000L, 9000L),
+                boundaries);
+    }
+
+    @Test
+    public void frameTick_droppedOnPause() throws Exception
+    {
+        final int[] ticks = {0};
+        mTimer = new BehaviorCountDownTimer(10 * 1000, 1000, false, RandomStyleEnum.REGULAR,
+                0, 0, 1, false, 0)
+        {
+            @Override
+            public void onTick()
+            {
+                ++ticks[0];
+            }
+
+            @Override
+            public void onFinish() {}
+
+            @Override
+            public void onIntervalReached() {}
+        };
+        VirtualFrameSource frames = new VirtualFrameSource();
+        mTimer.setCountdownFactory(mClock);
+        mTimer.setFrameSource(frames);
+        mTimer.reset();
+        mTimer.start();
+        mClock.advance(100);
+
+        //The tick waiting for its frame goes with the pause
+        mTimer.pause();
+        frames.pulse(mClock.now() * 1000000);
+        assertEquals(0, ticks[0]);
+
+        //and the next one is posted again after the resume
+        mTimer.start();
+        mClock.advance(100);
+        frames.pulse(mClock.now() * 1000000);
+        assertEquals(1, ticks[0]);
+    }
+
+    @Test
+    public void countdown_isRestarted() throws Exception
+    {
+        createDefaultTimer();
+        mTimer.start();
+        mClock.advance(2050);
+        mTimer.pause();
+        mTimer.start();
+
+        //A new speed starts the countdown over on the next tick
+        mTimer.setTimeScale(2);
+        mClock.advance(2000);
+        mTimer.pause();
+        mTimer.start();
+        mClock.runUntilIdle();
+
+        //and so does the next session
+        mTimer.start();
+        mClock.runUntilIdle();
+        assertEquals(3, mTimer.getCurrentIterationValue());
+        assertEquals(1, mClock.getCreatedCount());
+
+        //Another factory creates its own
+        VirtualClock otherClock = new VirtualClock();
+        mTimer.setCountdownFactory(otherClock);
+        mTimer.start();
+        otherClock.runUntilIdle();
+        assertEquals(1, otherClock.getCreatedCount());
+        assertEquals(3, mTimer.getCurrentIterationValue());
+    }
+
+    @Test
+    public void seek_isCorrect() throws Exception
+    {
+        createDefaultTimer();
+        mTimer.setTimerValue(30 * 1000);
+        mTimer.setIntervalValue(5 * 1000);
+        mTimer.setLimitedHold(true, 10 * 1000);
+        mTimer.setSeekEnabled(true);
+        mTimer.reset();
+
+        mTimer.seekTo(17500);
+
+        assertFalse(mTimer.getCurrentLimitedHoldFlag());
+        assertEquals(1, mTimer.getCurrentIterationValue());
+        assertEquals(2500, mTimer.getCurrentIntervalValue());
+
+        mTimer.seekTo(7000);
+
+        assertTrue(mTimer.getCurrentLimitedHoldFlag());
+        assertEquals(1, mTimer.getCurrentIterationValue());
+        assertEquals(8000, mTimer.getCurrentIntervalValue());
+
+        mTimer.start();
+        mClock.runUntilIdle();
+
+        assertEquals(2, mTimer.getCurrentIterationValue());
+        assertEquals(23 * 1000, mClock.now());
+    }
+
+    @Test
+    public void seekHistory_isCorrect() throws Exception
+    {
+        createDefaultTimer();
+        mTimer.setTimerValue(30 * 1000);
+        mTimer.setIntervalValue(5 * 1000);
+        mTimer.reset();
+        mTimer.start();
+        mClock.advance(7000);
+
+        //Nothing was recorded, the running session is left alone
+        try
+        {
+            mTimer.seekTo(2000);
+            fail("No exception was thrown. Exception for seeking without a history was expected.");
+        } catch (IllegalStateException e)
+        {
+            //Expected
+        }
+        assertTrue(mTimer.getTimerRunningFlag());
+        assertEquals(23 * 1000, mTimer.getCurrentTimerValue());
+
+        //Enabling records from the next reset on
+        mTimer.setSeekEnabled(true);
+        mClock.runUntilIdle();
+        mTimer.reset();
+        mTimer.start();
+        mClock.advance(7000);
+
+        //A live change moves the whole history with the timer value
+        mTimer.setTimerValue(40 * 1000);
+        mClock.advance(1000);
+        mTimer.pause();
+        assertEquals(32 * 1000, mTimer.getCurrentTimerValue());
+
+        mTimer.seekTo(12 * 1000);
+        assertEquals(2, mTimer.getCurrentIterationValue());
+        assertEquals(3000, mTimer.getCurrentIntervalValue());
+        mTimer.seekTo(6000);
+        assertEquals(1, mTimer.getCurrentIterationValue());
+        assertEquals(4000, mTimer.getCurrentIntervalValue());
+    }
+
+    @Test
+    public void protocolSetters_keepProgress() throws Exception
+    {
+        createDefaultTimer();
+        mTimer.setProtocol(new TimerProtocol(
+                new ProtocolPhase(4 * 1000, 1000, false, RandomStyleEnum.REGULAR, 0, 0, 1, false, 0),
+                new ProtocolPhase(6 * 1000, 2000, false, RandomStyleEnum.REGULAR, 0, 0, 1, false, 0)));
+        mTimer.reset();
+        long start = mClock.now();
+        mTimer.start();
+        mClock.advance(2550);
+
+        //The running protocol is left alone
+        mTimer.setTimerValue(20 * 1000);
+        mTimer.setIntervalValue(2500);
+        mTimer.setTimerRandom(false, RandomStyleEnum.REGULAR, 4 * 1000, 3 * 1000, 1);
+        mTimer.setLimitedHold(true, 500);
+        mClock.advance(50);
+        assertEquals(7400, mTimer.getCurrentTimerValue());
+        assertEquals(2, mTimer.getCurrentIterationValue());
+        assertEquals(10 * 1000, mTimer.getDefinedTimerValue());
+        assertFalse(mTimer.getLimitedHoldFlag());
+
+        mClock.runUntilIdle();
+        assertEquals(10 * 1000, mClock.now() - start);
+        assertEquals(7, mTimer.getCurrentIterationValue());
+
+        //and the changes are what clearing it goes back to
+        mTimer.setProtocol(null);
+        mTimer.reset();
+        //Fitted to whole 3 second cycles of interval and hold
+        assertEquals(21 * 1000, mTimer.getDefinedTimerValue());
+        assertEquals(2500, mTimer.getNextIntervalValue());
+        assertTrue(mTimer.getLimitedHoldFlag());
+        assertEquals(500, mTimer.getLimitedHoldValue());
+    }
+
+    private static TimerProtocol createSeekProtocol() throws Exception
+    {
+        return new TimerProtocol(
+                new ProtocolPhase(10 * 1000, 2 * 1000, false,
+                        RandomStyleEnum.REGULAR, 0, 0, 1, false, 0),
+                new ProtocolPhase(35 * 1000, 1000, true,
+                        RandomStyleEnum.REGULAR, 2 * 1000, 5 * 1000, 1, true, 1000));
+    }
+
+    @Test
+    public void seek_matchesRunning() throws Exception
+    {
+        //Without a protocol seeking back draws random intervals again, only go forward
+        long[][] seekTimes = {{900, 4000, 12300, 12300, 26000, 41700},
+                {900, 4000, 12300, 12300, 26000, 3100, 41700, 0}};
+
+        for(int withProtocol = 0; withProtocol < 2; ++withProtocol)
+        {
+            createTimer(45 * 1000, 1000, true, RandomStyleEnum.REGULAR,
+                    2 * 1000, 5 * 1000, 3, true, 2 * 1000, null);
+            BehaviorCountDownTimer seeking = mTimer;
+            createTimer(45 * 1000, 1000, true, RandomStyleEnum.REGULAR,
+                    2 * 1000, 5 * 1000, 3, true, 2 * 1000, null);
+            if(withProtocol == 1)
+            {
+                seeking.setProtocol(createSeekProtocol());
+                mTimer.setProtocol(createSeekProtocol());
+            }
+            seeking.setSeekEnabled(true);
+            seeking.setRandomSeed(RANDOM_SEED);
+            seeking.reset();
+
+            for(long seekTime : seekTimes[withProtocol])
+            {
+                seeking.seekTo(seekTime);
+
+                //Same seed, run up to the same time
+                BehaviorCountDownTimer running = mTimer;
+                running.setRandomSeed(RANDOM_SEED);
+                running.reset();
+                running.start();
+                mClock.advance(seekTime);
+                running.pause();
+
+                assertEquals(running.getCurrentTimerValue(), seeking.getCurrentTimerValue());
+                assertEquals(running.getCurrentIntervalValue(), seeking.getCurrentIntervalValue());
+                assertEquals(running.getCurrentIterationValue(), seeking.getCurrentIterationValue());
+                assertEquals(running.getCurrentLimitedHoldFlag(), seeking.getCurrentLimitedHoldFlag());
+                assertEquals(running.getCurrentPhaseIndex(), seeking.getCurrentPhaseIndex());
+            }
+        }
+    }
+
+    @Test
+    public void postedCommands_runOnNextTick() throws Exception
+    {
+        createDefaultTimer();
+        mTimer.setTimerValue(10 * 1000);
+        mTimer.setIntervalValue(1000);
+        mTimer.reset();
+        mTimer.start();
+        mClock.advance(2000);
+
+        final Future<?>[] pause = new Future<?>[1];
+        Thread controller = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                pause[0] = mTimer.postPause();
+            }
+        });
+        controller.start();
+        controller.join();
+
+        //Nothing changes until the timer's own thread gets to it
+        assertFalse(pause[0].isDone());
+        assertTrue(mTimer.getTimerRunningFlag());
+
+        mClock.advance(100);
+
+        assertTrue(pause[0].isDone());
+        assertFalse(mTimer.getTimerRunningFlag());
+        assertEquals(2, mTimer.getCurrentIterationValue());
+    }
+
+    @Test
+    public void postedCommands_useExecutorWhileIdle() throws Exception
+    {
+        final List<Runnable> drains = new ArrayList<>();
+        createDefaultTimer();
+        mTimer.setCommandExecutor(new Executor()
+        {
+            @Override
+            public void execute(Runnable command)
+            {
+                drains.add(command);
+            }
+        });
+
+        Future<Void> reset = mTimer.postReset();
+        Future<Void> start = mTimer.postStart();
+        Future<Void> badValue = mTimer.postCommand(new Callable<Void>()
+        {
+            @Override
+            public Void call() throws Exception
+            {
+                mTimer.setTimerValue(0);
+                return null;
+            }
+        });
+
+        //One drain covers everything queued before it runs
+        assertEquals(1, drains.size());
+        drains.get(0).run();
+
+        assertTrue(reset.isDone());
+        assertTrue(start.isDone());
+        assertTrue(mTimer.getTimerRunningFlag());
+        try
+        {
+            badValue.get();
+            fail("No exception was thrown. Exception for 0 timer was expected.");
+        } catch (ExecutionException e)
+        {
+            assertTrue(e.getCause() instanceof TotalTimerException);
+        }
+    }
+
+    @Test
+    public void oddCases() throws Exception
+    {
+        createDefaultTimer();
+
+        try
+        {
+            mTimer.setTimerValue(0);
+            fail("No exception was thrown. Exception for 0 timer was expected.");
+        } catch (Exception e)
+        {
+            //Expected
+        }
+
+        try
+        {
+            mTimer.setTimerValue(-5000);
+            fail("No exception was thrown. Exception for negative timer value was expected.");
+        } catch (Exception e)
+        {
+            //Expected
+        }
+
+        try
+        {
+            mTimer.setLimitedHold(true, -5000);
+            fail("No exception was thrown. Exception for negative limited hold value was expected.");
+        } catch (Exception e)
+        {
+            //Expected
+        }
+
+        try
+        {
+            mTimer.setIntervalValue(-1000);
+            fail("No exception was thrown. Exception for interval value was expected.");
+        } catch (Exception e)
+        {
+            //Expected
+        }
+
+        try
+        {
+            mTimer.setTimerRandom(true, RandomStyleEnum.REGULAR, -1000, -3000, 5);
+            fail("No exception was thrown. Exception for interval value was expected.");
+        } catch (Exception e)
+        {
+            //Expected
+        }
+
+        try
+        {
+            mTimer.setTimerRandom(true, RandomStyleEnum.ITERATION, 1000, 3000, -5);
+            fail("No exception was thrown. Exception for interval value was expected.");
+        } catch (Exception e)
+        {
+            //Expected
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static com.expandedlabs.behavioraltimerbase.BehaviorCountDownTimer.RandomStyleEnum;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ChromeTraceRecorderTest
+{
+    private VirtualClock mClock;
+    private BehaviorCountDownTimer mTimer;
+
+    @Before
+    public void TestSetUp() throws Exception
+    {
+        mClock = new VirtualClock();
+        mTimer = new BehaviorCountDownTimer(5 * 1000, 1000, false,
+                RandomStyleEnum.REGULAR, 0, 0, 1, true, 1000)
+        {
+            @Override
+            public void onTick() {}
+
+            @Override
+            public void onFinish() {}
+
+            @Override
+            public void onIntervalReached() {}
+        };
+        mTimer.setCountdownFactory(mClock);
+    }
+
+    @Test
+    public void spans_areBalanced() throws Exception
+    {
+        ChromeTraceRecorder recorder = new ChromeTraceRecorder(64, false);
+        mTimer.setTracer(recorder);
+
+        mTimer.start();
+        mClock.advance(2500);
+        mTimer.pause();
+        mTimer.start();
+        mClock.runUntilIdle();
+
+        //Fitted to 6 seconds: three holds, the last one ends with the finish
+        assertEquals(12, recorder.getCount());
+
+        StringWriter out = new StringWriter();
+        recorder.writeTo(out);
+        String json = out.toString();
+
+        assertTrue(json.startsWith("{\"traceEvents\":[{"));
+        assertTrue(json.endsWith("}]}"));
+        assertEquals(7, occurrences(json, "\"ph\":\"b\""));
+        assertEquals(7, occurrences(json, "\"ph\":\"e\""));
+        assertEquals(3, occurrences(json, "\"name\":\"limited hold\",\"cat\":\"timer\",\"ph\":\"b\""));
+        assertEquals(1, occurrences(json, "\"name\":\"paused\",\"cat\":\"timer\",\"ph\":\"e\""));
+        assertEquals(1, occurrences(json, "\"name\":\"finish\""));
+    }
+
+    @Test
+    public void fullRecorder_dropsEvents() throws Exception
+    {
+        ChromeTraceRecorder recorder = new ChromeTraceRecorder(10, true);
+        mTimer.setTracer(recorder);
+
+        mTimer.start();
+        mClock.runUntilIdle();
+
+        assertEquals(10, recorder.getCount());
+        assertTrue(recorder.getDroppedCount() > 0);
+    }
+
+    private static int occurrences(String text, String part)
+    {
+        int count = 0;
+        for(int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1))
+        {
+            ++count;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,77 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.StringWriter;
+
+import static com.expandedlabs.behavioraltimerbase.BehaviorCountDownTimer.RandomStyleEnum;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DiagnosticRingTest
+{
+    @After
+    public void TestTearDown()
+    {
+        TimerDiagnostics.setSink(null);
+        TimerDiagnostics.setLevel(TimerDiagnostics.DEBUG);
+    }
+
+    @Test
+    public void format_isCorrect()
+    {
+        assertEquals("finished.", TimerDiagnostics.format("finished.", 1, 2));
+        assertEquals("Next Interval: 5000", TimerDiagnostics.format("Next Interval: {}", 5000, 0));
+        assertEquals("3 of 4 {}", TimerDiagnostics.format("{} of {} {}", 3, 4));
+    }
+
+    @Test
+    public void timerEntries_areKept() throws Exception
+    {
+        DiagnosticRing ring = new DiagnosticRing(4);
+        TimerDiagnostics.setSink(ring);
+        assertTrue(TimerDiagnostics.isLoggable(TimerDiagnostics.DEBUG));
+
+        VirtualClock clock = new VirtualClock();
+        BehaviorCountDownTimer timer = new BehaviorCountDownTimer(10 * 1000, 5 * 1000, false,
+                RandomStyleEnum.REGULAR, 0, 0, 1, false, 0)
+        {
+            @Override
+            public void onTick() {}
+
+            @Override
+            public void onFinish() {}
+
+            @Override
+            public void onIntervalReached() {}
+        };
+        timer.setCountdownFactory(clock);
+        timer.reset();
+        timer.start();
+        clock.runUntilIdle();
+
+        //Only the latest entries are kept, formatted when read
+        StringWriter out = new StringWriter();
+        ring.writeTo(out);
+        String[] lines = out.toString().split("\n");
+        assertEquals(4, ring.getCount());
+        assertEquals(0, ring.getOverwrittenCount());
+        assertTrue(lines[0], lines[0].endsWith(" D/BehaviorCountDownTimer: Interval completed."));
+        assertTrue(lines[1], lines[1].endsWith(": Iteration count: 1"));
+        assertTrue(lines[2], lines[2].endsWith(": Next Interval: 5000"));
+        assertTrue(lines[3], lines[3].endsWith(": finished."));
+
+        //Below the level nothing reaches the sink
+        TimerDiagnostics.setLevel(TimerDiagnostics.INFO);
+        assertFalse(TimerDiagnostics.isLoggable(TimerDiagnostics.DEBUG));
+        timer.reset();
+        timer.start();
+        clock.runUntilIdle();
+        assertEquals(0, ring.getOverwrittenCount());
+
+        TimerDiagnostics.log(TimerDiagnostics.WARN, "test", "{} late", 12, 0);
+        assertEquals(1, ring.getOverwrittenCount());
+    }
+}
@@ -0,0 +1,98 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import org.junit.Test;
+
+import static com.expandedlabs.behavioraltimerbase.BehaviorCountDownTimer.RandomStyleEnum;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LimitedHoldAnalyticsTest
+{
+    @Test
+    public void windows_areCounted()
+    {
+        LimitedHoldAnalytics analytics = new LimitedHoldAnalytics(100, 5);
+
+        analytics.openWindow();
+        assertTrue(analytics.recordLatency(120));
+        analytics.closeWindow();
+        assertTrue(analytics.getLastWindowHitFlag());
+
+        analytics.openWindow();
+        analytics.closeWindow();
+        assertFalse(analytics.getLastWindowHitFlag());
+        assertEquals(-1, analytics.getLastLatency());
+
+        //Only the first response of a window counts, long latencies land in the last bucket
+        analytics.openWindow();
+        assertTrue(analytics.recordLatency(950));
+        assertFalse(analytics.recordLatency(10));
+        analytics.closeWindow();
+
+        //Responses outside a window and cut off windows without one don't count
+        assertFalse(analytics.recordLatency(10));
+        analytics.openWindow();
+        analytics.abandonWindow();
+
+        assertEquals(3, analytics.getWindowCount());
+        assertEquals(2, analytics.getHitCount());
+        assertEquals(1, analytics.getMissCount());
+        assertEquals(2.0 / 3, analytics.getHitRate(), 1e-9);
+        assertEquals(535, analytics.getLatencyStats().getMean(), 1e-9);
+        assertEquals(1, analytics.getBucket(1));
+        assertEquals(1, analytics.getBucket(4));
+        assertEquals(200, analytics.getLatencyPercentile(0.5));
+        assertEquals(500, analytics.getLatencyPercentile(1));
+
+        analytics.clear();
+        assertEquals(-1, analytics.getLatencyPercentile(0.5));
+        assertEquals(0, analytics.getWindowCount());
+    }
+
+    @Test
+    public void timerWindows_areMeasured() throws Exception
+    {
+        final LimitedHoldAnalytics analytics = new LimitedHoldAnalytics(50, 20);
+        final long[] outsideLatency = {0};
+        final BehaviorCountDownTimer[] timer = new BehaviorCountDownTimer[1];
+        timer[0] = new BehaviorCountDownTimer(12 * 1000, 2 * 1000, false,
+                RandomStyleEnum.REGULAR, 0, 0, 1, true, 2 * 1000)
+        {
+            @Override
+            public void onTick() {}
+
+            @Override
+            public void onFinish() {}
+
+            @Override
+            public void onIntervalReached()
+            {
+                if(!getCurrentLimitedHoldFlag())
+                {
+                    outsideLatency[0] = recordResponse();
+                }
+                else if(getCurrentIterationValue() != 2)
+                {
+                    //Respond in the first and third window, skip the second
+                    assertTrue(recordResponse() >= 0);
+                }
+            }
+        };
+
+        VirtualClock clock = new VirtualClock();
+        timer[0].setCountdownFactory(clock);
+        timer[0].setLimitedHoldAnalytics(analytics);
+        timer[0].reset();
+        timer[0].start();
+        clock.runUntilIdle();
+
+        assertEquals(-1, outsideLatency[0]);
+        assertEquals(3, analytics.getWindowCount());
+        assertEquals(2, analytics.getHitCount());
+        assertEquals(1, analytics.getMissCount());
+        assertFalse(analytics.getWindowOpenFlag());
+        assertTrue(analytics.getLastWindowHitFlag());
+        assertEquals(-1, timer[0].recordResponse());
+    }
+}
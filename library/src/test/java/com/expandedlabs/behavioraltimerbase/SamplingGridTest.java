@@ -0,0 +1,94 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.expandedlabs.behavioraltimerbase.BehaviorCountDownTimer.RandomStyleEnum;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SamplingGridTest
+{
+    @Test
+    public void fixedGrid_isCorrect() throws Exception
+    {
+        SamplingGrid grid = new SamplingGrid(4);
+        grid.generate(new ProtocolPhase(10 * 1000, 2 * 1000, false,
+                RandomStyleEnum.REGULAR, 0, 0, 1, false, 0), 1);
+
+        assertArrayEquals(new long[] {2000, 4000, 6000, 8000, 10000}, grid.toArray());
+    }
+
+    @Test
+    public void limitedHold_isSkipped() throws Exception
+    {
+        SamplingGrid grid = new SamplingGrid(4);
+        grid.generate(new ProtocolPhase(9 * 1000, 2 * 1000, false,
+                RandomStyleEnum.REGULAR, 0, 0, 1, true, 1000), 1);
+
+        assertArrayEquals(new long[] {2000, 5000, 8000}, grid.toArray());
+    }
+
+    @Test
+    public void randomGrid_staysInRange() throws Exception
+    {
+        ProtocolPhase configuration = new ProtocolPhase(60 * 60 * 1000, 30 * 1000, true,
+                RandomStyleEnum.REGULAR, 10 * 1000, 50 * 1000, 1, false, 0);
+        SamplingGrid grid = new SamplingGrid(SamplingGrid.maxPoints(configuration));
+        int count = grid.generate(configuration, 7);
+
+        long previous = 0;
+        for(int i = 0; i < count; ++i)
+        {
+            long interval = grid.getPoint(i) - previous;
+            assertTrue(interval <= 50 * 1000);
+            assertTrue(interval >= 10 * 1000 || i == count - 1);
+            previous = grid.getPoint(i);
+        }
+        assertEquals(60 * 60 * 1000, previous);
+    }
+
+    @Test
+    public void timer_deliversEveryPoint() throws Exception
+    {
+        VirtualClock clock = new VirtualClock();
+        final List<Long> delivered = new ArrayList<>();
+        final BehaviorCountDownTimer[] timer = new BehaviorCountDownTimer[1];
+        timer[0] = new BehaviorCountDownTimer(10 * 1000, 5 * 1000, false,
+                RandomStyleEnum.REGULAR, 0, 0, 1, false, 0)
+        {
+            @Override
+            public void onTick() {}
+
+            @Override
+            public void onFinish() {}
+
+            @Override
+            public void onIntervalReached() {}
+
+            @Override
+            public void onSampleReached(int sampleIndex)
+            {
+                delivered.add(getDefinedTimerValue() - getCurrentTimerValue());
+            }
+        };
+
+        SamplingGrid grid = new SamplingGrid(8);
+        grid.generate(new ProtocolPhase(10 * 1000, 2500, false,
+                RandomStyleEnum.REGULAR, 0, 0, 1, false, 0), 1);
+        timer[0].setCountdownFactory(clock);
+        timer[0].setSamplingGrid(grid);
+        timer[0].start();
+        clock.runUntilIdle();
+
+        //Points land on ticks, the last one comes with the finish
+        assertEquals(4, delivered.size());
+        for(int i = 0; i < delivered.size(); ++i)
+        {
+            assertEquals(grid.getPoint(i), (long) delivered.get(i));
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SessionArchiveTest
+{
+    private static final long START_TIME = 1500000000000L;
+
+    /**
+     * 15 second session of 5 second intervals, the first boundary lands 50ms late and the timer is
+     * paused for 3 seconds. Sessions that aren't completed are reset before the end.
+     */
+    private static void writeSession(SessionArchive.Writer writer, int protocolId, long startTime,
+                                     boolean completed)
+    {
+        writer.beginSession(protocolId);
+        writer.addEvent(SessionEventRing.TYPE_START, startTime, 15000, 5000, 0);
+        writer.addEvent(SessionEventRing.TYPE_INTERVAL, startTime + 5050, 9950, 5000, 1);
+        writer.addEvent(SessionEventRing.TYPE_PAUSE, startTime + 6000, 9000, 4050, 1);
+        writer.addEvent(SessionEventRing.TYPE_START, startTime + 9000, 9000, 4050, 1);
+        writer.addEvent(SessionEventRing.TYPE_INTERVAL, startTime + 13000, 5000, 5000, 2);
+        if(completed)
+        {
+            writer.addEvent(SessionEventRing.TYPE_FINISH, startTime + 18000, 0, 0, 3);
+        }
+        else
+        {
+            writer.addEvent(SessionEventRing.TYPE_RESET, startTime + 14000, 15000, 5000, 0);
+        }
+    }
+
+    private static SessionArchive createArchive(int sessions) throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SessionArchive.Writer writer = new SessionArchive.Writer(out);
+        for(int i = 0; i < sessions; ++i)
+        {
+            writeSession(writer, i % 3, START_TIME + i * 60000L, i % 4 != 0);
+            writer.endSession();
+        }
+        writer.flush();
+        return new SessionArchive(ByteBuffer.wrap(out.toByteArray()));
+    }
+
+    @Test
+    public void sessions_roundTrip() throws Exception
+    {
+        SessionArchive archive = createArchive(5);
+        assertEquals(5, archive.getSessionCount());
+        assertEquals(2, archive.getProtocolId(2));
+
+        final List<String> events = new ArrayList<>();
+        SessionEventRing.Consumer consumer = new SessionEventRing.Consumer()
+        {
+            @Override
+            public void onEvent(int type, long timeMillis, long timerValue, long intervalValue,
+                                int iteration)
+            {
+                events.add(type + "@" + (timeMillis - START_TIME) + ":" + timerValue + ","
+                        + intervalValue + "," + iteration);
+            }
+
+            @Override
+            public void onBatchEnd()
+            {
+                events.add("end");
+            }
+        };
+
+        //Blocks decode on their own, in any order
+        assertEquals(1, archive.readSession(4, consumer));
+        assertEquals(Arrays.asList("1@240000:15000,5000,0", "4@245050:9950,5000,1",
+                "2@246000:9000,4050,1", "1@249000:9000,4050,1", "4@253000:5000,5000,2",
+                "3@254000:15000,5000,0", "end"), events);
+
+        events.clear();
+        assertEquals(0, archive.readSession(3, consumer));
+        assertEquals("7@198000:0,0,3", events.get(5));
+    }
+
+    @Test
+    public void archive_isCompact() throws Exception
+    {
+        //Ten minute sessions of 10 second intervals, boundaries land up to 60ms late
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        SessionArchive.Writer writer = new SessionArchive.Writer(out);
+        long events = 0;
+        for(int i = 0; i < 100; ++i)
+        {
+            long startTime = START_TIME + i * 3600000L;
+            writer.beginSession(0);
+            writer.addEvent(SessionEventRing.TYPE_START, startTime, 600000, 10000, 0);
+            for(int interval = 1; interval < 60; ++interval)
+            {
+                long lateness = (interval * 7 + i) % 7 * 10;
+                long timerValue = 600000 - interval * 10000 - lateness;
+                writer.addEvent(SessionEventRing.TYPE_INTERVAL, startTime + 600000 - timerValue,
+                        timerValue, 10000, interval);
+            }
+            writer.addEvent(SessionEventRing.TYPE_FINISH, startTime + 600000, 0, 0, 60);
+            writer.endSession();
+            events += 61;
+        }
+
+        long raw = events * SessionEventRing.RECORD_SIZE;
+        assertTrue("Archive " + out.size() + " of " + raw, out.size() * 5 <= raw);
+    }
+
+    @Test
+    public void aggregate_isCorrect() throws Exception
+    {
+        SessionArchive archive = createArchive(1000);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        Map<Integer, SessionAggregator.ProtocolSummary> report;
+        try
+        {
+            report = new SessionAggregator(executor, 16).aggregate(archive);
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        assertEquals(Arrays.asList(0, 1, 2), new ArrayList<>(report.keySet()));
+
+        long sessions = 0;
+        long completed = 0;
+        for(SessionAggregator.ProtocolSummary summary : report.values())
+        {
+            sessions += summary.getSessions();
+            completed += summary.getCompletedSessions();
+            assertEquals(summary.getSessions(), summary.getPauses());
+            assertEquals(summary.getSessions() * 3000, summary.getPauseMillis());
+        }
+        assertEquals(1000, sessions);
+        assertEquals(750, completed);
+
+        //Every session ran a 5050 and a 4950ms interval, completed ones a 5000ms one after them
+        SessionAggregator.ProtocolSummary first = report.get(0);
+        Map<Integer, SessionAggregator.ProtocolSummary> sequential =
+                SessionAggregator.aggregateRange(archive, 0, archive.getSessionCount());
+        StreamingStatistics intervals = first.getIntervalStats();
+        assertEquals(sequential.get(0).getIntervalStats().getCount(), intervals.getCount());
+        assertEquals(sequential.get(0).getIntervalStats().getVariance(), intervals.getVariance(), 1e-6);
+        assertEquals(5000, intervals.getMean(), 1e-6);
+        assertEquals(4950, intervals.getMin());
+        assertEquals(5050, intervals.getMax());
+        assertEquals(first.getCompletedSessions(), (double) first.getSessions()
+                * first.getCompletionRate(), 1e-6);
+    }
+}
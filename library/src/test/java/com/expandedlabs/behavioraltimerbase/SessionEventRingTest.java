@@ -0,0 +1,128 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.expandedlabs.behavioraltimerbase.BehaviorCountDownTimer.RandomStyleEnum;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SessionEventRingTest
+{
+    @Test
+    public void slowConsumer_losesNothing() throws Exception
+    {
+        final int events = 20000;
+        final SessionEventRing ring = new SessionEventRing(64);
+        final long[] received = {0};
+        final boolean[] inOrder = {true};
+
+        Thread drainThread = ring.newDrainThread(new SessionEventRing.Consumer()
+        {
+            @Override
+            public void onEvent(int type, long timeMillis, long timerValue,
+                                long intervalValue, int iteration)
+            {
+                inOrder[0] &= timerValue == received[0] && iteration == (int) received[0];
+                ++received[0];
+            }
+
+            @Override
+            public void onBatchEnd() {}
+        }, 16, 1);
+        drainThread.start();
+
+        for(int i = 0; i < events; ++i)
+        {
+            ring.publish(SessionEventRing.TYPE_INTERVAL, i, 0, i);
+        }
+
+        drainThread.interrupt();
+        drainThread.join();
+
+        assertEquals(events, received[0]);
+        assertTrue(inOrder[0]);
+        assertEquals(0, ring.getBacklog());
+        assertTrue(ring.getMaxBacklog() <= 64);
+        assertTrue(ring.getProducerWaits() > 0);
+    }
+
+    @Test
+    public void maxBacklog_isCorrect() throws Exception
+    {
+        SessionEventRing ring = new SessionEventRing(64);
+        SessionEventRing.Consumer consumer = new SessionEventRing.Consumer()
+        {
+            @Override
+            public void onEvent(int type, long timeMillis, long timerValue,
+                                long intervalValue, int iteration) {}
+
+            @Override
+            public void onBatchEnd() {}
+        };
+
+        //Two rounds of 10 drained in between never have more than 10 waiting
+        for(int round = 0; round < 2; ++round)
+        {
+            for(int i = 0; i < 10; ++i)
+            {
+                ring.publish(SessionEventRing.TYPE_INTERVAL, i, 0, i);
+            }
+            assertEquals(10, ring.drain(consumer, 64));
+        }
+        assertEquals(10, ring.getMaxBacklog());
+        assertEquals(0, ring.getProducerWaits());
+    }
+
+    @Test
+    public void timerTransitions_arePublished() throws Exception
+    {
+        VirtualClock clock = new VirtualClock();
+        BehaviorCountDownTimer timer = new BehaviorCountDownTimer(5 * 1000, 1000, false,
+                RandomStyleEnum.REGULAR, 0, 0, 1, true, 1000)
+        {
+            @Override
+            public void onTick() {}
+
+            @Override
+            public void onFinish() {}
+
+            @Override
+            public void onIntervalReached() {}
+        };
+        SessionEventRing ring = new SessionEventRing(32);
+        timer.setCountdownFactory(clock);
+        timer.setEventRing(ring);
+
+        timer.start();
+        clock.advance(2500);
+        timer.pause();
+        timer.start();
+        clock.runUntilIdle();
+
+        final List<Integer> types = new ArrayList<>();
+        ring.drain(new SessionEventRing.Consumer()
+        {
+            @Override
+            public void onEvent(int type, long timeMillis, long timerValue,
+                                long intervalValue, int iteration)
+            {
+                types.add(type);
+            }
+
+            @Override
+            public void onBatchEnd() {}
+        }, 32);
+
+        //Fitted to 6 seconds: interval, hold, interval, hold, interval, hold
+        assertEquals(9, types.size());
+        assertEquals(SessionEventRing.TYPE_START, (int) types.get(0));
+        assertEquals(SessionEventRing.TYPE_LIMITED_HOLD, (int) types.get(1));
+        assertEquals(SessionEventRing.TYPE_INTERVAL, (int) types.get(2));
+        assertEquals(SessionEventRing.TYPE_PAUSE, (int) types.get(3));
+        assertEquals(SessionEventRing.TYPE_START, (int) types.get(4));
+        assertEquals(SessionEventRing.TYPE_FINISH, (int) types.get(8));
+    }
+}
@@ -0,0 +1,143 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import static com.expandedlabs.behavioraltimerbase.BehaviorCountDownTimer.RandomStyleEnum;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SharedTimerStateTest
+{
+    private static BehaviorCountDownTimer createTimer(long timerValue) throws Exception
+    {
+        return new BehaviorCountDownTimer(timerValue, 1000, false,
+                RandomStyleEnum.REGULAR, 0, 0, 1, false, 0)
+        {
+            @Override
+            public void onTick() {}
+
+            @Override
+            public void onFinish() {}
+
+            @Override
+            public void onIntervalReached() {}
+        };
+    }
+
+    private static File createFile() throws Exception
+    {
+        File file = File.createTempFile("timer", ".state");
+        file.deleteOnExit();
+        return file;
+    }
+
+    @Test
+    public void reader_seesTimerState() throws Exception
+    {
+        File file = createFile();
+        VirtualClock clock = new VirtualClock();
+        BehaviorCountDownTimer timer = createTimer(10 * 1000);
+        timer.setCountdownFactory(clock);
+        timer.setSharedState(SharedTimerState.openWriter(file));
+
+        SharedTimerState reader = SharedTimerState.openReader(file);
+        SharedTimerState.Snapshot snapshot = new SharedTimerState.Snapshot();
+
+        timer.start();
+        clock.advance(2500);
+
+        assertTrue(reader.read(snapshot));
+        assertEquals(7500, snapshot.getTimerValue());
+        assertEquals(500, snapshot.getIntervalValue());
+        assertEquals(2, snapshot.getIterationValue());
+        assertTrue(snapshot.getRunningFlag());
+        assertEquals(0, snapshot.getSequence() % 2);
+
+        timer.pause();
+
+        assertTrue(reader.read(snapshot));
+        assertFalse(snapshot.getRunningFlag());
+        assertEquals(7500, snapshot.getTimerValueAt(snapshot.getPublishTime() + 60 * 1000));
+    }
+
+    @Test
+    public void concurrentReads_areNeverTorn() throws Exception
+    {
+        File file = createFile();
+        final long timerValue = 1000 * 1000;
+        final BehaviorCountDownTimer timer = createTimer(timerValue);
+        timer.setSharedState(SharedTimerState.openWriter(file));
+
+        Thread writer = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for(long remaining = timerValue; remaining > 0; remaining -= 100)
+                {
+                    timer.innerTick(remaining);
+                }
+            }
+        });
+
+        SharedTimerState reader = SharedTimerState.openReader(file);
+        SharedTimerState.Snapshot snapshot = new SharedTimerState.Snapshot();
+        long lastSequence = 0;
+        int reads = 0;
+
+        writer.start();
+        while(writer.isAlive() || reads == 0)
+        {
+            if(!reader.read(snapshot)) continue;
+            ++reads;
+
+            //Iteration and time left always come from the same publish
+            assertEquals((timerValue - snapshot.getTimerValue()) / 1000,
+                    snapshot.getIterationValue());
+            assertTrue(snapshot.getSequence() >= lastSequence);
+            lastSequence = snapshot.getSequence();
+        }
+        writer.join();
+    }
+
+    @Test
+    public void tornRecord_isRejected() throws Exception
+    {
+        File file = createFile();
+        VirtualClock clock = new VirtualClock();
+        BehaviorCountDownTimer timer = createTimer(10 * 1000);
+        timer.setCountdownFactory(clock);
+        timer.setSharedState(SharedTimerState.openWriter(file));
+        SharedTimerState reader = SharedTimerState.openReader(file);
+        SharedTimerState.Snapshot snapshot = new SharedTimerState.Snapshot();
+
+        timer.start();
+        clock.advance(2500);
+        assertTrue(reader.read(snapshot));
+
+        //An even sequence around values of another publish, what a reader sees when its loads
+        // are reordered
+        RandomAccessFile access = new RandomAccessFile(file, "rw");
+        try
+        {
+            access.seek(32);
+            access.writeInt(snapshot.getIterationValue() + 1);
+        }
+        finally
+        {
+            access.close();
+        }
+
+        assertFalse(reader.read(snapshot));
+        assertEquals(2, snapshot.getIterationValue());
+
+        //The next publish is whole again
+        clock.advance(100);
+        assertTrue(reader.read(snapshot));
+        assertEquals(7400, snapshot.getTimerValue());
+    }
+}
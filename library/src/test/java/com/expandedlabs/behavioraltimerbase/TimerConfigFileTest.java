@@ -0,0 +1,111 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static com.expandedlabs.behavioraltimerbase.BehaviorCountDownTimer.RandomStyleEnum;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TimerConfigFileTest
+{
+    private static TimerConfigFile.Builder createBuilder() throws Exception
+    {
+        TimerProtocol fixed = new TimerProtocol(new ProtocolPhase(7 * 1000, 3 * 1000, false,
+                RandomStyleEnum.REGULAR, 0, 0, 1, true, 2 * 1000));
+        TimerProtocol mixed = new TimerProtocol(
+                new ProtocolPhase(60 * 1000, 10 * 1000, false,
+                        RandomStyleEnum.REGULAR, 0, 0, 1, false, 0),
+                new ProtocolPhase(120 * 1000, 10 * 1000, true,
+                        RandomStyleEnum.DEVIATION, 2 * 1000, 4 * 1000, 3, true, 5 * 1000));
+
+        return new TimerConfigFile.Builder()
+                .add("Fixed", 1, fixed)
+                .add("Baseline \u2192 probe", 42, mixed);
+    }
+
+    @Test
+    public void mappedFile_roundTrips() throws Exception
+    {
+        File file = File.createTempFile("protocols", ".btcf");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            createBuilder().writeTo(out);
+        }
+        finally
+        {
+            out.close();
+        }
+
+        TimerConfigFile configs = TimerConfigFile.open(file);
+        assertEquals(TimerConfigFile.VERSION, configs.getVersion());
+        assertEquals(2, configs.getCount());
+
+        //Fitted to 10 seconds when it was written
+        assertEquals("Fixed", configs.getName(0));
+        assertEquals(10 * 1000, configs.getTimerValue(0));
+        assertEquals(1, configs.getSeed(0));
+
+        assertEquals("Baseline \u2192 probe", configs.getName(1));
+        assertEquals(180 * 1000, configs.getTimerValue(1));
+        assertEquals(2, configs.getPhaseCount(1));
+
+        ProtocolPhase probe = configs.getPhase(1, 1);
+        assertTrue(probe.getRandomFlag());
+        assertEquals(RandomStyleEnum.DEVIATION, probe.getStyle());
+        assertEquals(2 * 1000, probe.getMinRandomValue());
+        assertEquals(4 * 1000, probe.getMaxRandomValue());
+        assertEquals(3, probe.getRandIterationValue());
+        assertTrue(probe.getLimitedHoldFlag());
+        assertEquals(5 * 1000, probe.getLimitedHoldValue());
+
+        assertEquals(configs.getTimerValue(1), configs.getProtocol(1).getTimerValue());
+    }
+
+    @Test
+    public void badFiles_areRejected() throws Exception
+    {
+        ByteBuffer buffer = createBuilder().build();
+
+        buffer.putShort(4, (short) (TimerConfigFile.VERSION + 1));
+        try
+        {
+            new TimerConfigFile(buffer);
+            fail("No exception was thrown. Exception for a newer version was expected.");
+        } catch (IOException e)
+        {
+            //Expected
+        }
+
+        buffer.putShort(4, (short) TimerConfigFile.VERSION);
+        buffer.putInt(0, 0);
+        try
+        {
+            new TimerConfigFile(buffer);
+            fail("No exception was thrown. Exception for a missing magic was expected.");
+        } catch (IOException e)
+        {
+            //Expected
+        }
+
+        //Record pointing past the end is only noticed when the protocol is read
+        buffer.putInt(0, TimerConfigFile.MAGIC);
+        buffer.putInt(16, buffer.limit());
+        TimerConfigFile configs = new TimerConfigFile(buffer);
+        try
+        {
+            configs.getName(0);
+            fail("No exception was thrown. Exception for a corrupt record was expected.");
+        } catch (IOException e)
+        {
+            //Expected
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares memory per running session and interval boundary latency of the TimerEngine
+ * execution modes.
+ * This is not part of the unit tests, run main() from the unit test classpath:
+ *
+ *   TimerEngineBenchmark [SHARDED|THREAD_PER_SESSION] [sessions...]
+ *
+ * Defaults to both modes at 10k, 100k and 1M sessions. THREAD_PER_SESSION uses virtual threads
+ * when the JVM has them and falls back to platform threads otherwise.
+ */
+public class TimerEngineBenchmark
+{
+    private static final long TIMER_VALUE = 10 * 1000;
+    private static final long INTERVAL_VALUE = 1000;
+
+    public static void main(String[] args) throws Exception
+    {
+        List<TimerEngine.ExecutionModeEnum> modes = new ArrayList<>();
+        List<Integer> sessionCounts = new ArrayList<>();
+        for(String arg : args)
+        {
+            if(Character.isDigit(arg.charAt(0)))
+            {
+                sessionCounts.add(Integer.parseInt(arg));
+            }
+            else
+            {
+                modes.add(TimerEngine.ExecutionModeEnum.valueOf(arg));
+            }
+        }
+        if(modes.isEmpty())
+        {
+            modes.add(TimerEngine.ExecutionModeEnum.SHARDED);
+            modes.add(TimerEngine.ExecutionModeEnum.THREAD_PER_SESSION);
+        }
+        if(sessionCounts.isEmpty())
+        {
+            sessionCounts.add(10000);
+            sessionCounts.add(100000);
+            sessionCounts.add(1000000);
+        }
+
+        for(TimerEngine.ExecutionModeEnum mode : modes)
+        {
+            for(int sessions : sessionCounts)
+            {
+                run(mode, sessions);
+            }
+        }
+    }
+
+    private static void run(TimerEngine.ExecutionModeEnum mode, int sessions) throws Exception
+    {
+        ThreadFactory threadFactory = mode == TimerEngine.ExecutionModeEnum.THREAD_PER_SESSION
+                ? virtualThreadFactory() : null;
+        TimerEngine engine = new TimerEngine(mode,
+                Runtime.getRuntime().availableProcessors(), threadFactory);
+
+        long heapBefore = usedHeap();
+        LatencyTimer[] timers = new LatencyTimer[sessions];
+        long[] ids = new long[sessions];
+        for(int i = 0; i < sessions; ++i)
+        {
+            timers[i] = new LatencyTimer();
+            ids[i] = engine.register(timers[i]);
+        }
+
+        long startNanos = System.nanoTime();
+        for(int i = 0; i < sessions; ++i)
+        {
+            timers[i].mStartNanos = System.nanoTime();
+            engine.start(ids[i]);
+        }
+
+        //Measured while every session is running, countdowns and their threads included
+        long heapRunning = usedHeap();
+
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        Thread.sleep(Math.max(0, TIMER_VALUE + 2000 - elapsed));
+
+        long boundaries = 0;
+        long totalLateness = 0;
+        long maxLateness = 0;
+        for(LatencyTimer timer : timers)
+        {
+            boundaries += timer.mBoundaries;
+            totalLateness += timer.mTotalLateness;
+            maxLateness = Math.max(maxLateness, timer.mMaxLateness);
+        }
+
+        for(long id : ids)
+        {
+            engine.unregister(id);
+        }
+        engine.shutdown();
+
+        System.out.println(String.format("%-18s %,9d sessions  %,6d bytes/session  "
+                        + "%,10d boundaries  mean late %,6d ms  max late %,6d ms",
+                mode, sessions, (heapRunning - heapBefore) / sessions, boundaries,
+                boundaries == 0 ? 0 : totalLateness / boundaries, maxLateness));
+    }
+
+    private static long usedHeap() throws InterruptedException
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for(int i = 0; i < 3; ++i)
+        {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    /**
+     * Thread.ofVirtual().factory() looked up reflectively so this compiles on older JDKs
+     */
+    private static ThreadFactory virtualThreadFactory()
+    {
+        try
+        {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) builder.getClass().getMethod("factory").invoke(builder);
+        } catch (Exception e)
+        {
+            System.out.println("Virtual threads unavailable, using platform threads.");
+            return null;
+        }
+    }
+
+    private static class LatencyTimer extends BehaviorCountDownTimer
+    {
+        volatile long mStartNanos;
+        long mBoundaries;
+        long mTotalLateness;
+        long mMaxLateness;
+
+        LatencyTimer() throws Exception
+        {
+            super(TIMER_VALUE, INTERVAL_VALUE, false, RandomStyleEnum.REGULAR,
+                    0, 0, 1, false, 0);
+        }
+
+        @Override
+        public void onTick() {}
+
+        @Override
+        public void onFinish() {}
+
+        @Override
+        public void onIntervalReached()
+        {
+            //Fixed intervals, so boundary n is due n intervals after the start
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - mStartNanos);
+            long lateness = Math.max(0, elapsed - getCurrentIterationValue() * INTERVAL_VALUE);
+
+            ++mBoundaries;
+            mTotalLateness += lateness;
+            mMaxLateness = Math.max(mMaxLateness, lateness);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs real sessions on the engine's threads, kept short so the tests stay fast
+ */
+public class TimerEngineTest
+{
+    @Test
+    public void sharded_isCorrect() throws Exception
+    {
+        assertEngine(TimerEngine.ExecutionModeEnum.SHARDED);
+    }
+
+    @Test
+    public void threadPerSession_isCorrect() throws Exception
+    {
+        assertEngine(TimerEngine.ExecutionModeEnum.THREAD_PER_SESSION);
+    }
+
+    @Test
+    public void shutdown_stopsThreads() throws Exception
+    {
+        for(TimerEngine.ExecutionModeEnum mode : TimerEngine.ExecutionModeEnum.values())
+        {
+            final List<Thread> threads = new ArrayList<>();
+            final ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+            TimerEngine engine = new TimerEngine(mode, 2, new ThreadFactory()
+            {
+                @Override
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = defaultFactory.newThread(runnable);
+                    synchronized(threads)
+                    {
+                        threads.add(thread);
+                    }
+                    return thread;
+                }
+            });
+
+            List<EngineTimer> timers = new ArrayList<>();
+            for(int i = 0; i < 3; ++i)
+            {
+                EngineTimer bTimer = new EngineTimer(60 * 1000, 1000);
+                timers.add(bTimer);
+                assertTrue(engine.start(engine.register(bTimer)));
+            }
+            for(EngineTimer bTimer : timers)
+            {
+                assertTrue(bTimer.mFirstTick.await(5, TimeUnit.SECONDS));
+            }
+
+            engine.shutdown();
+            synchronized(threads)
+            {
+                assertFalse(threads.isEmpty());
+                for(Thread thread : threads)
+                {
+                    thread.join(5000);
+                    assertFalse(mode + " thread still alive", thread.isAlive());
+                }
+            }
+
+            try
+            {
+                engine.register(new EngineTimer(1000, 1000));
+                fail("No exception was thrown. Exception for a shut down engine was expected.");
+            } catch (IllegalStateException e)
+            {
+                //Expected
+            }
+        }
+    }
+
+    private void assertEngine(TimerEngine.ExecutionModeEnum mode) throws Exception
+    {
+        TimerEngine engine = new TimerEngine(mode, 2, null);
+        try
+        {
+            //Register and run a 600ms session with 200ms intervals to the end
+            EngineTimer shortTimer = new EngineTimer(600, 200);
+            long shortId = engine.register(shortTimer);
+            assertEquals(1, engine.size());
+            assertEquals(shortTimer, engine.get(shortId));
+
+            assertTrue(engine.start(shortId));
+            assertTrue(shortTimer.mFinished.await(5, TimeUnit.SECONDS));
+            assertTrue(shortTimer.mTicks.get() > 0);
+            assertFalse(shortTimer.mOnCallerThread);
+            assertEquals(2, shortTimer.mBoundaries.get());
+            assertEquals(3, shortTimer.getCurrentIterationValue());
+
+            //Pause stops the ticks
+            EngineTimer longTimer = new EngineTimer(60 * 1000, 1000);
+            long longId = engine.register(longTimer);
+            assertTrue(engine.start(longId));
+            assertTrue(longTimer.mFirstTick.await(5, TimeUnit.SECONDS));
+            assertTrue(engine.pause(longId));
+            awaitStopped(longTimer);
+            int ticks = longTimer.mTicks.get();
+            Thread.sleep(300);
+            assertEquals(ticks, longTimer.mTicks.get());
+
+            //Commands run on the session's thread, paused or ticking, never the caller's
+            assertNotSame(Thread.currentThread(), longTimer.postCommand(currentThread()).get(5, TimeUnit.SECONDS));
+            assertTrue(engine.start(longId));
+            awaitTicks(longTimer, ticks + 1);
+            assertSame(longTimer.mTickThread, longTimer.postCommand(currentThread()).get(5, TimeUnit.SECONDS));
+            assertTrue(engine.pause(longId));
+            awaitStopped(longTimer);
+            ticks = longTimer.mTicks.get();
+
+            //Unregister hands a running timer back paused
+            assertTrue(engine.start(longId));
+            awaitTicks(longTimer, ticks + 1);
+            assertEquals(longTimer, engine.unregister(longId));
+            assertNull(engine.get(longId));
+            assertFalse(engine.start(longId));
+            awaitStopped(longTimer);
+            ticks = longTimer.mTicks.get();
+            Thread.sleep(300);
+            assertEquals(ticks, longTimer.mTicks.get());
+
+            assertEquals(shortTimer, engine.unregister(shortId));
+            assertNull(engine.unregister(shortId));
+            assertEquals(0, engine.size());
+        }
+        finally
+        {
+            engine.shutdown();
+        }
+    }
+
+    private static Callable<Thread> currentThread()
+    {
+        return new Callable<Thread>()
+        {
+            @Override
+            public Thread call()
+            {
+                return Thread.currentThread();
+            }
+        };
+    }
+
+    private static void awaitStopped(BehaviorCountDownTimer bTimer) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + 5000;
+        while(bTimer.getTimerRunningFlag())
+        {
+            assertTrue("Timer never stopped", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static void awaitTicks(EngineTimer bTimer, int ticks) throws InterruptedException
+    {
+        long deadline = System.currentTimeMillis() + 5000;
+        while(bTimer.mTicks.get() < ticks)
+        {
+            assertTrue("Timer never ticked", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static class EngineTimer extends BehaviorCountDownTimer
+    {
+        final Thread mCaller = Thread.currentThread();
+        final AtomicInteger mTicks = new AtomicInteger();
+        final AtomicInteger mBoundaries = new AtomicInteger();
+        final CountDownLatch mFirstTick = new CountDownLatch(1);
+        final CountDownLatch mFinished = new CountDownLatch(1);
+        volatile boolean mOnCallerThread = false;
+        volatile Thread mTickThread;
+
+        EngineTimer(long timerValue, long intervalValue) throws Exception
+        {
+            super(timerValue, intervalValue, false, RandomStyleEnum.REGULAR, 0, 0, 1, false, 0);
+        }
+
+        @Override
+        public void onTick()
+        {
+            if(Thread.currentThread() == mCaller) mOnCallerThread = true;
+            mTickThread = Thread.currentThread();
+            mTicks.incrementAndGet();
+            mFirstTick.countDown();
+        }
+
+        @Override
+        public void onFinish()
+        {
+            mFinished.countDown();
+        }
+
+        @Override
+        public void onIntervalReached()
+        {
+            mBoundaries.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import org.junit.Test;
+
+import static com.expandedlabs.behavioraltimerbase.BehaviorCountDownTimer.RandomStyleEnum;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class TimerMetricsRegistryTest
+{
+    private static BehaviorCountDownTimer createTimer(VirtualClock clock) throws Exception
+    {
+        BehaviorCountDownTimer timer = new BehaviorCountDownTimer(5 * 1000, 1000, false,
+                RandomStyleEnum.REGULAR, 0, 0, 1, false, 0)
+        {
+            @Override
+            public void onTick() {}
+
+            @Override
+            public void onFinish() {}
+
+            @Override
+            public void onIntervalReached() {}
+        };
+        timer.setCountdownFactory(clock);
+        return timer;
+    }
+
+    @Test
+    public void snapshot_sumsEveryTimer() throws Exception
+    {
+        VirtualClock clock = new VirtualClock();
+        TimerMetricsRegistry registry = new TimerMetricsRegistry();
+        BehaviorCountDownTimer first = createTimer(clock);
+        BehaviorCountDownTimer second = createTimer(clock);
+        registry.register(first);
+        registry.register(second);
+
+        //Changing a definition while stopped makes the next start reset
+        second.setIntervalValue(1000);
+        first.start();
+        second.start();
+        clock.advance(2050);
+
+        TimerMetricsRegistry.Snapshot running = registry.snapshot();
+        assertEquals(2, running.getActiveTimers());
+
+        first.pause();
+        clock.runUntilIdle();
+
+        TimerMetricsRegistry.Snapshot done = registry.snapshot();
+        assertEquals(2, done.getRegisteredTimers());
+        assertEquals(0, done.getActiveTimers());
+        assertEquals(1, done.getPauses());
+        assertEquals(1, done.getInvalidateResets());
+        //21 ticks on the paused timer, 50 on the other, 2 and 4 boundaries before their finish
+        assertEquals(71, done.getTicks());
+        assertEquals(6, done.getBoundaries());
+        assertEquals(0, done.getWorstLateness());
+    }
+
+    @Test
+    public void unregister_keepsTotals() throws Exception
+    {
+        VirtualClock clock = new VirtualClock();
+        TimerMetricsRegistry registry = new TimerMetricsRegistry();
+        BehaviorCountDownTimer timer = createTimer(clock);
+        registry.register(timer);
+
+        timer.start();
+        clock.runUntilIdle();
+        registry.unregister(timer);
+
+        TimerMetricsRegistry.Snapshot snapshot = registry.snapshot();
+        assertNull(timer.getMetrics());
+        assertEquals(0, snapshot.getRegisteredTimers());
+        assertEquals(50, snapshot.getTicks());
+        assertEquals(4, snapshot.getBoundaries());
+    }
+
+    @Test
+    public void register_isExclusive() throws Exception
+    {
+        VirtualClock clock = new VirtualClock();
+        TimerMetricsRegistry registry = new TimerMetricsRegistry();
+        TimerMetricsRegistry other = new TimerMetricsRegistry();
+        BehaviorCountDownTimer timer = createTimer(clock);
+        registry.register(timer);
+
+        timer.start();
+        clock.runUntilIdle();
+
+        //Registering again replaces the old metrics without counting them twice
+        TimerMetrics metrics = registry.register(timer);
+        assertSame(metrics, timer.getMetrics());
+        assertEquals(1, registry.snapshot().getRegisteredTimers());
+        assertEquals(50, registry.snapshot().getTicks());
+
+        try
+        {
+            other.register(timer);
+            fail("No exception was thrown. Exception for registering with two registries was expected.");
+        }
+        catch(IllegalStateException ex)
+        {
+            //Expected
+        }
+
+        //Only the registry it belongs to can take it back
+        other.unregister(timer);
+        assertSame(metrics, timer.getMetrics());
+        assertEquals(0, other.snapshot().getRegisteredTimers());
+    }
+}
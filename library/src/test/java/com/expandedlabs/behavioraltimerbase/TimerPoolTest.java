@@ -0,0 +1,207 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import com.expandedlabs.behavioraltimerbase.exceptions.IntervalTimerException;
+import com.expandedlabs.behavioraltimerbase.exceptions.IterationException;
+import com.expandedlabs.behavioraltimerbase.exceptions.LimitedHoldException;
+import com.expandedlabs.behavioraltimerbase.exceptions.MinMaxException;
+import com.expandedlabs.behavioraltimerbase.exceptions.TotalTimerException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.Future;
+
+import static com.expandedlabs.behavioraltimerbase.BehaviorCountDownTimer.RandomStyleEnum;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TimerPoolTest
+{
+    private VirtualClock mClock;
+    private TimerPool<BehaviorCountDownTimer> mPool;
+    private int mCreated;
+
+    @Before
+    public void TestSetUp()
+    {
+        mClock = new VirtualClock();
+        mCreated = 0;
+        mPool = new TimerPool<>(1, new TimerPool.Factory<BehaviorCountDownTimer>()
+        {
+            @Override
+            public BehaviorCountDownTimer create(long timerValue, long intervalValue,
+                                                 boolean randomFlag, RandomStyleEnum style,
+                                                 long minRandom, long maxRandom,
+                                                 int numberOfIterations,
+                                                 boolean limitedHoldFlag, long limitedHold)
+                    throws IntervalTimerException, IterationException, LimitedHoldException,
+                    MinMaxException, TotalTimerException
+            {
+                ++mCreated;
+                BehaviorCountDownTimer timer = new BehaviorCountDownTimer(timerValue,
+                        intervalValue, randomFlag, style, minRandom, maxRandom,
+                        numberOfIterations, limitedHoldFlag, limitedHold)
+                {
+                    @Override
+                    public void onTick() {}
+
+                    @Override
+                    public void onFinish() {}
+
+                    @Override
+                    public void onIntervalReached() {}
+                };
+                timer.setCountdownFactory(mClock);
+                return timer;
+            }
+        });
+    }
+
+    @Test
+    public void releasedTimer_isReused() throws Exception
+    {
+        BehaviorCountDownTimer first = mPool.acquire(10 * 1000, 1000, false,
+                RandomStyleEnum.REGULAR, 0, 0, 1, true, 1000);
+        first.start();
+        mClock.advance(3500);
+        Future<Void> stale = first.postPause();
+        assertTrue(mPool.release(first));
+
+        BehaviorCountDownTimer second = mPool.acquire(5 * 1000, 1000, false,
+                RandomStyleEnum.REGULAR, 0, 0, 1, false, 0);
+        assertSame(first, second);
+        assertEquals(1, mCreated);
+        assertTrue(stale.isCancelled());
+        assertFalse(second.getLimitedHoldFlag());
+        assertEquals(5 * 1000, second.getCurrentTimerValue());
+        assertEquals(0, second.getCurrentIterationValue());
+
+        second.start();
+        mClock.runUntilIdle();
+
+        assertEquals(5, second.getCurrentIterationValue());
+        assertNull(second.getProtocol());
+    }
+
+    @Test
+    public void invalidValues_leaveTimerAsItWas() throws Exception
+    {
+        BehaviorCountDownTimer first = mPool.acquire(10 * 1000, 1000, false,
+                RandomStyleEnum.REGULAR, 0, 0, 1, true, 1000);
+        first.start();
+        mClock.advance(3500);
+        assertTrue(mPool.release(first));
+        long timerValue = first.getCurrentTimerValue();
+        long intervalValue = first.getCurrentIntervalValue();
+        int iterations = first.getCurrentIterationValue();
+
+        //Every value before the bad limited hold is valid but none of them are taken
+        try
+        {
+            mPool.acquire(5 * 1000, 500, true, RandomStyleEnum.REGULAR, 100, 200, 1, true, 0);
+            fail("No exception was thrown. Exception for negative limited hold value was expected.");
+        } catch (LimitedHoldException e)
+        {
+            //Expected
+        }
+        assertEquals(1, mPool.getFreeCount());
+        assertEquals(timerValue, first.getCurrentTimerValue());
+        assertEquals(intervalValue, first.getCurrentIntervalValue());
+        assertEquals(iterations, first.getCurrentIterationValue());
+        assertTrue(first.getLimitedHoldFlag());
+        assertEquals(1000, first.getLimitedHoldValue());
+        assertFalse(first.getRandomFlag());
+
+        //The timer carries on with its old session
+        first.start();
+        mClock.runUntilIdle();
+        assertEquals(5, first.getCurrentIterationValue());
+    }
+
+    @Test
+    public void reusedTimer_hasDefaults() throws Exception
+    {
+        BehaviorCountDownTimer first = mPool.acquire(10 * 1000, 1000, false,
+                RandomStyleEnum.REGULAR, 0, 0, 1, false, 0);
+        SessionEventRing ring = new SessionEventRing(16);
+        first.setEventRing(ring);
+        first.setTimeScale(4);
+        first.setCatchUpPolicy(BehaviorCountDownTimer.CatchUpPolicyEnum.SKIP_TO_PRESENT);
+        first.setLimitedHoldAnalytics(new LimitedHoldAnalytics(100, 10));
+        first.setSeekEnabled(true);
+        first.start();
+        mClock.advance(1000);
+
+        //A pooled child leaves its parent on release
+        BehaviorCountDownTimer session = new BehaviorCountDownTimer(20 * 1000, 1000, false,
+                RandomStyleEnum.REGULAR, 0, 0, 1, false, 0)
+        {
+            @Override
+            public void onTick() {}
+
+            @Override
+            public void onFinish() {}
+
+            @Override
+            public void onIntervalReached() {}
+        };
+        session.setCountdownFactory(mClock);
+        first.pause();
+        session.addChildTimer(first);
+        assertTrue(mPool.release(first));
+        assertNull(first.getParentTimer());
+        session.start();
+        assertFalse(first.getTimerRunningFlag());
+        session.pause();
+
+        long published = ring.getBacklog();
+        BehaviorCountDownTimer second = mPool.acquire(5 * 1000, 1000, false,
+                RandomStyleEnum.REGULAR, 0, 0, 1, false, 0);
+        assertSame(first, second);
+        assertEquals(1, second.getTimeScale(), 0);
+        assertEquals(BehaviorCountDownTimer.CatchUpPolicyEnum.REPLAY_ALL, second.getCatchUpPolicy());
+        assertNull(second.getLimitedHoldAnalytics());
+
+        //Runs on the pool's clock in real time and publishes nowhere
+        long start = mClock.now();
+        second.start();
+        mClock.runUntilIdle();
+        assertEquals(5 * 1000, mClock.now() - start);
+        assertEquals(published, ring.getBacklog());
+        try
+        {
+            second.seekTo(1000);
+            fail("No exception was thrown. Exception for seeking without a history was expected.");
+        } catch (IllegalStateException e)
+        {
+            //Expected, seeking is off again
+        }
+    }
+
+    @Test
+    public void pool_isBounded() throws Exception
+    {
+        BehaviorCountDownTimer first = mPool.acquire(5 * 1000, 1000, false,
+                RandomStyleEnum.REGULAR, 0, 0, 1, false, 0);
+        BehaviorCountDownTimer second = mPool.acquire(5 * 1000, 1000, false,
+                RandomStyleEnum.REGULAR, 0, 0, 1, false, 0);
+
+        assertTrue(mPool.release(first));
+        assertFalse(mPool.release(second));
+        assertEquals(1, mPool.getFreeCount());
+
+        try
+        {
+            mPool.acquire(0, 1000, false, RandomStyleEnum.REGULAR, 0, 0, 1, false, 0);
+            fail("No exception was thrown. Exception for 0 timer was expected.");
+        } catch (TotalTimerException e)
+        {
+            //Expected, the timer goes back to the pool
+        }
+        assertEquals(1, mPool.getFreeCount());
+    }
+}
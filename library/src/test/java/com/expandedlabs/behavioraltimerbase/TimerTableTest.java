@@ -0,0 +1,94 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import org.junit.Test;
+
+import static com.expandedlabs.behavioraltimerbase.BehaviorCountDownTimer.RandomStyleEnum;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TimerTableTest
+{
+    private static final int TIMERS = 1000;
+
+    private TimerTable runTable(ProtocolPhase configuration, long step)
+    {
+        TimerTable table = new TimerTable(TIMERS);
+        int configurationId = table.addConfiguration(configuration);
+        for(int i = 0; i < TIMERS; ++i)
+        {
+            table.addTimer(configurationId, i + 1);
+        }
+
+        table.startAll();
+        for(long elapsed = 0; elapsed < configuration.getTimerValue(); elapsed += step)
+        {
+            table.advance(step);
+        }
+
+        for(int i = 0; i < TIMERS; ++i)
+        {
+            assertTrue(table.getFinishedFlag(i));
+            assertEquals(0, table.getRemaining(i));
+        }
+        return table;
+    }
+
+    @Test
+    public void fixedIntervals_isCorrect() throws Exception
+    {
+        TimerTable table = runTable(new ProtocolPhase(5 * 1000, 1000, false,
+                RandomStyleEnum.REGULAR, 0, 0, 1, false, 0), 100);
+
+        for(int i = 0; i < TIMERS; ++i)
+        {
+            assertEquals(5, table.getIteration(i));
+        }
+    }
+
+    @Test
+    public void limitedHold_isCorrect() throws Exception
+    {
+        //7 seconds is fitted to 10 so two interval + hold cycles fit
+        TimerTable table = runTable(new ProtocolPhase(7 * 1000, 3 * 1000, false,
+                RandomStyleEnum.REGULAR, 0, 0, 1, true, 2 * 1000), 1000);
+
+        for(int i = 0; i < TIMERS; ++i)
+        {
+            assertEquals(2, table.getIteration(i));
+        }
+    }
+
+    @Test
+    public void randomIteration_isCorrect() throws Exception
+    {
+        //A single large step crosses every boundary at once
+        TimerTable table = runTable(new ProtocolPhase(20 * 1000, 1000, true,
+                RandomStyleEnum.ITERATION, 1000, 1000, 4, false, 0), 20 * 1000);
+
+        for(int i = 0; i < TIMERS; ++i)
+        {
+            assertEquals(4, table.getIteration(i));
+        }
+    }
+
+    @Test
+    public void pause_isCorrect() throws Exception
+    {
+        TimerTable table = new TimerTable(2);
+        int configurationId = table.addConfiguration(new ProtocolPhase(10 * 1000, 1000, false,
+                RandomStyleEnum.REGULAR, 0, 0, 1, false, 0));
+        int running = table.addTimer(configurationId, 1);
+        int paused = table.addTimer(configurationId, 2);
+
+        table.startAll();
+        table.advance(2500);
+        table.pause(paused);
+        table.advance(2500);
+
+        assertEquals(5000, table.getRemaining(running));
+        assertEquals(5, table.getIteration(running));
+        assertEquals(7500, table.getRemaining(paused));
+        assertEquals(2, table.getIteration(paused));
+        assertEquals(500, table.getIntervalRemaining(paused));
+    }
+}
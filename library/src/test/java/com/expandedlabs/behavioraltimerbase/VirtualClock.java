@@ -0,0 +1,151 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Controllable clock for running behavioral timers on the JVM. Set it as a timer's countdown
+ * factory and the timer ticks exactly like it would on an android CountDownTimer, but only when
+ * the clock is advanced, so a 30 second session runs in microseconds and always the same way.
+ */
+public class VirtualClock implements Countdown.Factory
+{
+    private long mNow = 0;
+    private final List<VirtualCountdown> mCountdowns = new ArrayList<>();
+    private int mCreated = 0;
+
+    /**
+     * @return Virtual milliseconds since the clock was created
+     */
+    public long now()
+    {
+        return mNow;
+    }
+
+    /**
+     * Move the clock forward delivering every tick/finish that comes due, in order
+     * @param millis Milliseconds to move forward
+     */
+    public void advance(long millis)
+    {
+        long target = mNow + millis;
+
+        VirtualCountdown next;
+        while((next = nextDue(target)) != null)
+        {
+            mNow = next.mNextEvent;
+            next.deliver();
+        }
+
+        mNow = target;
+    }
+
+    /**
+     * Move the clock forward without delivering anything, like a blocked thread or a sleeping
+     * device. Every countdown that came due in the meantime gets one late tick on the next
+     * advance.
+     * @param millis Milliseconds to move forward
+     */
+    public void stall(long millis)
+    {
+        mNow += millis;
+        for(VirtualCountdown countdown : mCountdowns)
+        {
+            countdown.mNextEvent = Math.max(countdown.mNextEvent, mNow);
+        }
+    }
+
+    /**
+     * Move the clock forward until no countdown is running
+     */
+    public void runUntilIdle()
+    {
+        VirtualCountdown next;
+        while((next = nextDue(Long.MAX_VALUE)) != null)
+        {
+            mNow = next.mNextEvent;
+            next.deliver();
+        }
+    }
+
+    /**
+     * @return Countdowns this clock has created
+     */
+    public int getCreatedCount() { return mCreated; }
+
+    @Override
+    public Countdown create(long millisInFuture, long countDownInterval, BehaviorCountDownTimer bTimer)
+    {
+        ++mCreated;
+        return new VirtualCountdown(millisInFuture, countDownInterval, bTimer);
+    }
+
+    private VirtualCountdown nextDue(long target)
+    {
+        VirtualCountdown next = null;
+        for(VirtualCountdown countdown : mCountdowns)
+        {
+            if(countdown.mNextEvent <= target
+                    && (next == null || countdown.mNextEvent < next.mNextEvent))
+            {
+                next = countdown;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Same delivery as the android CountDownTimer, a tick on start, one every interval and the
+     * finish exactly at the stop time
+     */
+    private class VirtualCountdown implements Countdown.Restartable
+    {
+        private long mMillisInFuture;
+        private final long mCountDownInterval;
+        private final BehaviorCountDownTimer mBTimer;
+
+        private long mStopTime;
+        private long mNextEvent;
+
+        VirtualCountdown(long millisInFuture, long countDownInterval, BehaviorCountDownTimer bTimer)
+        {
+            mMillisInFuture = millisInFuture;
+            mCountDownInterval = countDownInterval;
+            mBTimer = bTimer;
+        }
+
+        @Override
+        public void setMillisInFuture(long millisInFuture)
+        {
+            mMillisInFuture = millisInFuture;
+        }
+
+        @Override
+        public void startCountdown()
+        {
+            mStopTime = mNow + mMillisInFuture;
+            mNextEvent = mNow;
+            mCountdowns.add(this);
+        }
+
+        @Override
+        public void cancelCountdown()
+        {
+            mCountdowns.remove(this);
+        }
+
+        void deliver()
+        {
+            long millisLeft = mStopTime - mNow;
+            if(millisLeft <= 0)
+            {
+                mCountdowns.remove(this);
+                mBTimer.innerFinish();
+                return;
+            }
+
+            mNextEvent = mNow + Math.min(millisLeft, mCountDownInterval);
+            mBTimer.innerTick(millisLeft);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.expandedlabs.behavioraltimerbase;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Frame source that only pulses when told to, paired with a {@link VirtualClock} to play a
+ * display at any frame rate
+ */
+public class VirtualFrameSource implements FrameSource
+{
+    private final List<Callback> mCallbacks = new ArrayList<>();
+    private int mFrames = 0;
+
+    /**
+     * Call every callback posted before this frame, like a vsync
+     */
+    public void pulse(long frameTimeNanos)
+    {
+        ++mFrames;
+        List<Callback> callbacks = new ArrayList<>(mCallbacks);
+        mCallbacks.clear();
+        for(Callback callback : callbacks)
+        {
+            callback.doFrame(frameTimeNanos);
+        }
+    }
+
+    public int getFrameCount() { return mFrames; }
+
+    @Override
+    public void postFrameCallback(Callback callback)
+    {
+        mCallbacks.add(callback);
+    }
+
+    @Override
+    public void removeFrameCallback(Callback callback)
+    {
+        mCallbacks.remove(callback);
+    }
+}